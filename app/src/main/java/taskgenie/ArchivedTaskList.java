@@ -0,0 +1,92 @@
+package taskgenie;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * FX-thread list of the archived tasks, for the archive table. The table
+ * only asks for the rows in its viewport, so rows are decoded a page at a
+ * time on first access and the most recently used pages are kept; the rest
+ * of the archive stays in the mapped files. Scrolling through any number of
+ * rows holds at most {@link #CACHED_PAGES} pages of tasks.
+ *
+ * The size only changes in {@link #refresh}, which reports the new rows as
+ * one addition, so the table never sees rows it was not told about.
+ */
+class ArchivedTaskList extends ObservableListBase<Task> {
+    static final int PAGE_ROWS = 256;
+    static final int CACHED_PAGES = 32;
+
+    private final TaskArchive archive;
+    private final Function<String, Category> categories;
+    // Access order, so the eldest entry is the least recently used page
+    private final Map<Integer, Task[]> pages = new LinkedHashMap<>(CACHED_PAGES * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Task[]> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+    private int size;
+    private long pageLoads;
+
+    ArchivedTaskList(TaskArchive archive, Function<String, Category> categories) {
+        this.archive = archive;
+        this.categories = categories;
+        this.size = archive.size();
+    }
+
+    @Override
+    public Task get(int index) {
+        Objects.checkIndex(index, size);
+        int page = index / PAGE_ROWS;
+        Task[] rows = pages.get(page);
+        if (rows == null) {
+            rows = load(page);
+            pages.put(page, rows);
+        }
+        return rows[index % PAGE_ROWS];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** Number of pages read from the archive so far, cache misses included. */
+    long getPageLoads() {
+        return pageLoads;
+    }
+
+    /** Shows the rows appended to the archive since the last call. */
+    void refresh() {
+        int grown = archive.size();
+        if (grown <= size) {
+            return;
+        }
+        // A partial last page was read before the rows that complete it existed
+        if (size % PAGE_ROWS != 0) {
+            pages.remove(size / PAGE_ROWS);
+        }
+        int from = size;
+        size = grown;
+        beginChange();
+        nextAdd(from, grown);
+        endChange();
+    }
+
+    private Task[] load(int page) {
+        int from = page * PAGE_ROWS;
+        List<TaskRecord> records = archive.read(from, Math.min(PAGE_ROWS, size - from));
+        Task[] rows = new Task[records.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = records.get(i).toTask(categories);
+        }
+        pageLoads++;
+        return rows;
+    }
+}
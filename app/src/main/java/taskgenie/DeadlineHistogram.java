@@ -0,0 +1,155 @@
+package taskgenie;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+/**
+ * Number of tasks due on each day, split by priority and completion, kept as
+ * Fenwick trees over the epoch day. Adds, removals and edits of the deadline,
+ * priority or completion each update a tree in O(log days), and so does
+ * counting the tasks due in any range of days, however many tasks it holds.
+ *
+ * The trees of all buckets are interleaved, so one step of a walk reads the
+ * counts of every bucket from the same cache line and a query over several
+ * buckets costs about as much as one. The days covered are fixed, about 180
+ * years either side of 1970; deadlines outside them count on the first or
+ * last day. Tasks without a deadline are not counted.
+ */
+class DeadlineHistogram implements TaskChangeListener {
+    // Tasks without a priority have a bucket pair of their own, ahead of the priorities
+    private static final int PRIORITY_BUCKETS = Priority.values().length + 1;
+    static final int BUCKETS = PRIORITY_BUCKETS * 2;
+
+    /** Bucket selection of every open task. */
+    static final int OPEN = bucketsOf(true, false);
+    /** Bucket selection of every completed task. */
+    static final int COMPLETED = bucketsOf(false, true);
+    static final int ALL = OPEN | COMPLETED;
+
+    private static final int DAY_BITS = 17;
+    private static final int DAYS = 1 << DAY_BITS;
+    private static final long FIRST_DAY = -(DAYS / 2);
+
+    // tree[node * BUCKETS + bucket], nodes numbered from 1 as Fenwick trees are
+    private final int[] tree = new int[(DAYS + 1) * BUCKETS];
+
+    public DeadlineHistogram(Collection<Task> tasks) {
+        for (Task task : tasks) {
+            taskAdded(task);
+        }
+    }
+
+    /** Bucket selection of the open tasks with the given priority, or with none if it is null. */
+    static int open(Priority priority) {
+        return 1 << bucket(priority, false);
+    }
+
+    /** Bucket selection of the tasks with the given priority, open or completed. */
+    static int withPriority(Priority priority) {
+        return open(priority) | 1 << bucket(priority, true);
+    }
+
+    @Override
+    public void taskAdded(Task task) {
+        add(task.getDeadline(), bucket(task.getPriority(), task.isCompleted()), 1);
+    }
+
+    @Override
+    public void taskRemoved(Task task) {
+        add(task.getDeadline(), bucket(task.getPriority(), task.isCompleted()), -1);
+    }
+
+    @Override
+    public void taskChanged(Task task, TaskField field, Object oldValue, Object newValue) {
+        switch (field) {
+            case DEADLINE: {
+                int bucket = bucket(task.getPriority(), task.isCompleted());
+                add((LocalDate) oldValue, bucket, -1);
+                add((LocalDate) newValue, bucket, 1);
+                break;
+            }
+            case PRIORITY:
+                add(task.getDeadline(), bucket((Priority) oldValue, task.isCompleted()), -1);
+                add(task.getDeadline(), bucket((Priority) newValue, task.isCompleted()), 1);
+                break;
+            case COMPLETED:
+                add(task.getDeadline(), bucket(task.getPriority(), (Boolean) oldValue), -1);
+                add(task.getDeadline(), bucket(task.getPriority(), (Boolean) newValue), 1);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** Counts the tasks in the selected buckets due from {@code from} through {@code to}, inclusive. */
+    public int count(LocalDate from, LocalDate to, int buckets) {
+        int first = node(from);
+        int last = node(to);
+        if (first > last) {
+            return 0;
+        }
+        return prefix(last, buckets) - prefix(first - 1, buckets);
+    }
+
+    /**
+     * Counts the tasks in the selected buckets due on each day from
+     * {@code from} through {@code to}. Each day costs two tree walks, so this
+     * is meant for a calendar's worth of days.
+     */
+    public int[] countByDay(LocalDate from, LocalDate to, int buckets) {
+        int days = (int) Math.max(0, to.toEpochDay() - from.toEpochDay() + 1);
+        int[] counts = new int[days];
+        LocalDate day = from;
+        int before = prefix(node(day) - 1, buckets);
+        for (int i = 0; i < days; i++, day = day.plusDays(1)) {
+            int through = prefix(node(day), buckets);
+            counts[i] = through - before;
+            before = through;
+        }
+        return counts;
+    }
+
+    private void add(LocalDate deadline, int bucket, int delta) {
+        if (deadline == null) {
+            return;
+        }
+        for (int node = node(deadline); node <= DAYS; node += node & -node) {
+            tree[node * BUCKETS + bucket] += delta;
+        }
+    }
+
+    // Sum over days 1..node of the selected buckets
+    private int prefix(int node, int buckets) {
+        int sum = 0;
+        for (; node > 0; node -= node & -node) {
+            int base = node * BUCKETS;
+            for (int selected = buckets; selected != 0; selected &= selected - 1) {
+                sum += tree[base + Integer.numberOfTrailingZeros(selected)];
+            }
+        }
+        return sum;
+    }
+
+    // Days outside the range count on its first or last day, so every task stays counted once
+    private static int node(LocalDate day) {
+        long offset = day.toEpochDay() - FIRST_DAY;
+        return (int) Math.max(0, Math.min(DAYS - 1, offset)) + 1;
+    }
+
+    private static int bucket(Priority priority, boolean completed) {
+        return (priority == null ? 0 : priority.ordinal() + 1) * 2 + (completed ? 1 : 0);
+    }
+
+    private static int bucketsOf(boolean open, boolean completed) {
+        int buckets = 0;
+        for (int i = 0; i < PRIORITY_BUCKETS; i++) {
+            if (open) {
+                buckets |= 1 << i * 2;
+            }
+            if (completed) {
+                buckets |= 1 << i * 2 + 1;
+            }
+        }
+        return buckets;
+    }
+}
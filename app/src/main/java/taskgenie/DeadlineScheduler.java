@@ -0,0 +1,101 @@
+package taskgenie;
+
+import java.io.Closeable;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves the store to the next day at midnight and sends due-soon reminders.
+ *
+ * The timer sleeps until the next midnight, but never longer than a minute
+ * at a time, so a suspended machine or a changed system clock is noticed
+ * promptly. On a day change the store flips just the tasks whose deadline
+ * the boundary crossed, found through the deadline index's day buckets,
+ * instead of rescanning every task.
+ */
+class DeadlineScheduler implements Closeable {
+    private static final long MAX_SLEEP_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    interface Listener {
+        /** Called on the timer thread after the store has moved to a new day. */
+        default void dayChanged(LocalDate today) {}
+
+        /**
+         * Called on the timer thread at start-up and on every day change with
+         * the open tasks due within the reminder window. Not called when there
+         * are none.
+         */
+        default void dueSoon(LocalDate today, List<Task> tasks) {}
+    }
+
+    private final TaskStore store;
+    private final TaskClock clock;
+    private final int reminderDays;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService timer;
+
+    /**
+     * @param reminderDays how far ahead to remind: 0 for tasks due today,
+     *                     1 to include tomorrow, and so on
+     */
+    public DeadlineScheduler(TaskStore store, int reminderDays) {
+        this.store = store;
+        this.clock = store.getClock();
+        this.reminderDays = reminderDays;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "deadline-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /** Sends the first reminders and starts watching for the day change. */
+    public void start() {
+        timer.execute(() -> {
+            remind(clock.today());
+            scheduleNext();
+        });
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    private void scheduleNext() {
+        long delay = Math.min(MAX_SLEEP_MILLIS, clock.untilNextDay().toMillis() + 1);
+        timer.schedule(this::tick, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void tick() {
+        try {
+            if (clock.refresh()) {
+                LocalDate today = clock.today();
+                store.advanceDay(today);
+                for (Listener listener : listeners) {
+                    listener.dayChanged(today);
+                }
+                remind(today);
+            }
+        } finally {
+            scheduleNext();
+        }
+    }
+
+    private void remind(LocalDate today) {
+        List<Task> due = store.dueBetween(today, today.plusDays(reminderDays));
+        if (!due.isEmpty()) {
+            for (Listener listener : listeners) {
+                listener.dueSoon(today, due);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package taskgenie;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Expanded occurrences of repeat rules, one calendar month at a time. A
+ * window is answered from the months it touches, expanding only those not
+ * already cached, and the least recently used months are evicted beyond a
+ * fixed number. Months are keyed by rule rather than by task, so tasks with
+ * equal rules share them, and a task's progress through its series (its
+ * current deadline) is applied when reading.
+ */
+class OccurrenceCache {
+    static final int DEFAULT_CAPACITY = 4096;
+
+    private static final class Key {
+        final Recurrence rule;
+        final YearMonth month;
+
+        Key(Recurrence rule, YearMonth month) {
+            this.rule = rule;
+            this.month = month;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && rule.equals(((Key) o).rule) && month.equals(((Key) o).month);
+        }
+
+        @Override
+        public int hashCode() {
+            return rule.hashCode() * 31 + month.hashCode();
+        }
+    }
+
+    private static final int[] NONE = new int[0];
+
+    private final Map<Key, int[]> months;
+    private long hits;
+    private long misses;
+
+    public OccurrenceCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public OccurrenceCache(int capacity) {
+        this.months = new LinkedHashMap<Key, int[]>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** Visits the rule's occurrences from {@code from} through {@code to}, in order. */
+    public void forEachBetween(Recurrence rule, LocalDate from, LocalDate to, Consumer<LocalDate> action) {
+        if (from.isAfter(to)) {
+            return;
+        }
+        long first = from.toEpochDay();
+        long last = to.toEpochDay();
+        for (YearMonth month = YearMonth.from(from); !month.isAfter(YearMonth.from(to)); month = month.plusMonths(1)) {
+            for (int day : month(rule, month)) {
+                if (day >= first && day <= last) {
+                    action.accept(LocalDate.ofEpochDay(day));
+                }
+            }
+        }
+    }
+
+    /** Occurrences in one month as epoch days, expanded on first use. */
+    synchronized int[] month(Recurrence rule, YearMonth month) {
+        Key key = new Key(rule, month);
+        int[] days = months.get(key);
+        if (days != null) {
+            hits++;
+            return days;
+        }
+        misses++;
+        // At most one occurrence a day
+        int[] expanded = new int[month.lengthOfMonth()];
+        int[] size = {0};
+        rule.forEachBetween(month.atDay(1), month.atEndOfMonth(),
+                date -> expanded[size[0]++] = (int) date.toEpochDay());
+        days = size[0] == 0 ? NONE : Arrays.copyOf(expanded, size[0]);
+        months.put(key, days);
+        return days;
+    }
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized int size() { return months.size(); }
+}
@@ -0,0 +1,299 @@
+package taskgenie;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.TextStyle;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+
+/**
+ * Repeat rule of a recurring task: a small subset of iCalendar's RRULE with
+ * FREQ (DAILY, WEEKLY, MONTHLY or YEARLY), INTERVAL, BYDAY for weekly rules,
+ * and COUNT or UNTIL to end the series, anchored at a start date (DTSTART).
+ *
+ * Occurrences are computed arithmetically from the start, so the ones around
+ * any given day are found without walking the series from its beginning.
+ * Monthly and yearly rules keep the start's day of month, falling back to
+ * the last day of shorter months. Immutable.
+ */
+final class Recurrence {
+    enum Frequency { DAILY, WEEKLY, MONTHLY, YEARLY }
+
+    private static final DateTimeFormatter BASIC_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final LocalDate start;
+    private final Frequency frequency;
+    private final int interval;
+    // Weekly rules only: the weekdays, ascending; defaults to the start's weekday
+    private final DayOfWeek[] byDay;
+    // 0 when unbounded
+    private final int count;
+    // null when unbounded
+    private final LocalDate until;
+
+    public Recurrence(LocalDate start, Frequency frequency, int interval, List<DayOfWeek> byDay,
+                      int count, LocalDate until) {
+        if (start == null || frequency == null) {
+            throw new IllegalArgumentException("A repeat rule needs a start date and a frequency");
+        }
+        if (interval < 1 || count < 0) {
+            throw new IllegalArgumentException("Invalid repeat interval or count");
+        }
+        if (!byDay.isEmpty() && frequency != Frequency.WEEKLY) {
+            throw new IllegalArgumentException("BYDAY is only supported for weekly rules");
+        }
+        this.start = start;
+        this.frequency = frequency;
+        this.interval = interval;
+        this.byDay = frequency != Frequency.WEEKLY ? new DayOfWeek[0]
+                : byDay.isEmpty() ? new DayOfWeek[] {start.getDayOfWeek()}
+                : byDay.stream().distinct().sorted().toArray(DayOfWeek[]::new);
+        this.count = count;
+        this.until = until;
+    }
+
+    public static Recurrence of(LocalDate start, Frequency frequency) {
+        return new Recurrence(start, frequency, 1, List.of(), 0, null);
+    }
+
+    /**
+     * Parses a rule such as {@code FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,WE;COUNT=10}.
+     * A {@code DTSTART} part, as written by {@link #toString()}, overrides
+     * {@code defaultStart}. Dates may be ISO ({@code 2026-12-31}) or basic
+     * ({@code 20261231}).
+     */
+    public static Recurrence parse(String rule, LocalDate defaultStart) {
+        LocalDate start = defaultStart;
+        Frequency frequency = null;
+        int interval = 1;
+        List<DayOfWeek> byDay = new ArrayList<>();
+        int count = 0;
+        LocalDate until = null;
+        String text = rule.trim();
+        if (text.regionMatches(true, 0, "RRULE:", 0, 6)) {
+            text = text.substring(6);
+        }
+        for (String part : text.split(";")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            int equals = part.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Malformed repeat rule part: " + part);
+            }
+            String key = part.substring(0, equals).trim().toUpperCase(Locale.ROOT);
+            String value = part.substring(equals + 1).trim().toUpperCase(Locale.ROOT);
+            switch (key) {
+                case "DTSTART": start = parseDate(value); break;
+                case "FREQ": frequency = Frequency.valueOf(value); break;
+                case "INTERVAL": interval = Integer.parseInt(value); break;
+                case "COUNT": count = Integer.parseInt(value); break;
+                case "UNTIL": until = parseDate(value); break;
+                case "BYDAY":
+                    for (String day : value.split(",")) {
+                        byDay.add(parseDay(day.trim()));
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported repeat rule part: " + key);
+            }
+        }
+        return new Recurrence(start, frequency, interval, byDay, count, until);
+    }
+
+    public LocalDate getStart() { return start; }
+    public Frequency getFrequency() { return frequency; }
+
+    /** The first occurrence strictly after the given day, or null once the series has ended. */
+    public LocalDate next(LocalDate after) {
+        LocalDate[] next = new LocalDate[1];
+        walk(after.plusDays(1), null, date -> next[0] = date, true);
+        return next[0];
+    }
+
+    /** The first occurrence, or null for a weekly rule whose weekdays all fall outside its end. */
+    public LocalDate first() {
+        return next(start.minusDays(1));
+    }
+
+    /** Visits the occurrences from {@code from} through {@code to}, in order. */
+    public void forEachBetween(LocalDate from, LocalDate to, Consumer<LocalDate> action) {
+        if (!from.isAfter(to)) {
+            walk(from, to, action, false);
+        }
+    }
+
+    /**
+     * Walks the periods from the one holding {@code from}, numbering the
+     * occurrences as it goes so COUNT can be honoured.
+     */
+    private void walk(LocalDate from, LocalDate to, Consumer<LocalDate> action, boolean firstOnly) {
+        long period = from.isAfter(start) ? periodOf(from) : 0;
+        long ordinal = period == 0 ? 0 : firstPeriodCount() + (period - 1) * byDayCount();
+        List<LocalDate> dates = new ArrayList<>(byDay.length);
+        while (true) {
+            dates.clear();
+            occurrencesIn(period, dates);
+            for (LocalDate date : dates) {
+                if ((count > 0 && ordinal >= count) || (until != null && date.isAfter(until))
+                        || (to != null && date.isAfter(to))) {
+                    return;
+                }
+                ordinal++;
+                if (!date.isBefore(from)) {
+                    action.accept(date);
+                    if (firstOnly) {
+                        return;
+                    }
+                }
+            }
+            period++;
+        }
+    }
+
+    private int byDayCount() {
+        return frequency == Frequency.WEEKLY ? byDay.length : 1;
+    }
+
+    private int firstPeriodCount() {
+        if (frequency != Frequency.WEEKLY) {
+            return 1;
+        }
+        int n = 0;
+        for (DayOfWeek day : byDay) {
+            if (day.compareTo(start.getDayOfWeek()) >= 0) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /** Index of the period holding the date, which must not be before the start. */
+    private long periodOf(LocalDate date) {
+        switch (frequency) {
+            case DAILY:
+                return ChronoUnit.DAYS.between(start, date) / interval;
+            case WEEKLY:
+                return ChronoUnit.WEEKS.between(monday(start), monday(date)) / interval;
+            case MONTHLY:
+                return ChronoUnit.MONTHS.between(YearMonth.from(start), YearMonth.from(date)) / interval;
+            default:
+                return ChronoUnit.YEARS.between(YearMonth.from(start), YearMonth.from(date)) / interval;
+        }
+    }
+
+    private void occurrencesIn(long period, List<LocalDate> dates) {
+        long steps = period * interval;
+        switch (frequency) {
+            case DAILY:
+                dates.add(start.plusDays(steps));
+                break;
+            case WEEKLY:
+                LocalDate monday = monday(start).plusWeeks(steps);
+                for (DayOfWeek day : byDay) {
+                    LocalDate date = monday.plusDays(day.ordinal());
+                    if (!date.isBefore(start)) {
+                        dates.add(date);
+                    }
+                }
+                break;
+            case MONTHLY:
+                dates.add(start.plusMonths(steps));
+                break;
+            default:
+                dates.add(start.plusYears(steps));
+                break;
+        }
+    }
+
+    private static LocalDate monday(LocalDate date) {
+        return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    /** Short English description for the table, e.g. "Every 2 weeks on Mon, Wed". */
+    public String describe() {
+        String unit = frequency == Frequency.DAILY ? "day" : frequency == Frequency.WEEKLY ? "week"
+                : frequency == Frequency.MONTHLY ? "month" : "year";
+        StringBuilder text = new StringBuilder(interval == 1
+                ? "Every " + unit : "Every " + interval + " " + unit + "s");
+        if (frequency == Frequency.WEEKLY && (byDay.length > 1 || byDay[0] != start.getDayOfWeek())) {
+            StringJoiner days = new StringJoiner(", ", " on ", "");
+            for (DayOfWeek day : byDay) {
+                days.add(day.getDisplayName(TextStyle.SHORT, Locale.ENGLISH));
+            }
+            text.append(days);
+        }
+        if (count > 0) {
+            text.append(", ").append(count).append(count == 1 ? " time" : " times");
+        } else if (until != null) {
+            text.append(" until ").append(until);
+        }
+        return text.toString();
+    }
+
+    /** The rule in the form {@link #parse} reads, including its start. */
+    @Override
+    public String toString() {
+        StringBuilder rule = new StringBuilder("DTSTART=").append(start.format(BASIC_DATE))
+                .append(";FREQ=").append(frequency);
+        if (interval != 1) {
+            rule.append(";INTERVAL=").append(interval);
+        }
+        if (frequency == Frequency.WEEKLY && (byDay.length > 1 || byDay[0] != start.getDayOfWeek())) {
+            StringJoiner days = new StringJoiner(",", ";BYDAY=", "");
+            for (DayOfWeek day : byDay) {
+                days.add(day.name().substring(0, 2));
+            }
+            rule.append(days);
+        }
+        if (count > 0) {
+            rule.append(";COUNT=").append(count);
+        }
+        if (until != null) {
+            rule.append(";UNTIL=").append(until.format(BASIC_DATE));
+        }
+        return rule.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Recurrence)) {
+            return false;
+        }
+        Recurrence other = (Recurrence) o;
+        return start.equals(other.start) && frequency == other.frequency && interval == other.interval
+                && Arrays.equals(byDay, other.byDay) && count == other.count
+                && (until == null ? other.until == null : until.equals(other.until));
+    }
+
+    @Override
+    public int hashCode() {
+        return start.hashCode() * 31 + frequency.hashCode() * 7 + interval + Arrays.hashCode(byDay);
+    }
+
+    private static LocalDate parseDate(String value) {
+        try {
+            return value.contains("-") ? LocalDate.parse(value) : LocalDate.parse(value.substring(0, 8), BASIC_DATE);
+        } catch (DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid date in repeat rule: " + value);
+        }
+    }
+
+    private static DayOfWeek parseDay(String value) {
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if (day.name().startsWith(value) && value.length() >= 2) {
+                return day;
+            }
+        }
+        throw new IllegalArgumentException("Unknown weekday in repeat rule: " + value);
+    }
+}
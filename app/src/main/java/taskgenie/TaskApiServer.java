@@ -0,0 +1,522 @@
+package taskgenie;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Local HTTP/JSON API over the task store, for scripts and automation that
+ * should not have to drive the GUI. It works on the same store as the table,
+ * so changes made through it show up in the UI like any other batch.
+ *
+ * <pre>
+ * GET    /api/tasks?priority=HIGH&amp;category=Work&amp;completed=false&amp;overdue=true&amp;q=text&amp;offset=0&amp;limit=100
+ * GET    /api/tasks?query=...          a {@link TaskQuery}, alone or with the filters above
+ * GET    /api/tasks?stream=true&amp;...    every match as JSON Lines, written as it is read
+ * POST   /api/tasks                   body: a task object as exported, returns it with its id;
+ *                                      "parent" and "blockedBy" hold ids of tasks in the store
+ * GET    /api/tasks/{id}
+ * PATCH  /api/tasks/{id}              body: the fields to change
+ * DELETE /api/tasks/{id}
+ * GET    /api/statistics?...          counters, optionally for the same filters
+ * GET    /api/changes?epoch=E&amp;since=N&amp;slot=S  binary change feed page, see {@link TaskSync}
+ * </pre>
+ *
+ * The server binds to the loopback interface only, and since any web page
+ * the user opens can send requests there, it also checks who is asking:
+ * the Host header must name the loopback address and this port, so a
+ * DNS-rebound name is refused; a request carrying an Origin must come from
+ * this server itself; and every request needs the per-install token as
+ * {@code Authorization: Bearer <token>} (see {@link TaskPersistence#apiToken}).
+ * Requests run on
+ * {@link VirtualThreads}, one virtual thread each where the runtime has them,
+ * and are timed through {@link TaskMetrics} as {@code api.*} operations.
+ */
+class TaskApiServer {
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 10_000;
+    // Tasks per flush of a streamed response
+    private static final int STREAM_CHUNK = 1_000;
+    private static final int MAX_BODY_BYTES = 1 << 20;
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final String JSON_LINES = "application/x-ndjson; charset=utf-8";
+
+    /** Ends a request with the given status and message. */
+    private static class ApiException extends RuntimeException {
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final TaskStore store;
+    private final TaskTransfer transfer;
+    private final TaskMetrics metrics;
+    private final byte[] token;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /** Serves the store to clients that present {@code token}. */
+    public TaskApiServer(TaskStore store, TaskMetrics metrics, String token) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("An API token is required");
+        }
+        this.store = store;
+        this.transfer = new TaskTransfer(store);
+        this.metrics = metrics;
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Starts listening on the loopback interface; port 0 picks a free one. */
+    public synchronized void start(int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Already started");
+        }
+        // The JDK server writes headers and body separately; without TCP_NODELAY every small
+        // response waits out the client's delayed ACK, about 40 ms. Read once, at first use.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = VirtualThreads.newExecutor("task-api");
+        server.setExecutor(executor);
+        server.createContext("/api/tasks", this::handleTasks);
+        server.createContext("/api/statistics", this::handleStatistics);
+        server.createContext("/api/changes", this::handleChanges);
+        server.start();
+    }
+
+    public synchronized int getPort() {
+        return server == null ? -1 : server.getAddress().getPort();
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /** A request handler body; its failures are turned into error responses. */
+    private interface Action {
+        void run() throws IOException;
+    }
+
+    private void handleTasks(HttpExchange exchange) throws IOException {
+        serve(exchange, () -> {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if (path.equals("/api/tasks") || path.equals("/api/tasks/")) {
+                switch (method) {
+                    case "GET": listTasks(exchange); break;
+                    case "POST": createTask(exchange); break;
+                    default: throw new ApiException(405, "Method not allowed: " + method);
+                }
+                return;
+            }
+            long id = parseId(path.substring("/api/tasks/".length()));
+            switch (method) {
+                case "GET": getTask(exchange, id); break;
+                case "PATCH": updateTask(exchange, id); break;
+                case "DELETE": deleteTask(exchange, id); break;
+                default: throw new ApiException(405, "Method not allowed: " + method);
+            }
+        });
+    }
+
+    private void handleStatistics(HttpExchange exchange) throws IOException {
+        serve(exchange, () -> statistics(exchange));
+    }
+
+    private void handleChanges(HttpExchange exchange) throws IOException {
+        serve(exchange, () -> {
+            try (TaskMetrics.Span span = metrics.span("api.changes")) {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    throw new ApiException(405, "Method not allowed: " + exchange.getRequestMethod());
+                }
+                Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+                long slot = parseLong(parameters.get("slot"));
+                if (slot < 0 || slot > Integer.MAX_VALUE) {
+                    throw new ApiException(400, "Not a slot: " + slot);
+                }
+                byte[] page = store.changesSince(parseLong(parameters.get("epoch")), parseLong(parameters.get("since")),
+                        (int) slot);
+                exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+                exchange.sendResponseHeaders(200, page.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(page);
+                }
+            }
+        });
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return value == null || value.isBlank() ? 0 : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Not a number: " + value);
+        }
+    }
+
+    private void serve(HttpExchange exchange, Action action) throws IOException {
+        try {
+            authorize(exchange);
+            action.run();
+        } catch (ApiException e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, e.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /** Refuses requests from other hosts' pages and from clients without the token. */
+    private void authorize(HttpExchange exchange) {
+        int port = exchange.getLocalAddress().getPort();
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        if (host == null || !isLocal(host.toLowerCase(Locale.ROOT), port)) {
+            throw new ApiException(403, "Host not allowed: " + host);
+        }
+        String origin = exchange.getRequestHeaders().getFirst("Origin");
+        if (origin != null && !(origin.startsWith("http://") && isLocal(origin.substring("http://".length())
+                .toLowerCase(Locale.ROOT), port))) {
+            throw new ApiException(403, "Origin not allowed: " + origin);
+        }
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        byte[] presented = authorization != null && authorization.startsWith("Bearer ")
+                ? authorization.substring("Bearer ".length()).trim().getBytes(StandardCharsets.UTF_8) : null;
+        // Constant time, so the token cannot be guessed a byte at a time
+        if (presented == null || !MessageDigest.isEqual(presented, token)) {
+            exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+            throw new ApiException(401, "Missing or wrong API token");
+        }
+    }
+
+    private static boolean isLocal(String authority, int port) {
+        return authority.equals("127.0.0.1:" + port) || authority.equals("localhost:" + port)
+                || authority.equals("[::1]:" + port);
+    }
+
+    private void statistics(HttpExchange exchange) throws IOException {
+        try (TaskMetrics.Span span = metrics.span("api.statistics")) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                throw new ApiException(405, "Method not allowed: " + exchange.getRequestMethod());
+            }
+            Query query = new Query(exchange);
+            TaskStatistics.Snapshot statistics = query.isUnfiltered() ? store.statistics()
+                    : store.statistics(query.filter, query.completedOnly, store.getClock().today());
+            StringBuilder out = new StringBuilder(256);
+            out.append("{\"total\":").append(statistics.getTotal())
+                    .append(",\"completed\":").append(statistics.getCompleted())
+                    .append(",\"overdue\":").append(statistics.getOverdue())
+                    .append(",\"byPriority\":{");
+            for (Priority priority : Priority.values()) {
+                Json.appendString(out, priority.name()).append(':').append(statistics.getCount(priority)).append(',');
+            }
+            out.setLength(out.length() - 1);
+            out.append("},\"byCategory\":{");
+            int start = out.length();
+            for (Category category : store.getCategories().values()) {
+                Json.appendString(out, category.getName()).append(':').append(statistics.getCount(category)).append(',');
+            }
+            if (out.length() > start) {
+                out.setLength(out.length() - 1);
+            }
+            out.append("}}");
+            send(exchange, 200, out);
+        }
+    }
+
+    private void listTasks(HttpExchange exchange) throws IOException {
+        Query query = new Query(exchange);
+        if (query.stream) {
+            streamTasks(exchange, query);
+            return;
+        }
+        try (TaskMetrics.Span span = metrics.span("api.list")) {
+            TaskStore.Page page = store.page(query.filter, query.completedOnly, store.getClock().today(),
+                    query.offset, query.limit);
+            StringBuilder out = new StringBuilder(64 + page.getTasks().size() * 160);
+            out.append("{\"total\":").append(page.getTotal())
+                    .append(",\"offset\":").append(query.offset)
+                    .append(",\"limit\":").append(query.limit)
+                    .append(",\"tasks\":[");
+            for (Task task : page.getTasks()) {
+                appendTask(out, task).append(',');
+            }
+            if (!page.getTasks().isEmpty()) {
+                out.setLength(out.length() - 1);
+            }
+            out.append("]}");
+            send(exchange, 200, out);
+        }
+    }
+
+    /**
+     * Writes every match as JSON Lines with chunked transfer encoding. The
+     * matches are taken in one read, then serialized and flushed a chunk at
+     * a time, so neither the whole response nor the store lock is held while
+     * a slow client reads. The status has been sent by the time a task fails
+     * to serialize, so the stream then ends with an {@code {"error": ...}}
+     * line in place of the remaining tasks.
+     */
+    private void streamTasks(HttpExchange exchange, Query query) throws IOException {
+        try (TaskMetrics.Span span = metrics.span("api.stream")) {
+            List<Task> tasks = store.query(query.filter, store.getClock().today());
+            exchange.getResponseHeaders().set("Content-Type", JSON_LINES);
+            exchange.sendResponseHeaders(200, 0);
+            try (Writer writer = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+                StringBuilder chunk = new StringBuilder(STREAM_CHUNK * 160);
+                int inChunk = 0;
+                int lineStart = 0;
+                try {
+                    for (Task task : tasks) {
+                        if (query.completedOnly && !task.isCompleted()) {
+                            continue;
+                        }
+                        lineStart = chunk.length();
+                        appendTask(chunk, task).append('\n');
+                        if (++inChunk == STREAM_CHUNK) {
+                            writer.append(chunk).flush();
+                            chunk.setLength(0);
+                            inChunk = 0;
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    metrics.counter("api.stream.failures").increment();
+                    // Drops the half-written line of the failing task
+                    chunk.setLength(lineStart);
+                    Json.appendField(chunk.append('{'), "error", e.toString()).append("}\n");
+                }
+                writer.append(chunk);
+            }
+        }
+    }
+
+    private void createTask(HttpExchange exchange) throws IOException {
+        try (TaskMetrics.Span span = metrics.span("api.create")) {
+            Map<String, String> object = Json.parseObject(readBody(exchange));
+            Task task = transfer.fromJson(object);
+            Long parent = TaskTransfer.parseId(object.get("parent"));
+            List<Long> blockedBy = Task.normalizeIds(TaskTransfer.parseIds(object.get("blockedBy")));
+            // Links are set as edits of the new task, so they are checked for cycles like any other
+            store.batch(batch -> {
+                Task added = batch.add(task);
+                if (parent != null) {
+                    batch.update(added, TaskField.PARENT, parent);
+                }
+                if (!blockedBy.isEmpty()) {
+                    batch.update(added, TaskField.BLOCKED_BY, blockedBy);
+                }
+            });
+            Task stored = store.find(task.getId());
+            exchange.getResponseHeaders().set("Location", "/api/tasks/" + task.getId());
+            send(exchange, 201, appendTask(new StringBuilder(256), stored));
+        }
+    }
+
+    private void getTask(HttpExchange exchange, long id) throws IOException {
+        try (TaskMetrics.Span span = metrics.span("api.get")) {
+            send(exchange, 200, appendTask(new StringBuilder(256), require(id)));
+        }
+    }
+
+    /**
+     * Applies the given fields as one batch, so the change is all or nothing.
+     * Every value is parsed before the batch starts. Completing a recurring
+     * task advances it, as in the table. A parent or blockers that would make
+     * the task wait for itself are refused with 400.
+     */
+    private void updateTask(HttpExchange exchange, long id) throws IOException {
+        try (TaskMetrics.Span span = metrics.span("api.update")) {
+            Map<String, String> fields = Json.parseObject(readBody(exchange));
+            Map<TaskField, Object> changes = new HashMap<>();
+            for (Map.Entry<String, String> field : fields.entrySet()) {
+                String value = field.getValue();
+                switch (field.getKey()) {
+                    case "name":
+                        if (value == null || value.isBlank()) {
+                            throw new ApiException(400, "Task name cannot be empty");
+                        }
+                        changes.put(TaskField.NAME, value.trim());
+                        break;
+                    case "description":
+                        changes.put(TaskField.DESCRIPTION, value == null ? "" : value);
+                        break;
+                    case "priority":
+                        changes.put(TaskField.PRIORITY, TaskTransfer.parsePriority(value));
+                        break;
+                    case "deadline":
+                        changes.put(TaskField.DEADLINE, value == null || value.isBlank() ? null : LocalDate.parse(value.trim()));
+                        break;
+                    case "completed":
+                        changes.put(TaskField.COMPLETED, TaskTransfer.parseBoolean(value));
+                        break;
+                    case "category":
+                        changes.put(TaskField.CATEGORY, value == null || value.isBlank() ? null : store.category(value.trim()));
+                        break;
+                    case "parent":
+                        changes.put(TaskField.PARENT, TaskTransfer.parseId(value));
+                        break;
+                    case "blockedBy":
+                        changes.put(TaskField.BLOCKED_BY, Task.normalizeIds(TaskTransfer.parseIds(value)));
+                        break;
+                    default:
+                        throw new ApiException(400, "Unknown or read-only field: " + field.getKey());
+                }
+            }
+            Task task = require(id);
+            store.batch(batch -> changes.forEach((field, value) -> batch.update(task, field, value)));
+            send(exchange, 200, appendTask(new StringBuilder(256), require(id)));
+        }
+    }
+
+    private void deleteTask(HttpExchange exchange, long id) throws IOException {
+        try (TaskMetrics.Span span = metrics.span("api.delete")) {
+            store.remove(require(id));
+            exchange.sendResponseHeaders(204, -1);
+        }
+    }
+
+    private Task require(long id) {
+        Task task = store.find(id);
+        if (task == null) {
+            throw new ApiException(404, "No task with id " + id);
+        }
+        return task;
+    }
+
+    private static StringBuilder appendTask(StringBuilder out, Task task) {
+        out.append("{\"id\":").append(task.getId()).append(',');
+        Json.appendField(out, "type", task.getTaskType()).append(',');
+        TaskTransfer.appendJsonFields(out, task);
+        return out.append('}');
+    }
+
+    private static long parseId(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new ApiException(404, "No such resource");
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new ApiException(413, "Request body too large");
+            }
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            // The status line is out already; closing the exchange short of the promised length aborts it
+            return;
+        }
+        StringBuilder out = new StringBuilder("{");
+        Json.appendField(out, "error", message == null ? "" : message).append('}');
+        send(exchange, status, out);
+    }
+
+    /** The filter and paging parameters of a request. */
+    private final class Query {
+        final TaskFilter filter;
+        final boolean completedOnly;
+        final int offset;
+        final int limit;
+        final boolean stream;
+        private final boolean unfiltered;
+
+        Query(HttpExchange exchange) {
+            Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+            Priority priority = parameters.containsKey("priority")
+                    ? TaskTransfer.parsePriority(parameters.get("priority")) : null;
+            Category category = null;
+            String categoryName = parameters.get("category");
+            if (categoryName != null) {
+                category = store.getCategories().get(categoryName);
+                if (category == null) {
+                    // No task can be in a category nobody has used yet
+                    category = new Category(categoryName);
+                }
+            }
+            String completed = parameters.get("completed");
+            completedOnly = completed != null && TaskTransfer.parseBoolean(completed);
+            boolean showCompleted = completed == null || completedOnly;
+            boolean overdue = TaskTransfer.parseBoolean(parameters.get("overdue"));
+            filter = new TaskFilter(priority, category, showCompleted, overdue, parameters.get("q"),
+                    TaskQuery.parse(parameters.get("query")));
+            unfiltered = priority == null && category == null && completed == null && !overdue && !filter.hasText()
+                    && filter.getQuery() == null;
+            offset = Math.max(0, parseInt(parameters.get("offset"), 0));
+            limit = Math.min(MAX_PAGE_SIZE, Math.max(1, parseInt(parameters.get("limit"), DEFAULT_PAGE_SIZE)));
+            stream = TaskTransfer.parseBoolean(parameters.get("stream"))
+                    || String.valueOf(exchange.getRequestHeaders().getFirst("Accept")).contains("application/x-ndjson");
+        }
+
+        boolean isUnfiltered() {
+            return unfiltered;
+        }
+
+        private int parseInt(String value, int fallback) {
+            if (value == null || value.isBlank()) {
+                return fallback;
+            }
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new ApiException(400, "Not a number: " + value);
+            }
+        }
+    }
+
+    private static Map<String, String> parameters(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(key, StandardCharsets.UTF_8).toLowerCase(Locale.ROOT),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+}
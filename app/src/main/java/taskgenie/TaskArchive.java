@@ -0,0 +1,315 @@
+package taskgenie;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only archive of tasks taken out of the store, read through memory
+ * maps so that opening it costs the same however large it is, and no part of
+ * it lives on the heap until a row is asked for.
+ *
+ * {@code archive.idx} holds a header and then one fixed-width record per
+ * task: id, deadline, priority and completion, and where the task's strings
+ * start in {@code archive.txt} and how long they are. Row n is at a computed
+ * offset, so a page of rows is read without touching the rest, and since
+ * strings are appended in row order a page's strings are one contiguous run.
+ *
+ * Appends write the strings, force them, and then write the records that
+ * point at them. A record torn by a crash is cut off when the archive is
+ * next opened; strings without a record are never read. One thread appends
+ * at a time, and readers see rows once the append that wrote them returned.
+ */
+class TaskArchive implements Closeable {
+    static final String INDEX_FILE = "archive.idx";
+    static final String TEXT_FILE = "archive.txt";
+
+    private static final int MAGIC = 0x54474e41;
+    private static final int VERSION = 1;
+    // Both a multiple of the record size, so no record straddles two mapped segments
+    private static final int HEADER_BYTES = 32;
+    private static final int RECORD_BYTES = 32;
+    private static final int SEGMENT_SHIFT = 28;
+    private static final long SEGMENT_BYTES = 1L << SEGMENT_SHIFT;
+    // Rows encoded per write; the strings of each chunk are forced before its records are written
+    private static final int APPEND_CHUNK = 8192;
+
+    // Record layout
+    private static final int ID = 0;
+    private static final int TEXT_OFFSET = 8;
+    private static final int TEXT_LENGTH = 16;
+    private static final int DEADLINE = 20;
+    private static final int PRIORITY = 24;
+    private static final int FLAGS = 25;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final byte COMPLETED = 1;
+
+    /**
+     * Read-only maps of both files up to the rows appended so far. Replaced
+     * as a whole after each append; the segments already full are shared.
+     */
+    private static final class Mapping {
+        final Region index;
+        final Region text;
+        final int size;
+
+        Mapping(Region index, Region text, int size) {
+            this.index = index;
+            this.text = text;
+            this.size = size;
+        }
+    }
+
+    /** A file mapped in segments, as one buffer maps at most 2 GB. */
+    private static final class Region {
+        final long length;
+        final MappedByteBuffer[] segments;
+
+        Region(long length, MappedByteBuffer[] segments) {
+            this.length = length;
+            this.segments = segments;
+        }
+
+        static Region map(FileChannel channel, long length, Region previous) throws IOException {
+            int count = (int) ((length + SEGMENT_BYTES - 1) >>> SEGMENT_SHIFT);
+            MappedByteBuffer[] segments = new MappedByteBuffer[count];
+            // A segment the previous map covered fully is still valid; a partial last one is mapped again
+            int reused = previous == null ? 0 : (int) (previous.length >>> SEGMENT_SHIFT);
+            for (int i = 0; i < count; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                segments[i] = i < reused ? previous.segments[i]
+                        : channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_BYTES, length - start));
+            }
+            return new Region(length, segments);
+        }
+
+        long getLong(long position) {
+            return segments[(int) (position >>> SEGMENT_SHIFT)].getLong((int) (position & (SEGMENT_BYTES - 1)));
+        }
+
+        int getInt(long position) {
+            return segments[(int) (position >>> SEGMENT_SHIFT)].getInt((int) (position & (SEGMENT_BYTES - 1)));
+        }
+
+        byte get(long position) {
+            return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & (SEGMENT_BYTES - 1)));
+        }
+
+        void get(long position, byte[] into, int offset, int length) {
+            while (length > 0) {
+                MappedByteBuffer segment = segments[(int) (position >>> SEGMENT_SHIFT)];
+                int at = (int) (position & (SEGMENT_BYTES - 1));
+                int n = Math.min(length, segment.limit() - at);
+                segment.get(at, into, offset, n);
+                position += n;
+                offset += n;
+                length -= n;
+            }
+        }
+    }
+
+    private final FileChannel indexChannel;
+    private final FileChannel textChannel;
+    private final Object appendLock = new Object();
+    private volatile Mapping mapping;
+
+    private TaskArchive(FileChannel indexChannel, FileChannel textChannel, Mapping mapping) {
+        this.indexChannel = indexChannel;
+        this.textChannel = textChannel;
+        this.mapping = mapping;
+    }
+
+    /** Opens the archive in the directory, creating it if there is none. Reads nothing but the header. */
+    public static TaskArchive open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        FileChannel index = FileChannel.open(directory.resolve(INDEX_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel text = null;
+        try {
+            text = FileChannel.open(directory.resolve(TEXT_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long indexLength = index.size();
+            if (indexLength < HEADER_BYTES) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(VERSION).rewind();
+                writeFully(index, header, 0);
+                index.truncate(HEADER_BYTES);
+                index.force(true);
+                indexLength = HEADER_BYTES;
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(8);
+                readFully(index, header, 0);
+                if (header.getInt(0) != MAGIC) {
+                    throw new IOException(directory.resolve(INDEX_FILE) + " is not a task archive");
+                }
+                if (header.getInt(4) > VERSION) {
+                    throw new IOException(directory.resolve(INDEX_FILE) + " was written by a newer version");
+                }
+            }
+            long rows = (indexLength - HEADER_BYTES) / RECORD_BYTES;
+            if (rows > Integer.MAX_VALUE) {
+                throw new IOException(directory.resolve(INDEX_FILE) + " holds more rows than can be shown");
+            }
+            // Drops a record torn by a crash during an append
+            indexLength = HEADER_BYTES + rows * RECORD_BYTES;
+            index.truncate(indexLength);
+            Mapping mapping = new Mapping(Region.map(index, indexLength, null),
+                    Region.map(text, text.size(), null), (int) rows);
+            return new TaskArchive(index, text, mapping);
+        } catch (IOException | RuntimeException e) {
+            index.close();
+            if (text != null) {
+                text.close();
+            }
+            throw e;
+        }
+    }
+
+    /** Number of archived tasks. */
+    public int size() {
+        return mapping.size;
+    }
+
+    /**
+     * Appends the records as new rows, in order, and returns once they are
+     * on disk. Records keep their fields but not their links: the tasks they
+     * pointed at may be archived, deleted or changed by the time anyone looks.
+     * If the append fails, none of the records become rows.
+     */
+    public void append(List<TaskRecord> records) throws IOException {
+        synchronized (appendLock) {
+            Mapping current = mapping;
+            try {
+                write(current, records);
+            } catch (IOException e) {
+                // Records of earlier chunks may already be written; they must not show up on the next open
+                try {
+                    indexChannel.truncate(current.index.length);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void write(Mapping current, List<TaskRecord> records) throws IOException {
+        if ((long) current.size + records.size() > Integer.MAX_VALUE) {
+            throw new IOException("The archive is full");
+        }
+        long indexEnd = current.index.length;
+        long textEnd = textChannel.size();
+        ByteArrayOutputStream strings = new ByteArrayOutputStream(APPEND_CHUNK * 64);
+        DataOutputStream out = new DataOutputStream(strings);
+        ByteBuffer rows = ByteBuffer.allocate(APPEND_CHUNK * RECORD_BYTES);
+        for (int from = 0; from < records.size(); from += APPEND_CHUNK) {
+            List<TaskRecord> chunk = records.subList(from, Math.min(records.size(), from + APPEND_CHUNK));
+            strings.reset();
+            rows.clear();
+            for (TaskRecord record : chunk) {
+                int start = strings.size();
+                TaskRecord.writeString(out, record.name);
+                TaskRecord.writeString(out, record.description);
+                TaskRecord.writeString(out, record.category);
+                TaskRecord.writeString(out, record.recurrence);
+                rows.putLong(record.id)
+                        .putLong(textEnd + start)
+                        .putInt(strings.size() - start)
+                        .putInt(record.deadline == null ? NO_DATE : (int) record.deadline.toEpochDay())
+                        .put((byte) (record.priority == null ? -1 : record.priority.ordinal()))
+                        .put(record.completed ? COMPLETED : 0);
+                // The rest of the record is reserved and stays zero
+                rows.position(rows.position() + RECORD_BYTES - FLAGS - 1);
+            }
+            out.flush();
+            writeFully(textChannel, ByteBuffer.wrap(strings.toByteArray()), textEnd);
+            textChannel.force(false);
+            textEnd += strings.size();
+            rows.flip();
+            writeFully(indexChannel, rows, indexEnd);
+            indexEnd += (long) chunk.size() * RECORD_BYTES;
+        }
+        indexChannel.force(false);
+        mapping = new Mapping(Region.map(indexChannel, indexEnd, current.index),
+                Region.map(textChannel, textEnd, current.text), current.size + records.size());
+    }
+
+    /** Reads {@code count} rows starting at row {@code from}, which must all exist. */
+    public List<TaskRecord> read(int from, int count) {
+        Mapping current = mapping;
+        if (from < 0 || count < 0 || from > current.size - count) {
+            throw new IndexOutOfBoundsException("Rows " + from + ".." + (from + count) + " of " + current.size);
+        }
+        List<TaskRecord> records = new ArrayList<>(count);
+        if (count == 0) {
+            return records;
+        }
+        long first = HEADER_BYTES + (long) from * RECORD_BYTES;
+        long last = first + (long) (count - 1) * RECORD_BYTES;
+        long textStart = current.index.getLong(first + TEXT_OFFSET);
+        long textEnd = current.index.getLong(last + TEXT_OFFSET) + current.index.getInt(last + TEXT_LENGTH);
+        // The page's strings in one copy out of the map
+        byte[] text = new byte[Math.toIntExact(textEnd - textStart)];
+        current.text.get(textStart, text, 0, text.length);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(text));
+        try {
+            for (long position = first; position <= last; position += RECORD_BYTES) {
+                TaskRecord record = new TaskRecord();
+                record.id = current.index.getLong(position + ID);
+                int deadline = current.index.getInt(position + DEADLINE);
+                record.deadline = deadline == NO_DATE ? null : LocalDate.ofEpochDay(deadline);
+                byte priority = current.index.get(position + PRIORITY);
+                record.priority = priority < 0 ? null : Priority.values()[priority];
+                record.completed = (current.index.get(position + FLAGS) & COMPLETED) != 0;
+                record.name = TaskRecord.readString(in);
+                record.description = TaskRecord.readString(in);
+                record.category = TaskRecord.readString(in);
+                record.recurrence = TaskRecord.readString(in);
+                records.add(record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Archive rows " + from + ".." + (from + count) + " are damaged", e);
+        }
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            try {
+                indexChannel.close();
+            } finally {
+                textChannel.close();
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new IOException("Unexpected end of the archive");
+            }
+            position += n;
+        }
+    }
+}
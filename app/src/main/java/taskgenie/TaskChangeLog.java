@@ -0,0 +1,586 @@
+package taskgenie;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded log of the adds, edits and deletes applied to a store, the source
+ * of the change feed other instances sync from. Each entry carries two clocks:
+ * the store version it was applied at, which orders the feed and is what a
+ * reader's cursor points into, and the stamp of the original edit together
+ * with the node that made it, which decides conflicts. For local edits the
+ * stamp comes from a hybrid logical clock (wall-clock milliseconds with a
+ * counter in the low bits, never behind any stamp seen), so stamps keep
+ * increasing across restarts and edits made after seeing a remote change
+ * always win over it.
+ *
+ * The log keeps the newest {@code capacity} entries in a ring. Apart from
+ * the ring it keeps, for every task, the stamp and node of the last change to
+ * each field, and for every deleted task a tombstone; conflict resolution
+ * compares against these, and reset pages send them, so they outlive the
+ * ring. They are saved with the tasks and restored through {@link #restore}
+ * after a restart. Guarded by the store's lock.
+ */
+class TaskChangeLog {
+    static final int DEFAULT_CAPACITY = 100_000;
+
+    static final byte ADD = 1;
+    static final byte UPDATE = 2;
+    static final byte DELETE = 3;
+    // A task with per-field stamps, sent when a reader has to start over
+    static final byte PUT = 4;
+
+    // Format 3: reset pages carry the slot the next one starts from
+    private static final int FORMAT = 3;
+    // Bits of the stamp left for the logical counter below the milliseconds
+    private static final int COUNTER_BITS = 12;
+    private static final int FIELDS = TaskField.values().length;
+
+    /** One change. Immutable. */
+    static final class Entry {
+        final byte kind;
+        final long version;
+        final long stamp;
+        final int node;
+        final long id;
+        // UPDATE only
+        final TaskField field;
+        final Object value;
+        // ADD and PUT; a local add holds the task instead and copies it when encoded
+        private final TaskRecord record;
+        private final Task task;
+        // PUT only: the stamp and node of each field's last change, by field ordinal
+        final long[] stamps;
+        final int[] nodes;
+
+        Entry(byte kind, long version, long stamp, int node, long id, TaskField field, Object value,
+              TaskRecord record, long[] stamps, int[] nodes) {
+            this(kind, version, stamp, node, id, field, value, record, null, stamps, nodes);
+        }
+
+        private Entry(byte kind, long version, long stamp, int node, long id, TaskField field, Object value,
+                      TaskRecord record, Task task, long[] stamps, int[] nodes) {
+            this.kind = kind;
+            this.version = version;
+            this.stamp = stamp;
+            this.node = node;
+            this.id = id;
+            this.field = field;
+            this.value = value;
+            this.record = record;
+            this.task = task;
+            this.stamps = stamps;
+            this.nodes = nodes;
+        }
+
+        static Entry add(long version, long stamp, int node, TaskRecord record) {
+            return new Entry(ADD, version, stamp, node, record.id, null, null, record, null, null);
+        }
+
+        /**
+         * A local add. The task may have been edited or removed since, but
+         * those changes follow in the log, so sending its current values with
+         * the add's stamp still converges.
+         */
+        static Entry add(long version, long stamp, int node, Task task) {
+            return new Entry(ADD, version, stamp, node, task.getId(), null, null, null, task, null, null);
+        }
+
+        TaskRecord record() {
+            return record != null ? record : TaskRecord.of(task);
+        }
+
+        static Entry update(long version, long stamp, int node, long id, TaskField field, Object value) {
+            return new Entry(UPDATE, version, stamp, node, id, field, value, null, null, null);
+        }
+
+        static Entry delete(long version, long stamp, int node, long id) {
+            return new Entry(DELETE, version, stamp, node, id, null, null, null, null, null);
+        }
+
+        /** Stamp of the last change to the field as of this entry. */
+        long stampOf(TaskField field) {
+            return kind == PUT ? stamps[field.ordinal()] : stamp;
+        }
+
+        int nodeOf(TaskField field) {
+            return kind == PUT ? nodes[field.ordinal()] : node;
+        }
+    }
+
+    /**
+     * A decoded feed page: the changes of one source after a reader's cursor,
+     * and the cursor to ask with next time. A reset page replaces the cursor's
+     * history with the source's current tasks, sent as PUT entries over as
+     * many pages as it takes; {@code nextSlot} is where the next one starts,
+     * or 0 on the last.
+     */
+    static final class Delta {
+        final long epoch;
+        final int node;
+        final long fromVersion;
+        final long toVersion;
+        final boolean reset;
+        final int nextSlot;
+        final List<Entry> entries;
+
+        Delta(long epoch, int node, long fromVersion, long toVersion, boolean reset, int nextSlot,
+              List<Entry> entries) {
+            this.epoch = epoch;
+            this.node = node;
+            this.fromVersion = fromVersion;
+            this.toVersion = toVersion;
+            this.reset = reset;
+            this.nextSlot = nextSlot;
+            this.entries = entries;
+        }
+    }
+
+    /** Stamp and node of the last change to each field of a task edited since it arrived. */
+    private static final class FieldStamps {
+        final long[] stamps = new long[FIELDS];
+        final int[] nodes = new int[FIELDS];
+    }
+
+    private final Entry[] ring;
+    private int head;
+    private int size;
+    // Version of the newest entry dropped from the ring; readers behind it must start over
+    private long evictedThrough;
+    private long lastStamp;
+    // Stamp and node each task arrived with, or of its delete; a task never edited needs nothing else
+    private final StampTable arrivals = new StampTable();
+    private final Map<Long, FieldStamps> edited = new HashMap<>();
+
+    TaskChangeLog(int capacity) {
+        ring = new Entry[capacity];
+    }
+
+    /** Next stamp for a local edit. */
+    long stamp() {
+        long wall = System.currentTimeMillis() << COUNTER_BITS;
+        lastStamp = Math.max(lastStamp + 1, wall);
+        return lastStamp;
+    }
+
+    /** Moves the clock past a stamp received from another node. */
+    void observe(long stamp) {
+        lastStamp = Math.max(lastStamp, stamp);
+    }
+
+    void append(Entry entry) {
+        if (size == ring.length) {
+            evictedThrough = ring[head].version;
+            ring[head] = entry;
+            head = (head + 1) % ring.length;
+        } else {
+            ring[(head + size++) % ring.length] = entry;
+        }
+        track(entry);
+    }
+
+    /**
+     * Takes the stamps of a PUT or DELETE entry read back from storage
+     * without adding it to the feed, and moves the clock past them.
+     */
+    void restore(Entry entry) {
+        observe(entry.stamp);
+        if (entry.kind == PUT) {
+            for (long stamp : entry.stamps) {
+                observe(stamp);
+            }
+        }
+        track(entry);
+    }
+
+    private void track(Entry entry) {
+        switch (entry.kind) {
+            case UPDATE: {
+                FieldStamps fields = edited.get(entry.id);
+                if (fields == null) {
+                    fields = new FieldStamps();
+                    long stamp = arrivals.stamp(entry.id);
+                    int node = Math.max(0, arrivals.node(entry.id));
+                    Arrays.fill(fields.stamps, stamp);
+                    Arrays.fill(fields.nodes, node);
+                    edited.put(entry.id, fields);
+                }
+                fields.stamps[entry.field.ordinal()] = entry.stamp;
+                fields.nodes[entry.field.ordinal()] = entry.node;
+                break;
+            }
+            case DELETE:
+                edited.remove(entry.id);
+                arrivals.put(entry.id, entry.stamp, ~entry.node);
+                break;
+            case PUT:
+                arrivals.put(entry.id, entry.stamps[0], entry.nodes[0]);
+                edited.remove(entry.id);
+                for (int i = 1; i < FIELDS; i++) {
+                    if (entry.stamps[i] != entry.stamps[0] || entry.nodes[i] != entry.nodes[0]) {
+                        FieldStamps fields = new FieldStamps();
+                        System.arraycopy(entry.stamps, 0, fields.stamps, 0, FIELDS);
+                        System.arraycopy(entry.nodes, 0, fields.nodes, 0, FIELDS);
+                        edited.put(entry.id, fields);
+                        break;
+                    }
+                }
+                break;
+            default:
+                arrivals.put(entry.id, entry.stamp, entry.node);
+                edited.remove(entry.id);
+                break;
+        }
+    }
+
+    /** Stamp of the last change to the task's field, or 0 if none is known. */
+    long stampOf(long id, TaskField field) {
+        FieldStamps fields = edited.get(id);
+        return fields != null ? fields.stamps[field.ordinal()] : arrivals.stamp(id);
+    }
+
+    /** Node that made the last change to the task's field, or 0 if none is known. */
+    int nodeOf(long id, TaskField field) {
+        FieldStamps fields = edited.get(id);
+        return fields != null ? fields.nodes[field.ordinal()] : Math.max(0, arrivals.node(id));
+    }
+
+    /** Tells whether the task was deleted. */
+    boolean isDeleted(long id) {
+        return arrivals.node(id) < 0;
+    }
+
+    /**
+     * The changes applied after {@code version}, whole batches only and about
+     * {@code limit} entries at most, or null if some of them have already
+     * been dropped from the ring.
+     */
+    List<Entry> since(long version, int limit) {
+        if (version < evictedThrough) {
+            return null;
+        }
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (at(mid).version <= version) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        List<Entry> result = new ArrayList<>();
+        for (int i = low; i < size; i++) {
+            Entry entry = at(i);
+            if (result.size() >= limit && entry.version != result.get(result.size() - 1).version) {
+                break;
+            }
+            result.add(entry);
+        }
+        return result;
+    }
+
+    /** A PUT entry for a live task, with the stamps of its last changes. */
+    Entry put(Task task, long version, int node) {
+        long id = task.getId();
+        long[] stamps = new long[FIELDS];
+        int[] nodes = new int[FIELDS];
+        FieldStamps fields = edited.get(id);
+        if (fields != null) {
+            System.arraycopy(fields.stamps, 0, stamps, 0, FIELDS);
+            System.arraycopy(fields.nodes, 0, nodes, 0, FIELDS);
+        } else {
+            Arrays.fill(stamps, arrivals.stamp(id));
+            Arrays.fill(nodes, Math.max(0, arrivals.node(id)));
+        }
+        return new Entry(PUT, version, 0, node, id, null, null, TaskRecord.of(task), stamps, nodes);
+    }
+
+    /** A DELETE entry for every deleted task, with the stamp and node of the delete. */
+    List<Entry> tombstones(long version) {
+        List<Entry> entries = new ArrayList<>();
+        arrivals.forEach((id, stamp, node) -> {
+            if (node < 0) {
+                entries.add(Entry.delete(version, stamp, ~node, id));
+            }
+        });
+        return entries;
+    }
+
+    private Entry at(int index) {
+        return ring[(head + index) % ring.length];
+    }
+
+    int size() {
+        return size;
+    }
+
+    // --- Encoding ---
+
+    /**
+     * Encodes a feed page. Versions and stamps are written as differences
+     * from the previous entry's, and every integer as a variable-length
+     * quantity, so a typical edit costs a dozen bytes plus its value.
+     */
+    static byte[] encode(Delta delta) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + delta.entries.size() * 24);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            writeVarLong(out, FORMAT);
+            out.writeLong(delta.epoch);
+            writeVarLong(out, delta.node);
+            writeVarLong(out, delta.fromVersion);
+            writeVarLong(out, delta.toVersion);
+            out.writeBoolean(delta.reset);
+            writeVarLong(out, delta.nextSlot);
+            writeVarLong(out, delta.entries.size());
+            long version = delta.fromVersion;
+            long stamp = 0;
+            for (Entry entry : delta.entries) {
+                out.writeByte(entry.kind);
+                writeVarLong(out, entry.version - version);
+                writeVarLong(out, zigzag(entry.stamp - stamp));
+                writeVarLong(out, entry.node);
+                writeVarLong(out, entry.id);
+                version = entry.version;
+                stamp = entry.stamp;
+                writeBody(out, entry);
+            }
+        } catch (IOException e) {
+            // Writing to memory
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Decodes a page written by {@link #encode}; throws IllegalArgumentException if it is malformed. */
+    static Delta decode(byte[] data) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        try {
+            long format = readVarLong(in);
+            if (format != FORMAT) {
+                throw new IllegalArgumentException("Unsupported change feed format " + format);
+            }
+            long epoch = in.readLong();
+            int source = (int) readVarLong(in);
+            long fromVersion = readVarLong(in);
+            long toVersion = readVarLong(in);
+            boolean reset = in.readBoolean();
+            int nextSlot = Math.toIntExact(readVarLong(in));
+            int count = Math.toIntExact(readVarLong(in));
+            List<Entry> entries = new ArrayList<>(Math.min(count, 1 << 16));
+            long version = fromVersion;
+            long stamp = 0;
+            for (int n = 0; n < count; n++) {
+                byte kind = in.readByte();
+                version += readVarLong(in);
+                stamp += unzigzag(readVarLong(in));
+                int node = (int) readVarLong(in);
+                long id = readVarLong(in);
+                entries.add(readBody(in, kind, version, stamp, node, id));
+            }
+            if (in.available() > 0) {
+                throw new IllegalArgumentException("Trailing bytes after the change feed");
+            }
+            return new Delta(epoch, source, fromVersion, toVersion, reset, nextSlot,
+                    Collections.unmodifiableList(entries));
+        } catch (IOException | IndexOutOfBoundsException | ArithmeticException e) {
+            throw new IllegalArgumentException("Malformed change feed", e);
+        }
+    }
+
+    /**
+     * Writes one entry on its own, stamps included but not its version, as
+     * the journal stores it.
+     */
+    static void writeEntry(DataOutput out, Entry entry) throws IOException {
+        out.writeByte(entry.kind);
+        writeVarLong(out, entry.stamp);
+        writeVarLong(out, entry.node);
+        writeVarLong(out, entry.id);
+        writeBody(out, entry);
+    }
+
+    /** Reads an entry written by {@link #writeEntry}; its version is 0. */
+    static Entry readEntry(DataInput in) throws IOException {
+        byte kind = in.readByte();
+        long stamp = readVarLong(in);
+        int node = (int) readVarLong(in);
+        long id = readVarLong(in);
+        try {
+            return readBody(in, kind, 0, stamp, node, id);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Malformed change entry", e);
+        }
+    }
+
+    private static void writeBody(DataOutput out, Entry entry) throws IOException {
+        switch (entry.kind) {
+            case UPDATE:
+                TaskRecord.writeValue(out, entry.field, entry.value);
+                break;
+            case ADD:
+                entry.record().write(out);
+                break;
+            case PUT:
+                entry.record().write(out);
+                for (int i = 0; i < FIELDS; i++) {
+                    writeVarLong(out, entry.stamps[i]);
+                    writeVarLong(out, entry.nodes[i]);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static Entry readBody(DataInput in, byte kind, long version, long stamp, int node, long id)
+            throws IOException {
+        switch (kind) {
+            case UPDATE:
+                TaskField field = TaskRecord.readField(in);
+                return Entry.update(version, stamp, node, id, field, TaskRecord.readValue(in, field));
+            case ADD:
+                return Entry.add(version, stamp, node, TaskRecord.read(in));
+            case DELETE:
+                return Entry.delete(version, stamp, node, id);
+            case PUT:
+                TaskRecord record = TaskRecord.read(in);
+                long[] stamps = new long[FIELDS];
+                int[] nodes = new int[FIELDS];
+                for (int i = 0; i < FIELDS; i++) {
+                    stamps[i] = readVarLong(in);
+                    nodes[i] = (int) readVarLong(in);
+                }
+                return new Entry(PUT, version, stamp, node, id, null, null, record, stamps, nodes);
+            default:
+                throw new IllegalArgumentException("Unknown change kind " + kind);
+        }
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Variable-length integer too long");
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Task id to a stamp and node, for every task the log has seen, deleted
+     * ones included, so a boxed map would cost more than the tasks' own
+     * fields. Open addressing with linear probing over parallel arrays, as
+     * in the store's id index; entries are never removed.
+     */
+    private static final class StampTable {
+        private static final long EMPTY = 0; // Ids start at 1
+
+        interface Visitor {
+            void visit(long id, long stamp, int node);
+        }
+
+        private long[] keys = new long[64];
+        private long[] stamps = new long[64];
+        private int[] nodes = new int[64];
+        private int size;
+
+        /** The stamp stored for the id, or 0 if there is none. */
+        long stamp(long id) {
+            int i = find(id);
+            return i < 0 ? 0 : stamps[i];
+        }
+
+        /** The node stored for the id, or 0 if there is none. */
+        int node(long id) {
+            int i = find(id);
+            return i < 0 ? 0 : nodes[i];
+        }
+
+        void put(long id, long stamp, int node) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int i = hash(id) & mask;
+            while (keys[i] != EMPTY && keys[i] != id) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == EMPTY) {
+                size++;
+            }
+            keys[i] = id;
+            stamps[i] = stamp;
+            nodes[i] = node;
+        }
+
+        void forEach(Visitor visitor) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    visitor.visit(keys[i], stamps[i], nodes[i]);
+                }
+            }
+        }
+
+        private int find(long id) {
+            int mask = keys.length - 1;
+            for (int i = hash(id) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+                if (keys[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            long[] oldStamps = stamps;
+            int[] oldNodes = nodes;
+            keys = new long[capacity];
+            stamps = new long[capacity];
+            nodes = new int[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    put(oldKeys[i], oldStamps[i], oldNodes[i]);
+                }
+            }
+        }
+
+        private static int hash(long id) {
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
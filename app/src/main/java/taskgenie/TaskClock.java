@@ -0,0 +1,46 @@
+package taskgenie;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+
+/**
+ * The app's single notion of "today". The date is read from the wall clock
+ * once and cached; {@link DeadlineScheduler} calls {@link #refresh()} to move
+ * it forward, so every overdue check in a pass agrees on the same day.
+ */
+class TaskClock {
+    private final Clock clock;
+    private volatile LocalDate today;
+
+    public TaskClock() {
+        this(Clock.systemDefaultZone());
+    }
+
+    public TaskClock(Clock clock) {
+        this.clock = clock;
+        this.today = LocalDate.now(clock);
+    }
+
+    public LocalDate today() {
+        return today;
+    }
+
+    /** Re-reads the wall clock and returns whether the date changed. */
+    public boolean refresh() {
+        LocalDate now = LocalDate.now(clock);
+        if (now.equals(today)) {
+            return false;
+        }
+        today = now;
+        return true;
+    }
+
+    /** Time left until the wall clock reaches the next day. */
+    public Duration untilNextDay() {
+        ZonedDateTime now = ZonedDateTime.now(clock);
+        ZonedDateTime midnight = now.toLocalDate().plusDays(1).atStartOfDay(now.getZone());
+        return Duration.between(now, midnight);
+    }
+}
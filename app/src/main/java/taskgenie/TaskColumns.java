@@ -0,0 +1,391 @@
+package taskgenie;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Struct-of-arrays task storage for {@link TaskStore.Storage#COLUMNAR}. Each
+ * field is a primitive column indexed by slot: deadlines as epoch days,
+ * priority and category as small dictionary codes, completion as a bit set,
+ * and names and descriptions as references into one shared byte arena. The
+ * store keeps a single small {@link View} per slot. Views hold no field
+ * values, so a task costs a few dozen bytes instead of a task object with its
+ * own strings and date.
+ *
+ * Columns are written only under the store's write lock. Views may be read
+ * from any thread: a read first tries an optimistic stamp and falls back to
+ * the read lock if a write got in the way.
+ */
+class TaskColumns {
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final long NO_TEXT = -1;
+    // Set in the length half of a text reference when the bytes are UTF-8 rather than Latin-1
+    private static final int UTF8 = 1 << 31;
+    private static final int MIN_GARBAGE_TO_COMPACT = 1 << 20;
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private static final Reader<String> NAME = (columns, view, slot) ->
+            slot < 0 ? view.detached.getName() : columns.text(columns.names[slot]);
+    private static final Reader<String> DESCRIPTION = (columns, view, slot) ->
+            slot < 0 ? view.detached.getDescription() : columns.text(columns.descriptions[slot]);
+    private static final Reader<Priority> PRIORITY = (columns, view, slot) ->
+            slot < 0 ? view.detached.getPriority() : columns.priority(slot);
+    private static final Reader<LocalDate> DEADLINE = (columns, view, slot) ->
+            slot < 0 ? view.detached.getDeadline() : columns.deadline(slot);
+    private static final Reader<Boolean> COMPLETED = (columns, view, slot) ->
+            slot < 0 ? view.detached.isCompleted() : columns.completed.get(slot);
+    private static final Reader<Category> CATEGORY = (columns, view, slot) ->
+            slot < 0 ? view.detached.getCategory() : columns.category(slot);
+    private static final Reader<Recurrence> RECURRENCE = (columns, view, slot) ->
+            slot < 0 ? view.detached.getRecurrence() : columns.recurrences.get(slot);
+    private static final Reader<Long> PARENT = (columns, view, slot) ->
+            slot < 0 ? view.detached.getParentId() : columns.parents.get(slot);
+    private static final Reader<List<Long>> BLOCKED_BY = (columns, view, slot) ->
+            slot < 0 ? view.detached.getBlockedBy() : columns.blockers.getOrDefault(slot, List.of());
+
+    private interface Reader<T> {
+        T read(TaskColumns columns, View view, int slot);
+    }
+
+    private final StampedLock lock;
+    private final BooleanSupplier writing;
+
+    private int capacity;
+    private int[] deadlines = new int[0];
+    private byte[] priorities = new byte[0];
+    private short[] categories = new short[0];
+    private final BitSet completed = new BitSet();
+    private long[] names = new long[0];
+    private long[] descriptions = new long[0];
+
+    private Category[] categoryTable = new Category[16];
+    private final Map<Category, Integer> categoryCodes = new IdentityHashMap<>();
+    // Sparse: only recurring tasks have a rule. Concurrent, as optimistic reads may race a write
+    private final Map<Integer, Recurrence> recurrences = new ConcurrentHashMap<>();
+    // Sparse as well: most tasks have no parent and no blockers
+    private final Map<Integer, Long> parents = new ConcurrentHashMap<>();
+    private final Map<Integer, List<Long>> blockers = new ConcurrentHashMap<>();
+
+    private byte[] text = new byte[1 << 16];
+    private int textLength;
+    private long garbage;
+
+    /**
+     * @param lock    the store's lock, validated by readers
+     * @param writing tells whether the calling thread holds the write lock
+     */
+    TaskColumns(StampedLock lock, BooleanSupplier writing) {
+        this.lock = lock;
+        this.writing = writing;
+    }
+
+    /**
+     * Stores the task's values in {@code slot} and returns the view for it.
+     * A view of these columns that was detached earlier is reattached as the
+     * same object; any other task is copied into a new view.
+     */
+    View attach(int slot, Task task) {
+        if (!RegularTask.TYPE.equals(task.getTaskType()) && !RecurringTask.TYPE.equals(task.getTaskType())) {
+            throw new IllegalArgumentException("Columnar storage holds regular and recurring tasks only: "
+                    + task.getTaskType());
+        }
+        ensureCapacity(slot + 1);
+        names[slot] = append(task.getName());
+        descriptions[slot] = append(task.getDescription());
+        priorities[slot] = (byte) (task.getPriority() == null ? -1 : task.getPriority().ordinal());
+        deadlines[slot] = task.getDeadline() == null ? NO_DATE : Math.toIntExact(task.getDeadline().toEpochDay());
+        categories[slot] = code(task.getCategory());
+        completed.set(slot, task.isCompleted());
+        if (task.getRecurrence() != null) {
+            recurrences.put(slot, task.getRecurrence());
+        }
+        if (task.getParentId() != null) {
+            parents.put(slot, task.getParentId());
+        }
+        if (!task.getBlockedBy().isEmpty()) {
+            blockers.put(slot, task.getBlockedBy());
+        }
+
+        View view;
+        if (task instanceof View && ((View) task).owner() == this) {
+            view = (View) task;
+        } else {
+            view = new View();
+            view.setId(task.getId());
+        }
+        view.detached = null;
+        return view;
+    }
+
+    /**
+     * Copies the view's values onto the view itself and clears its slot, so the
+     * view stays readable after removal and can be attached again on undo.
+     */
+    void detach(View view) {
+        int slot = view.getSlot();
+        Recurrence recurrence = recurrences.remove(slot);
+        HeapTask copy = recurrence == null
+                ? new RegularTask(text(names[slot]), text(descriptions[slot]), priority(slot),
+                        deadline(slot), category(slot))
+                : new RecurringTask(text(names[slot]), text(descriptions[slot]), priority(slot),
+                        deadline(slot), category(slot), recurrence);
+        copy.setCompleted(completed.get(slot));
+        copy.setParentId(parents.remove(slot));
+        List<Long> blockedBy = blockers.remove(slot);
+        if (blockedBy != null) {
+            copy.setBlockedBy(blockedBy);
+        }
+        view.detached = copy;
+        release(names[slot]);
+        release(descriptions[slot]);
+        names[slot] = NO_TEXT;
+        descriptions[slot] = NO_TEXT;
+        completed.clear(slot);
+        compactIfWasteful();
+    }
+
+    private <T> T read(View view, Reader<T> reader) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T value = reader.read(this, view, view.getSlot());
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            } catch (RuntimeException e) {
+                // A concurrent write can leave an optimistic read looking at a half-updated column
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+        } else if (writing.getAsBoolean()) {
+            return reader.read(this, view, view.getSlot());
+        }
+        stamp = lock.readLock();
+        try {
+            return reader.read(this, view, view.getSlot());
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private Priority priority(int slot) {
+        byte code = priorities[slot];
+        return code < 0 ? null : PRIORITIES[code];
+    }
+
+    private LocalDate deadline(int slot) {
+        int day = deadlines[slot];
+        return day == NO_DATE ? null : LocalDate.ofEpochDay(day);
+    }
+
+    private Category category(int slot) {
+        short code = categories[slot];
+        return code < 0 ? null : categoryTable[code];
+    }
+
+    private short code(Category category) {
+        if (category == null) {
+            return -1;
+        }
+        Integer code = categoryCodes.get(category);
+        if (code == null) {
+            code = categoryCodes.size();
+            if (code > Short.MAX_VALUE) {
+                throw new IllegalStateException("Too many categories for columnar storage");
+            }
+            if (code == categoryTable.length) {
+                categoryTable = Arrays.copyOf(categoryTable, code * 2);
+            }
+            categoryTable[code] = category;
+            categoryCodes.put(category, code);
+        }
+        return (short) (int) code;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(required, Math.max(16, capacity + (capacity >> 1)));
+        deadlines = Arrays.copyOf(deadlines, newCapacity);
+        priorities = Arrays.copyOf(priorities, newCapacity);
+        categories = Arrays.copyOf(categories, newCapacity);
+        names = Arrays.copyOf(names, newCapacity);
+        descriptions = Arrays.copyOf(descriptions, newCapacity);
+        Arrays.fill(names, capacity, newCapacity, NO_TEXT);
+        Arrays.fill(descriptions, capacity, newCapacity, NO_TEXT);
+        capacity = newCapacity;
+    }
+
+    // Text arena. A reference packs the offset into the high int and the
+    // length, plus the UTF-8 flag, into the low int.
+
+    private String text(long ref) {
+        if (ref == NO_TEXT) {
+            return null;
+        }
+        byte[] bytes = text;
+        int offset = (int) (ref >>> 32);
+        int length = (int) ref & ~UTF8;
+        if (offset + length > bytes.length) {
+            throw new IllegalStateException("Stale text reference");
+        }
+        return new String(bytes, offset, length,
+                ((int) ref & UTF8) != 0 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+    }
+
+    private long append(String value) {
+        if (value == null) {
+            return NO_TEXT;
+        }
+        boolean latin1 = true;
+        for (int i = 0; i < value.length() && latin1; i++) {
+            latin1 = value.charAt(i) < 256;
+        }
+        byte[] bytes = value.getBytes(latin1 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+        return append(bytes, 0, bytes.length, latin1 ? 0 : UTF8);
+    }
+
+    private long append(byte[] bytes, int offset, int length, int flags) {
+        if (textLength + length > text.length) {
+            long needed = (long) textLength + length;
+            if (needed > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Text arena is full");
+            }
+            text = Arrays.copyOf(text, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, text.length + (text.length >> 1))));
+        }
+        System.arraycopy(bytes, offset, text, textLength, length);
+        long ref = ((long) textLength << 32) | (length | flags) & 0xffffffffL;
+        textLength += length;
+        return ref;
+    }
+
+    private void release(long ref) {
+        if (ref != NO_TEXT) {
+            garbage += (int) ref & ~UTF8;
+        }
+    }
+
+    /** Copies the live text into a fresh arena once most of the old one is dead. */
+    private void compactIfWasteful() {
+        if (garbage < MIN_GARBAGE_TO_COMPACT || garbage < textLength / 2) {
+            return;
+        }
+        byte[] old = text;
+        text = new byte[Math.max(1 << 16, (int) ((textLength - garbage) * 3 / 2))];
+        textLength = 0;
+        garbage = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            names[slot] = move(old, names[slot]);
+            descriptions[slot] = move(old, descriptions[slot]);
+        }
+    }
+
+    private long move(byte[] from, long ref) {
+        if (ref == NO_TEXT) {
+            return NO_TEXT;
+        }
+        int flags = (int) ref & UTF8;
+        return append(from, (int) (ref >>> 32), (int) ref & ~UTF8, flags);
+    }
+
+    private void overwrite(long[] column, int slot, String value) {
+        release(column[slot]);
+        column[slot] = append(value);
+        compactIfWasteful();
+    }
+
+    /**
+     * Flyweight task over one slot of the columns. Writes go straight to the
+     * columns and come only from the store, under its write lock.
+     */
+    final class View extends Task {
+        // Values captured on removal, while the view is not attached to a slot
+        private HeapTask detached;
+
+        private View() {
+        }
+
+        TaskColumns owner() {
+            return TaskColumns.this;
+        }
+
+        @Override
+        public String getTaskType() {
+            return getRecurrence() == null ? RegularTask.TYPE : RecurringTask.TYPE;
+        }
+
+        @Override
+        public Recurrence getRecurrence() {
+            return read(this, RECURRENCE);
+        }
+
+        @Override public String getName() { return read(this, NAME); }
+        @Override public String getDescription() { return read(this, DESCRIPTION); }
+        @Override public Priority getPriority() { return read(this, PRIORITY); }
+        @Override public LocalDate getDeadline() { return read(this, DEADLINE); }
+        @Override public boolean isCompleted() { return read(this, COMPLETED); }
+        @Override public Category getCategory() { return read(this, CATEGORY); }
+        @Override public Long getParentId() { return read(this, PARENT); }
+        @Override public List<Long> getBlockedBy() { return read(this, BLOCKED_BY); }
+
+        @Override
+        protected void writeName(String name) {
+            if (getSlot() < 0) detached.setName(name);
+            else overwrite(names, getSlot(), name);
+        }
+
+        @Override
+        protected void writeDescription(String description) {
+            if (getSlot() < 0) detached.setDescription(description);
+            else overwrite(descriptions, getSlot(), description);
+        }
+
+        @Override
+        protected void writePriority(Priority priority) {
+            if (getSlot() < 0) detached.setPriority(priority);
+            else priorities[getSlot()] = (byte) (priority == null ? -1 : priority.ordinal());
+        }
+
+        @Override
+        protected void writeDeadline(LocalDate deadline) {
+            if (getSlot() < 0) detached.setDeadline(deadline);
+            else deadlines[getSlot()] = deadline == null ? NO_DATE : Math.toIntExact(deadline.toEpochDay());
+        }
+
+        @Override
+        protected void writeCompleted(boolean value) {
+            if (getSlot() < 0) detached.setCompleted(value);
+            else completed.set(getSlot(), value);
+        }
+
+        @Override
+        protected void writeCategory(Category category) {
+            if (getSlot() < 0) detached.setCategory(category);
+            else categories[getSlot()] = code(category);
+        }
+
+        @Override
+        protected void writeParentId(Long parentId) {
+            if (getSlot() < 0) detached.setParentId(parentId);
+            else if (parentId == null) parents.remove(getSlot());
+            else parents.put(getSlot(), parentId);
+        }
+
+        @Override
+        protected void writeBlockedBy(List<Long> blockedBy) {
+            if (getSlot() < 0) detached.setBlockedBy(blockedBy);
+            else if (blockedBy.isEmpty()) blockers.remove(getSlot());
+            else blockers.put(getSlot(), blockedBy);
+        }
+    }
+}
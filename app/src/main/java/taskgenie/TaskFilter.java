@@ -0,0 +1,81 @@
+package taskgenie;
+
+import java.time.LocalDate;
+
+/**
+ * Immutable description of the filter panel state. A {@code null} priority or
+ * category means "all"; blank search text matches every task. A query, when
+ * present, must hold as well as the fixed controls.
+ */
+class TaskFilter {
+    // Declared before ALL, which needs it during class initialization
+    private static final String[] NO_TERMS = new String[0];
+
+    public static final TaskFilter ALL = new TaskFilter(null, null, true, false);
+
+    private final Priority priority;
+    private final Category category;
+    private final boolean showCompleted;
+    private final boolean overdueOnly;
+    private final String text;
+    private final String[] terms;
+    private final TaskQuery query;
+
+    public TaskFilter(Priority priority, Category category, boolean showCompleted, boolean overdueOnly) {
+        this(priority, category, showCompleted, overdueOnly, null);
+    }
+
+    public TaskFilter(Priority priority, Category category, boolean showCompleted, boolean overdueOnly,
+                      String text) {
+        this(priority, category, showCompleted, overdueOnly, text, null);
+    }
+
+    public TaskFilter(Priority priority, Category category, boolean showCompleted, boolean overdueOnly,
+                      String text, TaskQuery query) {
+        this.priority = priority;
+        this.category = category;
+        this.showCompleted = showCompleted;
+        this.overdueOnly = overdueOnly;
+        this.text = text == null ? "" : text.trim();
+        this.terms = this.text.isEmpty() ? NO_TERMS : TaskSearchIndex.tokenize(this.text).toArray(NO_TERMS);
+        this.query = query;
+    }
+
+    public Priority getPriority() { return priority; }
+    public Category getCategory() { return category; }
+    public boolean isShowCompleted() { return showCompleted; }
+    public boolean isOverdueOnly() { return overdueOnly; }
+    public String getText() { return text; }
+    public boolean hasText() { return terms.length > 0; }
+    public TaskQuery getQuery() { return query; }
+
+    String[] getTerms() { return terms; }
+
+    /**
+     * Tests a single task. Used to keep an already computed result current when
+     * one task changes; whole-list evaluation goes through {@link TaskIndex},
+     * which also tells whether the task is blocked.
+     */
+    public boolean test(Task task, LocalDate today, TaskIndex index) {
+        if (priority != null && task.getPriority() != priority) {
+            return false;
+        }
+        if (category != null && task.getCategory() != category) {
+            return false;
+        }
+        if (!showCompleted && task.isCompleted()) {
+            return false;
+        }
+        if (overdueOnly && (task.isCompleted() || task.getDeadline() == null
+                || !task.getDeadline().isBefore(today))) {
+            return false;
+        }
+        if (terms.length > 0 && !TaskSearchIndex.matches(task, terms)) {
+            return false;
+        }
+        if (query != null && !query.test(task, today, index)) {
+            return false;
+        }
+        return true;
+    }
+}
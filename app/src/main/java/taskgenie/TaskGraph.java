@@ -0,0 +1,666 @@
+package taskgenie;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.LongFunction;
+
+/**
+ * The order tasks have to be done in: a task waits for the tasks it is
+ * blocked by ({@link Task#getBlockedBy()}) and for its subtasks (the tasks
+ * whose {@link Task#getParentId()} is its id). Kept per slot, as adjacency
+ * arrays of the "must come before" edges, together with the number of open
+ * tasks each task waits for. A task is blocked while that number is above
+ * zero, so completing or reopening a task touches only the tasks waiting
+ * for it.
+ *
+ * The edges are kept in a topological order that is repaired incrementally
+ * as edges are added (Pearce and Kelly's algorithm): an edge that already
+ * agrees with the order costs nothing, and otherwise only the tasks ordered
+ * between its two ends are searched and renumbered. The same bounded search
+ * tells whether an edge would close a cycle. Local edits that would are
+ * refused; {@link #check} is called before the edit is made. Edges that
+ * arrive by sync or replay cannot be refused, so one that would close a
+ * cycle is parked instead, and ignored until an edge or task goes away.
+ *
+ * References to ids the store does not hold are kept aside and connected
+ * when a task with that id is added. Guarded by the store's write lock, like
+ * the other listeners.
+ */
+class TaskGraph implements TaskChangeListener {
+    private static final int[] NO_EDGES = new int[0];
+
+    /** The chain of open tasks with the least slack against the deadlines, see {@link #criticalPath}. */
+    static final class CriticalPath {
+        static final CriticalPath NONE = new CriticalPath(List.of(), null, null);
+
+        private final List<Task> tasks;
+        private final LocalDate deadline;
+        private final Long slackDays;
+
+        CriticalPath(List<Task> tasks, LocalDate deadline, Long slackDays) {
+            this.tasks = tasks;
+            this.deadline = deadline;
+            this.slackDays = slackDays;
+        }
+
+        /** The tasks in the order they have to be done; empty when no open task waits for another. */
+        public List<Task> getTasks() { return tasks; }
+        /** The deadline the path has to meet, or null when none of its tasks has one. */
+        public LocalDate getDeadline() { return deadline; }
+        /** Days to spare at one task a day; negative when the deadline cannot be met. Null without a deadline. */
+        public Long getSlackDays() { return slackDays; }
+    }
+
+    private final IntFunction<Task> slots;
+    private final LongFunction<Task> ids;
+
+    // Per slot: the tasks that wait for it, the tasks it waits for, and how many of those are open
+    private int[][] successors = new int[16][];
+    private int[] successorCounts = new int[16];
+    private int[][] predecessors = new int[16][];
+    private int[] predecessorCounts = new int[16];
+    private int[] openPredecessors = new int[16];
+    // Position in the topological order; every edge goes from a lower to a higher position
+    private int[] order = new int[16];
+    // The slot at each position, -1 where a removed task was, and the next position to hand out
+    private int[] slotAt = new int[16];
+    private int nextOrder;
+    private final BitSet blocked = new BitSet();
+
+    // Tasks referring to an id the store does not hold, by that id
+    private final Map<Long, List<Task>> waiting = new HashMap<>();
+    // Edges from sync or replay that would close a cycle, as (before, after) pairs
+    private final List<Task[]> parked = new ArrayList<>();
+    // Tasks whose blocked state changed without an edit of their own, until drained
+    private final List<Task> touched = new ArrayList<>();
+
+    // Search state for the order repair, reused between edges
+    private int[] visited = new int[16];
+    private int visit;
+    private final List<Integer> forward = new ArrayList<>();
+    private final List<Integer> backward = new ArrayList<>();
+
+    // Per slot, for the critical path: chain length, previous task on it, effective deadline, and what set it
+    private int[] chain = new int[0];
+    private int[] longestBefore = new int[0];
+    private long[] due = new long[0];
+    private int[] dueFrom = new int[0];
+
+    // Bumped whenever the critical path could change; the last result is reused until then
+    private long modCount;
+    private long cachedModCount = -1;
+    private LocalDate cachedDay;
+    private CriticalPath cached = CriticalPath.NONE;
+
+    /**
+     * @param slots the task in a slot
+     * @param ids   the task with an id, or null
+     */
+    TaskGraph(IntFunction<Task> slots, LongFunction<Task> ids) {
+        this.slots = slots;
+        this.ids = ids;
+    }
+
+    @Override
+    public void taskAdded(Task task) {
+        int slot = task.getSlot();
+        ensureCapacity(slot + 1);
+        successors[slot] = NO_EDGES;
+        successorCounts[slot] = 0;
+        predecessors[slot] = NO_EDGES;
+        predecessorCounts[slot] = 0;
+        openPredecessors[slot] = 0;
+        if (nextOrder == slotAt.length) {
+            renumber();
+        }
+        order[slot] = nextOrder;
+        slotAt[nextOrder++] = slot;
+        blocked.clear(slot);
+        if (task.getParentId() != null) {
+            connect(task, task.getParentId(), false);
+        }
+        for (long blocker : task.getBlockedBy()) {
+            connect(task, blocker, true);
+        }
+        List<Task> referring = waiting.remove(task.getId());
+        if (referring != null) {
+            for (Task other : referring) {
+                if (Objects.equals(other.getParentId(), task.getId())) {
+                    link(other, task);
+                }
+                if (other.getBlockedBy().contains(task.getId())) {
+                    link(task, other);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void taskRemoved(Task task) {
+        int slot = task.getSlot();
+        boolean hadEdges = hasEdges(slot);
+        if (task.getParentId() != null) {
+            disconnect(task, task.getParentId(), false);
+        }
+        for (long blocker : task.getBlockedBy()) {
+            disconnect(task, blocker, true);
+        }
+        // Whatever still points at the task refers to it by id, and waits for it to come back
+        while (successorCounts[slot] > 0) {
+            Task other = slots.apply(successors[slot][0]);
+            unlink(task, other);
+            refer(other, task.getId());
+        }
+        while (predecessorCounts[slot] > 0) {
+            Task other = slots.apply(predecessors[slot][0]);
+            unlink(other, task);
+            refer(other, task.getId());
+        }
+        for (Iterator<Task[]> it = parked.iterator(); it.hasNext(); ) {
+            Task[] edge = it.next();
+            if (edge[0] == task || edge[1] == task) {
+                it.remove();
+                refer(edge[0] == task ? edge[1] : edge[0], task.getId());
+            }
+        }
+        blocked.clear(slot);
+        slotAt[order[slot]] = -1;
+        if (hadEdges) {
+            modCount++;
+            unpark();
+        }
+    }
+
+    @Override
+    public void taskChanged(Task task, TaskField field, Object oldValue, Object newValue) {
+        int slot = task.getSlot();
+        switch (field) {
+            case COMPLETED:
+                int delta = task.isCompleted() ? -1 : 1;
+                for (int i = 0; i < successorCounts[slot]; i++) {
+                    int successor = successors[slot][i];
+                    openPredecessors[successor] += delta;
+                    updateBlocked(successor);
+                }
+                if (hasEdges(slot)) {
+                    modCount++;
+                }
+                break;
+            case DEADLINE:
+                if (hasEdges(slot)) {
+                    modCount++;
+                }
+                break;
+            case PARENT:
+                if (oldValue != null) {
+                    disconnect(task, (Long) oldValue, false);
+                }
+                if (newValue != null) {
+                    connect(task, (Long) newValue, false);
+                }
+                unpark();
+                break;
+            case BLOCKED_BY:
+                List<Long> before = ids(oldValue);
+                List<Long> after = ids(newValue);
+                for (long id : before) {
+                    if (!after.contains(id)) {
+                        disconnect(task, id, true);
+                    }
+                }
+                for (long id : after) {
+                    if (!before.contains(id)) {
+                        connect(task, id, true);
+                    }
+                }
+                unpark();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Refuses a local edit of the parent or the blockers that would make a
+     * task wait for itself, before it is made. References to ids the store
+     * does not hold pass; they are only connected once such a task exists.
+     */
+    public void check(Task task, TaskField field, Object value) {
+        if (field == TaskField.PARENT && value != null) {
+            Task parent = ids.apply((Long) value);
+            if (parent == task) {
+                throw new IllegalArgumentException("A task cannot be its own subtask");
+            }
+            if (parent != null && reaches(task, parent)) {
+                throw new IllegalArgumentException("\"" + parent.getName() + "\" already has to be done before \""
+                        + task.getName() + "\", so it cannot be its parent");
+            }
+        } else if (field == TaskField.BLOCKED_BY) {
+            List<Long> current = task.getBlockedBy();
+            for (long id : ids(value)) {
+                Task blocker = ids.apply(id);
+                if (blocker == task) {
+                    throw new IllegalArgumentException("A task cannot block itself");
+                }
+                if (blocker != null && !current.contains(id) && reaches(blocker, task)) {
+                    throw new IllegalArgumentException("\"" + blocker.getName() + "\" already waits for \""
+                            + task.getName() + "\", so it cannot block it");
+                }
+            }
+        }
+    }
+
+    /** Tells whether the task waits for any open task. */
+    public boolean isBlocked(Task task) {
+        int slot = task.getSlot();
+        return slot >= 0 && blocked.get(slot);
+    }
+
+    /** The slots of the tasks that wait for an open task; callers must not modify it. */
+    BitSet blockedSlots() {
+        return blocked;
+    }
+
+    /** The open tasks this task waits for: its open blockers and open subtasks. */
+    public List<Task> openPrerequisites(Task task) {
+        int slot = task.getSlot();
+        if (slot < 0 || openPredecessors[slot] == 0) {
+            return Collections.emptyList();
+        }
+        List<Task> open = new ArrayList<>(openPredecessors[slot]);
+        for (int i = 0; i < predecessorCounts[slot]; i++) {
+            Task predecessor = slots.apply(predecessors[slot][i]);
+            if (!predecessor.isCompleted() && !open.contains(predecessor)) {
+                open.add(predecessor);
+            }
+        }
+        return open;
+    }
+
+    /** The tasks whose parent is this task. */
+    public List<Task> subtasks(Task task) {
+        int slot = task.getSlot();
+        if (slot < 0) {
+            return Collections.emptyList();
+        }
+        List<Task> children = new ArrayList<>();
+        for (int i = 0; i < predecessorCounts[slot]; i++) {
+            Task predecessor = slots.apply(predecessors[slot][i]);
+            if (Objects.equals(predecessor.getParentId(), task.getId()) && !children.contains(predecessor)) {
+                children.add(predecessor);
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Hands over the tasks whose blocked state changed because of a change
+     * to some other task, once each, and forgets them.
+     */
+    public void drainTouched(Consumer<Task> action) {
+        for (Task task : touched) {
+            if (task.getSlot() >= 0) {
+                action.accept(task);
+            }
+        }
+        touched.clear();
+    }
+
+    /**
+     * Finds the critical path through the open tasks that wait for one
+     * another, taking one day per task. Working forwards in topological
+     * order, each task's earliest finish is a day after the latest of the
+     * tasks it waits for. Working backwards, a task has to be done a day
+     * before whatever waits for it is due, so its effective deadline is the
+     * earliest of its own {@link Task#getDeadline()} and those. The slack is
+     * the difference. The path runs through the task with the least slack:
+     * back along the longest chain of tasks it waits for, and on through
+     * the tasks whose deadlines set its own. Without deadlines it is simply
+     * the longest chain. The result is cached until the graph, a completion
+     * or a deadline changes. Callers hold the store's read lock, and may be
+     * several at once; they take turns on the cache and the scratch arrays.
+     */
+    public synchronized CriticalPath criticalPath(LocalDate today) {
+        if (cachedModCount == modCount && today.equals(cachedDay)) {
+            return cached;
+        }
+        if (chain.length < order.length) {
+            chain = new int[order.length];
+            longestBefore = new int[order.length];
+            due = new long[order.length];
+            dueFrom = new int[order.length];
+        }
+        // Forwards: the longest chain of open tasks ending at each open task; 0 marks a completed one
+        for (int position = 0; position < nextOrder; position++) {
+            int slot = slotAt[position];
+            if (slot < 0 || !hasEdges(slot)) {
+                continue;
+            }
+            longestBefore[slot] = -1;
+            if (slots.apply(slot).isCompleted()) {
+                chain[slot] = 0;
+                continue;
+            }
+            chain[slot] = 1;
+            for (int i = 0; i < predecessorCounts[slot]; i++) {
+                int before = predecessors[slot][i];
+                if (chain[before] > 0 && chain[before] + 1 > chain[slot]) {
+                    chain[slot] = chain[before] + 1;
+                    longestBefore[slot] = before;
+                }
+            }
+        }
+        // Backwards: the day each open task has to be done by, and the one with the least slack
+        int critical = -1;
+        long least = Long.MAX_VALUE;
+        for (int position = nextOrder - 1; position >= 0; position--) {
+            int slot = slotAt[position];
+            if (slot < 0 || !hasEdges(slot) || chain[slot] == 0) {
+                continue;
+            }
+            LocalDate deadline = slots.apply(slot).getDeadline();
+            due[slot] = deadline == null ? Long.MAX_VALUE : deadline.toEpochDay();
+            dueFrom[slot] = -1;
+            for (int i = 0; i < successorCounts[slot]; i++) {
+                int after = successors[slot][i];
+                if (chain[after] > 0 && due[after] != Long.MAX_VALUE && due[after] - 1 < due[slot]) {
+                    due[slot] = due[after] - 1;
+                    dueFrom[slot] = after;
+                }
+            }
+            long slack = due[slot] == Long.MAX_VALUE ? Long.MAX_VALUE
+                    : due[slot] - (today.toEpochDay() + chain[slot] - 1);
+            if (critical < 0 || slack < least || (slack == least && chain[slot] > chain[critical])) {
+                critical = slot;
+                least = slack;
+            }
+        }
+        CriticalPath result = CriticalPath.NONE;
+        if (critical >= 0) {
+            List<Task> path = new ArrayList<>();
+            for (int slot = critical; slot >= 0; slot = longestBefore[slot]) {
+                path.add(slots.apply(slot));
+            }
+            Collections.reverse(path);
+            int last = critical;
+            for (int slot = dueFrom[critical]; slot >= 0; slot = dueFrom[slot]) {
+                path.add(slots.apply(slot));
+                last = slot;
+            }
+            boolean dated = least != Long.MAX_VALUE;
+            result = new CriticalPath(Collections.unmodifiableList(path),
+                    dated ? slots.apply(last).getDeadline() : null, dated ? least : null);
+        }
+        cached = result;
+        cachedModCount = modCount;
+        cachedDay = today;
+        return result;
+    }
+
+    /** Connects a reference from {@code task}'s fields: to a blocker, or to its parent. */
+    private void connect(Task task, long id, boolean blocker) {
+        Task other = ids.apply(id);
+        if (other == null) {
+            refer(task, id);
+        } else if (blocker) {
+            link(other, task);
+        } else {
+            link(task, other);
+        }
+    }
+
+    private void disconnect(Task task, long id, boolean blocker) {
+        Task other = ids.apply(id);
+        if (other == null) {
+            List<Task> referring = waiting.get(id);
+            if (referring != null) {
+                referring.remove(task);
+                if (referring.isEmpty()) {
+                    waiting.remove(id);
+                }
+            }
+        } else if (blocker) {
+            unlink(other, task);
+        } else {
+            unlink(task, other);
+        }
+    }
+
+    private void refer(Task task, long id) {
+        List<Task> referring = waiting.computeIfAbsent(id, key -> new ArrayList<>(1));
+        if (!referring.contains(task)) {
+            referring.add(task);
+        }
+    }
+
+    /** Adds the edge "before has to be done before after", or parks it if it would close a cycle. */
+    private void link(Task before, Task after) {
+        int from = before.getSlot();
+        int to = after.getSlot();
+        if (from == to || (order[from] > order[to] && !reorder(from, to))) {
+            parked.add(new Task[] {before, after});
+            return;
+        }
+        successors[from] = append(successors[from], successorCounts[from]++, to);
+        predecessors[to] = append(predecessors[to], predecessorCounts[to]++, from);
+        if (!before.isCompleted()) {
+            openPredecessors[to]++;
+            updateBlocked(to);
+        }
+        modCount++;
+    }
+
+    private void unlink(Task before, Task after) {
+        for (Iterator<Task[]> it = parked.iterator(); it.hasNext(); ) {
+            Task[] edge = it.next();
+            if (edge[0] == before && edge[1] == after) {
+                it.remove();
+                return;
+            }
+        }
+        int from = before.getSlot();
+        int to = after.getSlot();
+        if (!removeFirst(successors[from], successorCounts[from], to)) {
+            return;
+        }
+        successorCounts[from]--;
+        removeFirst(predecessors[to], predecessorCounts[to], from);
+        predecessorCounts[to]--;
+        if (!before.isCompleted()) {
+            openPredecessors[to]--;
+            updateBlocked(to);
+        }
+        modCount++;
+    }
+
+    /** Tries the parked edges again, now that an edge or task is gone. */
+    private void unpark() {
+        if (parked.isEmpty()) {
+            return;
+        }
+        List<Task[]> retry = new ArrayList<>(parked);
+        parked.clear();
+        for (Task[] edge : retry) {
+            link(edge[0], edge[1]);
+        }
+    }
+
+    private boolean hasEdges(int slot) {
+        return successorCounts[slot] > 0 || predecessorCounts[slot] > 0;
+    }
+
+    private void updateBlocked(int slot) {
+        boolean now = openPredecessors[slot] > 0;
+        if (blocked.get(slot) != now) {
+            blocked.set(slot, now);
+            touched.add(slots.apply(slot));
+        }
+    }
+
+    /** Tells whether an edge from→to would close a cycle, that is whether {@code from} already waits for {@code to}. */
+    private boolean reaches(Task from, Task to) {
+        int start = to.getSlot();
+        int target = from.getSlot();
+        if (order[target] < order[start]) {
+            return false;
+        }
+        visit++;
+        forward.clear();
+        return searchForward(start, target, order[target]);
+    }
+
+    /**
+     * Repairs the order for a new edge from→to that runs against it, or
+     * returns false if the edge would close a cycle. Only tasks ordered
+     * between the two ends are affected: those reachable from {@code to}
+     * and those reaching {@code from}. They keep their positions as a pool,
+     * handed out again so that the second group comes first.
+     */
+    private boolean reorder(int from, int to) {
+        int lower = order[to];
+        int upper = order[from];
+        visit++;
+        forward.clear();
+        if (searchForward(to, from, upper)) {
+            return false;
+        }
+        backward.clear();
+        searchBackward(from, lower);
+        forward.sort((a, b) -> Integer.compare(order[a], order[b]));
+        backward.sort((a, b) -> Integer.compare(order[a], order[b]));
+        int[] positions = new int[forward.size() + backward.size()];
+        int p = 0;
+        for (int slot : backward) {
+            positions[p++] = order[slot];
+        }
+        for (int slot : forward) {
+            positions[p++] = order[slot];
+        }
+        Arrays.sort(positions);
+        p = 0;
+        for (int slot : backward) {
+            order[slot] = positions[p];
+            slotAt[positions[p++]] = slot;
+        }
+        for (int slot : forward) {
+            order[slot] = positions[p];
+            slotAt[positions[p++]] = slot;
+        }
+        return true;
+    }
+
+    /**
+     * Makes room for another position. Removed tasks leave gaps in the
+     * order; once they are half of it, the positions are handed out again
+     * from 0 in the same order instead of growing.
+     */
+    private void renumber() {
+        int live = 0;
+        for (int position = 0; position < nextOrder; position++) {
+            if (slotAt[position] >= 0) {
+                live++;
+            }
+        }
+        if (live > slotAt.length / 2) {
+            slotAt = Arrays.copyOf(slotAt, slotAt.length * 2);
+            return;
+        }
+        int next = 0;
+        for (int position = 0; position < nextOrder; position++) {
+            int slot = slotAt[position];
+            if (slot >= 0) {
+                order[slot] = next;
+                slotAt[next++] = slot;
+            }
+        }
+        Arrays.fill(slotAt, next, nextOrder, -1);
+        nextOrder = next;
+    }
+
+    /** Collects the slots reachable from {@code start} ordered at most {@code upper}; true if it meets {@code target}. */
+    private boolean searchForward(int start, int target, int upper) {
+        List<Integer> stack = new ArrayList<>();
+        stack.add(start);
+        visited[start] = visit;
+        while (!stack.isEmpty()) {
+            int slot = stack.remove(stack.size() - 1);
+            forward.add(slot);
+            for (int i = 0; i < successorCounts[slot]; i++) {
+                int next = successors[slot][i];
+                if (next == target) {
+                    return true;
+                }
+                if (visited[next] != visit && order[next] < upper) {
+                    visited[next] = visit;
+                    stack.add(next);
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Collects the slots reaching {@code start} ordered at least {@code lower}. */
+    private void searchBackward(int start, int lower) {
+        List<Integer> stack = new ArrayList<>();
+        stack.add(start);
+        visited[start] = visit;
+        while (!stack.isEmpty()) {
+            int slot = stack.remove(stack.size() - 1);
+            backward.add(slot);
+            for (int i = 0; i < predecessorCounts[slot]; i++) {
+                int next = predecessors[slot][i];
+                if (visited[next] != visit && order[next] > lower) {
+                    visited[next] = visit;
+                    stack.add(next);
+                }
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= order.length) {
+            return;
+        }
+        int grown = Math.max(capacity, order.length * 2);
+        successors = Arrays.copyOf(successors, grown);
+        successorCounts = Arrays.copyOf(successorCounts, grown);
+        predecessors = Arrays.copyOf(predecessors, grown);
+        predecessorCounts = Arrays.copyOf(predecessorCounts, grown);
+        openPredecessors = Arrays.copyOf(openPredecessors, grown);
+        order = Arrays.copyOf(order, grown);
+        visited = Arrays.copyOf(visited, grown);
+    }
+
+    private static int[] append(int[] edges, int count, int slot) {
+        if (count == edges.length) {
+            edges = Arrays.copyOf(edges, Math.max(2, count * 2));
+        }
+        edges[count] = slot;
+        return edges;
+    }
+
+    private static boolean removeFirst(int[] edges, int count, int slot) {
+        for (int i = 0; i < count; i++) {
+            if (edges[i] == slot) {
+                edges[i] = edges[count - 1];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Long> ids(Object value) {
+        return value == null ? List.of() : (List<Long>) value;
+    }
+}
@@ -0,0 +1,364 @@
+package taskgenie;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Secondary indexes over the task list. Every indexed attribute keeps a bitset
+ * of the slots (see {@link Task#getSlot()}) holding that value, so a filter is
+ * answered by intersecting a handful of bitsets instead of testing every task.
+ */
+class TaskIndex implements TaskChangeListener {
+    private final TaskSearchIndex search;
+    private final TaskGraph graph;
+    private final BitSet live = new BitSet();
+    private final BitSet completed = new BitSet();
+    private final BitSet recurring = new BitSet();
+    private final EnumMap<Priority, BitSet> byPriority = new EnumMap<>(Priority.class);
+    private final Map<Category, BitSet> byCategory = new HashMap<>();
+    private final TreeMap<Long, BitSet> byDeadline = new TreeMap<>();
+    private final List<View> views = new CopyOnWriteArrayList<>();
+
+    public TaskIndex(Iterable<Task> tasks, TaskSearchIndex search, TaskGraph graph) {
+        this.search = search;
+        this.graph = graph;
+        for (Priority priority : Priority.values()) {
+            byPriority.put(priority, new BitSet());
+        }
+        for (Task task : tasks) {
+            taskAdded(task);
+        }
+    }
+
+    @Override
+    public void taskAdded(Task task) {
+        int slot = task.getSlot();
+        live.set(slot);
+        if (task.isCompleted()) {
+            completed.set(slot);
+        }
+        if (task.getRecurrence() != null) {
+            recurring.set(slot);
+        }
+        setBit(byPriority, task.getPriority(), slot, true);
+        setBit(byCategory, task.getCategory(), slot, true);
+        setBit(byDeadline, epochDay(task.getDeadline()), slot, true);
+        for (View view : views) {
+            view.update(task);
+        }
+    }
+
+    @Override
+    public void taskRemoved(Task task) {
+        int slot = task.getSlot();
+        live.clear(slot);
+        completed.clear(slot);
+        recurring.clear(slot);
+        setBit(byPriority, task.getPriority(), slot, false);
+        setBit(byCategory, task.getCategory(), slot, false);
+        setBit(byDeadline, epochDay(task.getDeadline()), slot, false);
+        for (View view : views) {
+            view.matches.clear(slot);
+        }
+    }
+
+    @Override
+    public void taskChanged(Task task, TaskField field, Object oldValue, Object newValue) {
+        int slot = task.getSlot();
+        switch (field) {
+            case PRIORITY:
+                setBit(byPriority, (Priority) oldValue, slot, false);
+                setBit(byPriority, (Priority) newValue, slot, true);
+                break;
+            case CATEGORY:
+                setBit(byCategory, (Category) oldValue, slot, false);
+                setBit(byCategory, (Category) newValue, slot, true);
+                break;
+            case COMPLETED:
+                completed.set(slot, task.isCompleted());
+                break;
+            case DEADLINE:
+                setBit(byDeadline, epochDay((LocalDate) oldValue), slot, false);
+                setBit(byDeadline, epochDay((LocalDate) newValue), slot, true);
+                break;
+            default:
+                // Text edits leave the bitsets alone but can change a search match
+                break;
+        }
+        for (View view : views) {
+            view.update(task);
+        }
+    }
+
+    /**
+     * Updates the views for a task that became blocked or unblocked because
+     * a task it waits for was completed, reopened, added or removed.
+     */
+    public void refresh(Task task) {
+        for (View view : views) {
+            view.update(task);
+        }
+    }
+
+    /**
+     * Evaluates a filter by intersecting the index bitsets. The result holds
+     * the slots of the matching tasks.
+     */
+    public BitSet query(TaskFilter filter, LocalDate today) {
+        return query(filter, today, false);
+    }
+
+    /**
+     * As {@link #query(TaskFilter, LocalDate)}, optionally confirming search
+     * candidates on several threads. Only safe while the caller holds the
+     * store's read lock, as the helper threads read tasks too.
+     */
+    public BitSet query(TaskFilter filter, LocalDate today, boolean parallel) {
+        BitSet result = (BitSet) live.clone();
+        if (filter.getPriority() != null) {
+            result.and(byPriority.get(filter.getPriority()));
+        }
+        if (filter.getCategory() != null) {
+            result.and(byCategory.getOrDefault(filter.getCategory(), new BitSet()));
+        }
+        if (!filter.isShowCompleted() || filter.isOverdueOnly()) {
+            result.andNot(completed);
+        }
+        if (filter.isOverdueOnly()) {
+            result.and(dueBefore(today));
+        }
+        if (filter.hasText()) {
+            result.and(search.match(filter.getTerms(), parallel));
+        }
+        if (filter.getQuery() != null && !result.isEmpty()) {
+            filter.getQuery().retain(result, this, today, parallel);
+        }
+        return result;
+    }
+
+    /** Narrows the slots to those of completed tasks. */
+    public void retainCompleted(BitSet slots) {
+        slots.and(completed);
+    }
+
+    /** Computes the statistics of the given slots from the index bitsets. */
+    public TaskStatistics.Snapshot count(BitSet slots, LocalDate today) {
+        int[] priorities = new int[Priority.values().length];
+        for (Priority priority : Priority.values()) {
+            priorities[priority.ordinal()] = intersection(slots, byPriority.get(priority));
+        }
+        Map<Category, Integer> categories = new HashMap<>();
+        for (Map.Entry<Category, BitSet> entry : byCategory.entrySet()) {
+            int count = intersection(slots, entry.getValue());
+            if (count > 0) {
+                categories.put(entry.getKey(), count);
+            }
+        }
+        BitSet overdue = dueBefore(today);
+        overdue.and(slots);
+        overdue.andNot(completed);
+        return new TaskStatistics.Snapshot(slots.cardinality(), intersection(slots, completed),
+                overdue.cardinality(), priorities, categories);
+    }
+
+    /**
+     * Opens a view whose result is kept current as tasks are added, removed
+     * or edited, so the table can test membership with a single bit lookup.
+     */
+    public View openView(TaskFilter filter, LocalDate today) {
+        View view = new View(filter, today);
+        views.add(view);
+        return view;
+    }
+
+    /**
+     * Returns the slots of the open tasks due on or after {@code from} and
+     * before {@code to}. The deadline buckets are sorted by day, so this reads
+     * only the days in the range.
+     */
+    public BitSet openDueBetween(LocalDate from, LocalDate to) {
+        BitSet due = new BitSet();
+        if (from.isBefore(to)) {
+            for (BitSet day : byDeadline.subMap(from.toEpochDay(), to.toEpochDay()).values()) {
+                due.or(day);
+            }
+        }
+        due.andNot(completed);
+        return due;
+    }
+
+    /**
+     * Returns the slots of all tasks, open or not, due on or after
+     * {@code from} and before {@code to}; a null bound leaves that side open.
+     */
+    public BitSet dueBetween(LocalDate from, LocalDate to) {
+        BitSet due = new BitSet();
+        if (from != null && to != null && !from.isBefore(to)) {
+            return due;
+        }
+        Map<Long, BitSet> days = from == null && to == null ? byDeadline
+                : from == null ? byDeadline.headMap(to.toEpochDay())
+                : to == null ? byDeadline.tailMap(from.toEpochDay())
+                : byDeadline.subMap(from.toEpochDay(), to.toEpochDay());
+        for (BitSet day : days.values()) {
+            due.or(day);
+        }
+        return due;
+    }
+
+    // The index bitsets themselves, for TaskQuery to combine; callers must not modify them
+
+    BitSet liveSlots() {
+        return live;
+    }
+
+    BitSet completedSlots() {
+        return completed;
+    }
+
+    BitSet recurringSlots() {
+        return recurring;
+    }
+
+    BitSet prioritySlots(Priority priority) {
+        return byPriority.get(priority);
+    }
+
+    /** Returns the slots of the tasks in any of the named categories, ignoring case; a new bitset. */
+    BitSet categorySlots(List<String> names) {
+        BitSet result = new BitSet();
+        for (Map.Entry<Category, BitSet> entry : byCategory.entrySet()) {
+            for (String name : names) {
+                if (name.equalsIgnoreCase(entry.getKey().getName())) {
+                    result.or(entry.getValue());
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** The slots of the tasks waiting for an open task, kept by the dependency graph. */
+    BitSet blockedSlots() {
+        return graph.blockedSlots();
+    }
+
+    boolean isBlocked(Task task) {
+        return graph.isBlocked(task);
+    }
+
+    BitSet match(String[] terms, boolean parallel) {
+        return search.match(terms, parallel);
+    }
+
+    /** Returns the slots of the open recurring tasks whose current occurrence is before {@code end}. */
+    public BitSet openRecurringDueBefore(LocalDate end) {
+        BitSet due = dueBefore(end);
+        due.and(recurring);
+        due.andNot(completed);
+        return due;
+    }
+
+    /**
+     * Moves the views to a new day. Only overdue-only views depend on the
+     * date, and in those only the given tasks, whose deadline lies between
+     * the old and the new day, can change membership. A query with dates
+     * relative to today can move its bounds anywhere, so those views are
+     * evaluated again.
+     */
+    public void advanceDay(LocalDate today, Iterable<Task> crossing) {
+        for (View view : views) {
+            view.today = today;
+            if (view.filter.getQuery() != null && view.filter.getQuery().dependsOnDate()) {
+                view.matches = query(view.filter, today);
+            } else if (view.filter.isOverdueOnly()) {
+                for (Task task : crossing) {
+                    view.update(task);
+                }
+            }
+        }
+    }
+
+    private BitSet dueBefore(LocalDate today) {
+        BitSet due = new BitSet();
+        for (BitSet day : byDeadline.headMap(today.toEpochDay()).values()) {
+            due.or(day);
+        }
+        return due;
+    }
+
+    private static int intersection(BitSet a, BitSet b) {
+        BitSet both = (BitSet) a.clone();
+        both.and(b);
+        return both.cardinality();
+    }
+
+    private static <K> void setBit(Map<K, BitSet> index, K key, int slot, boolean value) {
+        if (key == null) {
+            return;
+        }
+        if (value) {
+            index.computeIfAbsent(key, k -> new BitSet()).set(slot);
+        } else {
+            BitSet bits = index.get(key);
+            if (bits != null) {
+                bits.clear(slot);
+                if (bits.isEmpty() && !(key instanceof Priority)) {
+                    index.remove(key);
+                }
+            }
+        }
+    }
+
+    private static Long epochDay(LocalDate date) {
+        return date == null ? null : date.toEpochDay();
+    }
+
+    class View {
+        private TaskFilter filter;
+        private LocalDate today;
+        private BitSet matches;
+
+        private View(TaskFilter filter, LocalDate today) {
+            setFilter(filter, today);
+        }
+
+        public void setFilter(TaskFilter filter, LocalDate today) {
+            setFilter(filter, today, query(filter, today));
+        }
+
+        /** Installs a result computed by {@link #query} with no change since. */
+        public void setFilter(TaskFilter filter, LocalDate today, BitSet matches) {
+            this.filter = filter;
+            this.today = today;
+            this.matches = matches;
+        }
+
+        public boolean contains(Task task) {
+            int slot = task.getSlot();
+            return slot >= 0 && matches.get(slot);
+        }
+
+        public int size() {
+            return matches.cardinality();
+        }
+
+        public TaskStatistics.Snapshot statistics() {
+            return count(matches, today);
+        }
+
+        public void close() {
+            views.remove(this);
+        }
+
+        private void update(Task task) {
+            matches.set(task.getSlot(), filter.test(task, today, TaskIndex.this));
+        }
+    }
+}
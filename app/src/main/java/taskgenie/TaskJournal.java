@@ -0,0 +1,260 @@
+package taskgenie;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal split into numbered segment files. Callers
+ * encode records on their own thread and hand them over without blocking; a
+ * single writer thread drains everything that has queued up, writes it in one
+ * go and fsyncs once per batch (group commit). Each record is framed with its
+ * length and a CRC so a torn tail write is detected and ignored on replay.
+ *
+ * A batch that fails to write is kept, along with everything queued after
+ * it, and retried every few seconds in a fresh segment, so the torn tail the
+ * failure may have left ends the old one. The {@link FailureListener} hears
+ * of the first failure and of the recovery; records still held back at
+ * {@link #close} are lost, and close throws.
+ */
+class TaskJournal implements Closeable {
+    // Without stamps, only replayed: a version 1 task record, an edit and a delete
+    static final byte ADD = 1;
+    static final byte UPDATE = 2;
+    static final byte DELETE = 3;
+    // A version 2 task record, with the repeat rule; only replayed
+    static final byte ADD_V2 = 4;
+    // A task record in layout 3, without stamps; only replayed, changes are written as CHANGE
+    static final byte ADD_V3 = 5;
+    // A change log entry with its stamp and node, as TaskChangeLog.writeEntry writes it
+    static final byte CHANGE = 6;
+
+    private static final long SEGMENT_BYTES = 8L << 20;
+    private static final byte[] SHUTDOWN = new byte[0];
+    private static final long RETRY_MILLIS = 5_000;
+
+    interface RecordHandler {
+        void handle(DataInputStream record) throws IOException;
+    }
+
+    interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /** Told on the writer thread when writes start failing and when they succeed again. */
+    interface FailureListener {
+        /** Writes failed; the records are held in memory and retried. */
+        void writeFailed(IOException e);
+
+        /** Every record held back has been written. */
+        void writeRecovered();
+    }
+
+    private final Path directory;
+    private final BlockingQueue<byte[]> pending = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private FileChannel channel;
+    private volatile long segment;
+    private volatile IOException failure;
+    private volatile FailureListener failureListener;
+
+    public TaskJournal(Path directory, long firstSegment) throws IOException {
+        this.directory = directory;
+        openSegment(firstSegment);
+        writer = new Thread(this::run, "task-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Encodes and queues a record. Returns immediately; the record becomes
+     * durable with the next group commit.
+     */
+    public void append(RecordWriter record) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            record.write(out);
+        } catch (IOException e) {
+            // Nothing is written to disk here; a record that cannot be encoded is a bug, not an I/O error
+            throw new IllegalStateException("Could not encode a journal record", e);
+        }
+        pending.add(bytes.toByteArray());
+    }
+
+    /** Segments numbered below this one are sealed and safe to compact. */
+    public long currentSegment() {
+        return segment;
+    }
+
+    /** The failure of the last write if records are being held back, otherwise null. */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    public void setFailureListener(FailureListener listener) {
+        this.failureListener = listener;
+    }
+
+    @Override
+    public void close() throws IOException {
+        pending.add(SHUTDOWN);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void run() {
+        List<byte[]> batch = new ArrayList<>();
+        boolean shutdown = false;
+        long retryAt = 0;
+        while (!shutdown) {
+            try {
+                if (failure == null) {
+                    batch.add(pending.take());
+                } else {
+                    // Holds on to the batch until the next retry, but still wakes up for a shutdown
+                    byte[] record = pending.poll(Math.max(0, retryAt - System.currentTimeMillis()),
+                            TimeUnit.MILLISECONDS);
+                    if (record != null) {
+                        batch.add(record);
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            pending.drainTo(batch);
+            shutdown = batch.remove(SHUTDOWN);
+            if (batch.isEmpty() || (failure != null && !shutdown && System.currentTimeMillis() < retryAt)) {
+                continue;
+            }
+            try {
+                if (failure != null) {
+                    // The failed write may have left a torn frame, which would hide anything after it
+                    channel.close();
+                    openSegment(segment + 1);
+                }
+                writeBatch(batch);
+                batch.clear();
+                if (failure != null) {
+                    failure = null;
+                    FailureListener listener = failureListener;
+                    if (listener != null) {
+                        listener.writeRecovered();
+                    }
+                }
+            } catch (IOException e) {
+                boolean first = failure == null;
+                failure = e;
+                retryAt = System.currentTimeMillis() + RETRY_MILLIS;
+                FailureListener listener = failureListener;
+                if (first && listener != null) {
+                    listener.writeFailed(e);
+                }
+            }
+        }
+    }
+
+    private void writeBatch(List<byte[]> batch) throws IOException {
+        int size = 0;
+        for (byte[] record : batch) {
+            size += 8 + record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CRC32 crc = new CRC32();
+        for (byte[] record : batch) {
+            crc.reset();
+            crc.update(record);
+            buffer.putInt(record.length).putInt((int) crc.getValue()).put(record);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        if (channel.size() >= SEGMENT_BYTES) {
+            channel.close();
+            openSegment(segment + 1);
+        }
+    }
+
+    private void openSegment(long number) throws IOException {
+        channel = FileChannel.open(segmentPath(directory, number),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segment = number;
+    }
+
+    static Path segmentPath(Path directory, long number) {
+        return directory.resolve(String.format("journal-%016d.log", number));
+    }
+
+    /** Lists the segment numbers present in the directory, in ascending order. */
+    static List<Long> listSegments(Path directory) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "journal-*.log")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.add(Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length())));
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Feeds every intact record of a segment to the handler, stopping quietly
+     * at the first truncated or corrupt frame.
+     */
+    static void replay(Path file, RecordHandler handler) throws IOException {
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            DataInputStream in = new DataInputStream(stream);
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] record;
+                int checksum;
+                try {
+                    int length = in.readInt();
+                    checksum = in.readInt();
+                    if (length < 0 || length > SEGMENT_BYTES) {
+                        return;
+                    }
+                    record = new byte[length];
+                    in.readFully(record);
+                } catch (EOFException e) {
+                    return;
+                }
+                crc.reset();
+                crc.update(record);
+                if ((int) crc.getValue() != checksum) {
+                    return;
+                }
+                handler.handle(new DataInputStream(new ByteArrayInputStream(record)));
+            }
+        }
+    }
+}
@@ -0,0 +1,2026 @@
+package taskgenie;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.control.cell.ComboBoxTableCell;
+import javafx.scene.control.cell.TextFieldTableCell;
+import javafx.scene.text.Font;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+import javafx.util.Callback;
+import javafx.util.Duration;
+import javafx.util.StringConverter;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.TextStyle;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.scene.layout.GridPane;
+
+
+public class TaskManager extends Application {
+    // Quiet period after the last filter change before the list is re-filtered
+    private static final long FILTER_DEBOUNCE_MILLIS = 150;
+    // Remind about tasks due today and tomorrow
+    private static final int REMINDER_DAYS = 1;
+    private static final int REMINDER_LIST_LIMIT = 10;
+    // How often the diagnostics panel re-reads the metrics while it is shown
+    private static final long DIAGNOSTICS_REFRESH_MILLIS = 1000;
+    private static final long SYNC_INTERVAL_MILLIS = 2000;
+    private static final String DOES_NOT_REPEAT = "Does not repeat";
+    // How far ahead a series' tooltip lists its occurrences
+    private static final int UPCOMING_OCCURRENCE_DAYS = 28;
+    // Tasks offered when picking a parent or blocker, and names listed per link
+    private static final int PICKER_LIMIT = 20;
+    private static final int LINK_NAME_LIMIT = 3;
+    // Completed tasks copied, written to the archive and removed from the store at a time
+    private static final int ARCHIVE_CHUNK = 5_000;
+    // Days in the calendar: six weeks, enough for any month
+    private static final int CALENDAR_DAYS = 42;
+    private static final Comparator<Category> CATEGORY_ORDER = Comparator.comparing(Category::getName);
+    private static final TaskFilter COMPLETED_TASKS =
+            new TaskFilter(null, null, true, false, null, TaskQuery.parse("completed"));
+
+    private Path dataDirectory = Paths.get(System.getProperty("taskgenie.dir",
+            Paths.get(System.getProperty("user.home"), ".taskgenie").toString()));
+    private TaskStore store = new TaskStore(TaskStore.Storage.valueOf(
+            System.getProperty("taskgenie.storage", "heap").toUpperCase(Locale.ROOT)),
+            new TaskClock(), loadNodeId(dataDirectory));
+    private Map<String, Category> categories = store.getCategories();
+    // Choices of the category column's editor, kept in name order as categories are added
+    private final ObservableList<Category> categoryItems = FXCollections.observableArrayList();
+    private TaskClock clock = store.getClock();
+    private TaskMetrics metrics = new TaskMetrics(store::size);
+    // Local HTTP API, started only when -Dtaskgenie.api.port is given; 0 picks a free port
+    private final Integer apiPort = Integer.getInteger("taskgenie.api.port");
+    private TaskApiServer apiServer;
+    // Instances to pull changes from, from -Dtaskgenie.sync.peers=http://token@host:port,...
+    private final List<TaskSync> peers = new ArrayList<>();
+    private ScheduledExecutorService syncExecutor;
+    private DeadlineScheduler deadlineScheduler = new DeadlineScheduler(store, REMINDER_DAYS);
+    private TaskPersistence persistence;
+    // Completed tasks moved out of the store; null if the archive could not be opened
+    private TaskArchive archive;
+    private ArchivedTaskList archivedTasks;
+
+    // FX-thread mirror of the store, fed by change batches. Edits arrive as
+    // row updates, so only the edited row repaints.
+    private TaskMirror tasks = new TaskMirror();
+    private Queue<TaskStore.Changes> pendingChanges = new ConcurrentLinkedQueue<>();
+    private TaskStore.FilterView filterView = store.openView(TaskFilter.ALL, clock.today());
+    private FilteredList<Task> filteredTasks = new FilteredList<>(tasks, filterView::contains);
+    private TaskSortedList sortedTasks = new TaskSortedList(filteredTasks);
+    
+    // Table components
+    private TableView<Task> taskTable = new TableView<>();
+    private TableColumn<Task, Boolean> completedCol = new TableColumn<>("Done");
+    private TableColumn<Task, String> nameCol = new TableColumn<>("Task Name");
+    private TableColumn<Task, String> descriptionCol = new TableColumn<>("Description");
+    private TableColumn<Task, Priority> priorityCol = new TableColumn<>("Priority");
+    private TableColumn<Task, LocalDate> deadlineCol = new TableColumn<>("Deadline");
+    private TableColumn<Task, Category> categoryCol = new TableColumn<>("Category");
+    private TableColumn<Task, String> linksCol = new TableColumn<>("Links");
+    private Map<TableColumn<Task, ?>, TaskField> sortFields = new HashMap<>();
+
+    // Archive components; the archive table replaces the task table while shown
+    private TableView<Task> archiveTable = new TableView<>();
+    private ToggleButton archiveToggle = new ToggleButton("Archive");
+    private Button archiveButton = new Button("Archive Completed");
+    private Label archiveStatusLabel = new Label();
+    
+    // Filter components
+    private ComboBox<Priority> filterPriorityCombo = new ComboBox<>();
+    private ComboBox<String> filterCategoryCombo = new ComboBox<>();
+    private CheckBox showCompletedCheck = new CheckBox("Show Completed");
+    private CheckBox showOverdueCheck = new CheckBox("Show Overdue Only");
+    private CheckBox readyOnlyCheck = new CheckBox("Ready Only");
+    private TextField searchField = new TextField();
+    private TextField queryField = new TextField();
+    private ComboBox<String> savedViewCombo = new ComboBox<>();
+    private Button saveViewButton = new Button("Save View...");
+    private Button deleteViewButton = new Button("Delete View");
+    // Saved filter views, by name; each is a query covering the whole filter panel
+    private Map<String, String> savedViews = new LinkedHashMap<>();
+    
+    // Input components
+    private ComboBox<Priority> priorityComboBox = new ComboBox<>();
+    private ComboBox<String> categoryComboBox = new ComboBox<>();
+    private DatePicker deadlineDatePicker = new DatePicker();
+    private ComboBox<String> repeatComboBox = new ComboBox<>();
+    private TextField taskNameField = new TextField();
+    private TextArea descriptionArea = new TextArea();
+    
+    // Statistics components
+    private Label totalTasksLabel = new Label("Total: 0");
+    private Label completedTasksLabel = new Label("Completed: 0");
+    private Label overdueTasksLabel = new Label("Overdue: 0");
+    private Label highPriorityLabel = new Label("High Priority: 0");
+    private Label priorityBreakdownLabel = new Label();
+    private Label categoryBreakdownLabel = new Label();
+    private Label filteredStatsLabel = new Label();
+    private Label criticalPathLabel = new Label();
+    private Label dueSoonLabel = new Label();
+
+    // Calendar panel: open tasks due per day of one month, shaded by how many there are
+    private ToggleButton calendarToggle = new ToggleButton("Calendar");
+    private ComboBox<Priority> calendarPriorityCombo = new ComboBox<>();
+    private Label calendarMonthLabel = new Label();
+    private GridPane calendarGrid = new GridPane();
+    private Label[] calendarDays = new Label[CALENDAR_DAYS];
+    private YearMonth calendarMonth;
+
+    // Filter evaluation runs here, one at a time; only the latest generation is shown
+    private ScheduledExecutorService filterExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "task-filter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private AtomicLong filterGeneration = new AtomicLong();
+    private ScheduledFuture<?> pendingFilter;
+    // Set while a critical path update is queued on the filter thread
+    private AtomicBoolean criticalPathPending = new AtomicBoolean();
+
+    // Import/export components
+    private Button importButton = new Button("Import...");
+    private Button exportButton = new Button("Export...");
+    private Button cancelTransferButton = new Button("Cancel");
+    private ProgressBar transferProgress = new ProgressBar(0);
+    private Label transferStatusLabel = new Label();
+    private ExecutorService transferExecutor = VirtualThreads.newExecutor("task-transfer");
+    private AtomicBoolean progressUpdatePending = new AtomicBoolean();
+    private volatile double transferFraction;
+    private volatile boolean transferCancelled;
+
+    // Diagnostics panel
+    private ToggleButton diagnosticsToggle = new ToggleButton("Diagnostics");
+    private Label diagnosticsLabel = new Label();
+    private Label diagnosticsStatusLabel = new Label();
+    // Shown above everything else for as long as changes are not being saved
+    private Label storageWarningLabel = new Label();
+    private Timeline diagnosticsRefresh = new Timeline(
+            new KeyFrame(Duration.millis(DIAGNOSTICS_REFRESH_MILLIS), e -> refreshDiagnostics()));
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+
+    @Override
+    public void start(Stage primaryStage) {
+        store.subscribe(this::onStoreChanges);
+        initializeCategories();
+        loadTasks();
+        setupUI(primaryStage);
+
+        deadlineScheduler.addListener(new DeadlineScheduler.Listener() {
+            @Override
+            public void dayChanged(LocalDate today) {
+                // Crossing tasks arrive as row updates; this restyles the rows already on screen
+                Platform.runLater(TaskManager.this::refreshTable);
+            }
+
+            @Override
+            public void dueSoon(LocalDate today, List<Task> due) {
+                Platform.runLater(() -> showReminder(today, due));
+            }
+        });
+        deadlineScheduler.start();
+        if (apiPort != null) {
+            startApiServer(apiPort);
+        }
+        startSync(System.getProperty("taskgenie.sync.peers", ""));
+    }
+
+    private static int loadNodeId(Path directory) {
+        try {
+            return TaskPersistence.nodeId(directory);
+        } catch (IOException e) {
+            // Still unique in practice, only not kept across restarts
+            System.err.println("Could not read the node id: " + e.getMessage());
+            return 1 + new SecureRandom().nextInt(TaskStore.MAX_NODE_ID);
+        }
+    }
+
+    /** Polls each peer's change feed; failed pulls are counted and retried on the next round. */
+    private void startSync(String peerList) {
+        for (String peer : peerList.split(",")) {
+            if (!peer.isBlank()) {
+                try {
+                    peers.add(new TaskSync(store, TaskSync.http(URI.create(peer.trim()))));
+                } catch (IllegalArgumentException e) {
+                    showAlert("Error", "Not syncing with " + peer.trim() + ": " + e.getMessage());
+                }
+            }
+        }
+        if (peers.isEmpty()) {
+            return;
+        }
+        syncExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncExecutor.scheduleWithFixedDelay(() -> {
+            for (TaskSync peer : peers) {
+                try (TaskMetrics.Span span = metrics.span("syncPull")) {
+                    metrics.counter("sync.applied").add(peer.pull());
+                } catch (IOException | RuntimeException e) {
+                    metrics.counter("sync.failures").increment();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }, 0, SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void startApiServer(int port) {
+        try {
+            TaskApiServer server = new TaskApiServer(store, metrics, TaskPersistence.apiToken(dataDirectory));
+            server.start(port);
+            apiServer = server;
+            diagnosticsStatusLabel.setText("API on http://127.0.0.1:" + server.getPort()
+                    + "/api/tasks, token in " + dataDirectory.resolve("api-token"));
+        } catch (IOException e) {
+            showAlert("Error", "Could not start the API server on port " + port + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void stop() throws Exception {
+        transferCancelled = true;
+        transferExecutor.shutdownNow();
+        filterExecutor.shutdownNow();
+        deadlineScheduler.close();
+        if (apiServer != null) {
+            apiServer.stop();
+        }
+        if (syncExecutor != null) {
+            syncExecutor.shutdownNow();
+        }
+        if (persistence != null) {
+            persistence.close();
+        }
+        if (archive != null) {
+            archive.close();
+        }
+    }
+
+    private void loadTasks() {
+        Path directory = dataDirectory;
+        List<TaskChangeLog.Entry> loaded = new ArrayList<>();
+        try {
+            persistence = TaskPersistence.open(directory, loaded::add);
+        } catch (IOException e) {
+            // Tasks can still be added and edited, but none of it outlives this session
+            showStorageWarning("Changes are not being saved: could not open task storage in " + directory
+                    + " (" + e.getMessage() + "). Everything done now is lost when TaskGenie is closed.");
+            showAlert("Error", "Could not open task storage in " + directory + ": " + e.getMessage());
+        }
+        if (persistence != null) {
+            // Restored with their stamps, so edits made elsewhere before the restart still win where they are newer
+            store.restore(loaded);
+            store.addChangeLogListener(persistence);
+            persistence.setFailureListener(new TaskJournal.FailureListener() {
+                @Override
+                public void writeFailed(IOException e) {
+                    metrics.counter("journal.failures").increment();
+                    Platform.runLater(() -> {
+                        showStorageWarning("Changes are not being saved to " + directory + " (" + e.getMessage()
+                                + "). Retrying every few seconds.");
+                        showAlert("Error", "Could not save changes in " + directory + ": "
+                                + e.getMessage() + "\nChanges are kept and saving is retried every few seconds."
+                                + " Changes made since then are lost if TaskGenie is closed before it succeeds.");
+                    });
+                }
+
+                @Override
+                public void writeRecovered() {
+                    Platform.runLater(() -> {
+                        showStorageWarning("");
+                        diagnosticsStatusLabel.setText("Saving changes works again; nothing was lost");
+                    });
+                }
+            });
+        }
+
+        try {
+            archive = TaskArchive.open(directory);
+            archivedTasks = new ArchivedTaskList(archive, store::category);
+        } catch (IOException e) {
+            showAlert("Error", "Could not open the archive in " + directory + ": " + e.getMessage());
+        }
+    }
+
+    /** Shows the warning above the window's contents until it is replaced, or cleared with "". */
+    private void showStorageWarning(String warning) {
+        storageWarningLabel.setText(warning);
+    }
+
+    private void initializeCategories() {
+        store.category("Work");
+        store.category("Personal");
+        store.category("Study");
+        store.category("Health");
+        store.category("Finance");
+        
+        categoryComboBox.getItems().addAll(categories.keySet());
+        repeatComboBox.getItems().add(DOES_NOT_REPEAT);
+        for (Recurrence.Frequency frequency : Recurrence.Frequency.values()) {
+            repeatComboBox.getItems().add(repeatLabel(frequency));
+        }
+        repeatComboBox.setValue(DOES_NOT_REPEAT);
+        filterCategoryCombo.getItems().addAll(categories.keySet());
+        filterCategoryCombo.getItems().add(0, "All Categories");
+        filterCategoryCombo.setValue("All Categories");
+    }
+
+    /**
+     * Store subscriber. Batches may arrive on any thread; they are queued and
+     * applied on the FX thread strictly in the order the store published them.
+     */
+    private void onStoreChanges(TaskStore.Changes changes) {
+        pendingChanges.add(changes);
+        if (Platform.isFxApplicationThread()) {
+            applyPendingChanges();
+        } else {
+            Platform.runLater(this::applyPendingChanges);
+        }
+    }
+
+    private void applyPendingChanges() {
+        try (TaskMetrics.Span span = metrics.span("applyChanges")) {
+            TaskStore.Changes changes;
+            boolean applied = false;
+            while ((changes = pendingChanges.poll()) != null) {
+                for (Category category : changes.getNewCategories()) {
+                    int at = Collections.binarySearch(categoryItems, category, CATEGORY_ORDER);
+                    if (at < 0) {
+                        categoryItems.add(~at, category);
+                    }
+                    if (!categoryComboBox.getItems().contains(category.getName())) {
+                        categoryComboBox.getItems().add(category.getName());
+                        filterCategoryCombo.getItems().add(category.getName());
+                    }
+                }
+                tasks.apply(changes);
+                applied = true;
+            }
+            if (applied) {
+                updateStatistics();
+            }
+        }
+    }
+
+    private void setupUI(Stage stage) {
+        stage.setTitle("Task Genie");
+
+        // Initialize priority combos
+        priorityComboBox.getItems().addAll(Priority.values());
+        priorityComboBox.setValue(Priority.MEDIUM);
+        
+        // Fixed: Use Priority enum only, no strings
+        filterPriorityCombo.getItems().addAll(Priority.values());
+        filterPriorityCombo.getItems().add(0, null); // null represents "All Priorities"
+        filterPriorityCombo.setValue(null); // Default to "All Priorities"
+        
+        // Custom cell factory to display "All Priorities" for null
+        filterPriorityCombo.setCellFactory(lv -> new ListCell<Priority>() {
+            @Override
+            protected void updateItem(Priority item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(item == null ? "All Priorities" : item.toString());
+            }
+        });
+        
+        filterPriorityCombo.setButtonCell(new ListCell<Priority>() {
+            @Override
+            protected void updateItem(Priority item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(item == null ? "All Priorities" : item.toString());
+            }
+        });
+
+        // Configure date picker
+        deadlineDatePicker.setValue(clock.today());
+        deadlineDatePicker.setDayCellFactory(picker -> new DateCell() {
+            @Override
+            public void updateItem(LocalDate date, boolean empty) {
+                super.updateItem(date, empty);
+                setDisable(date.isBefore(clock.today()));
+            }
+        });
+
+        // Setup table columns
+        setupTaskTable();
+        
+        // Setup filter controls
+        setupFilters();
+        
+        // Setup statistics panel
+        HBox statsCounters = new HBox(20, totalTasksLabel, completedTasksLabel, 
+                                 overdueTasksLabel, highPriorityLabel);
+        HBox statsBreakdown = new HBox(20, priorityBreakdownLabel, categoryBreakdownLabel);
+        VBox statsPanel = new VBox(5, statsCounters, statsBreakdown, dueSoonLabel, filteredStatsLabel,
+                criticalPathLabel);
+        statsPanel.setPadding(new Insets(10));
+        statsPanel.setStyle("-fx-background-color: #f0f0f0; -fx-border-color: #ccc; -fx-border-width: 1px;");
+
+        // Setup input form
+        GridPane inputGrid = new GridPane();
+        inputGrid.setHgap(10);
+        inputGrid.setVgap(10);
+        inputGrid.setPadding(new Insets(10));
+
+        inputGrid.add(new Label("Task Name:"), 0, 0);
+        inputGrid.add(taskNameField, 1, 0);
+        inputGrid.add(new Label("Description:"), 0, 1);
+        inputGrid.add(descriptionArea, 1, 1);
+        inputGrid.add(new Label("Priority:"), 0, 2);
+        inputGrid.add(priorityComboBox, 1, 2);
+        inputGrid.add(new Label("Category:"), 0, 3);
+        inputGrid.add(categoryComboBox, 1, 3);
+        inputGrid.add(new Label("Deadline:"), 0, 4);
+        inputGrid.add(deadlineDatePicker, 1, 4);
+        inputGrid.add(new Label("Repeat:"), 0, 5);
+        inputGrid.add(repeatComboBox, 1, 5);
+
+        // Setup buttons - removed edit button
+        Button addButton = new Button("Add Task");
+        addButton.setStyle("-fx-base: #4CAF50;");
+        addButton.setOnAction(e -> addTask());
+
+        Button deleteButton = new Button("Delete Task");
+        deleteButton.setStyle("-fx-base: #F44336;");
+        deleteButton.setOnAction(e -> deleteTask());
+
+        // Bulk actions on the selected rows, each applied as one store batch
+        Button completeButton = new Button("Mark Complete");
+        completeButton.setOnAction(e -> updateSelected(TaskField.COMPLETED, true));
+
+        MenuButton priorityMenu = new MenuButton("Set Priority");
+        for (Priority priority : Priority.values()) {
+            MenuItem item = new MenuItem(priority.toString());
+            item.setOnAction(e -> updateSelected(TaskField.PRIORITY, priority));
+            priorityMenu.getItems().add(item);
+        }
+
+        MenuButton categoryMenu = new MenuButton("Set Category");
+        fillCategoryMenu(categoryMenu);
+        // Rebuilt on opening, as categories can be added by imports
+        categoryMenu.setOnShowing(e -> fillCategoryMenu(categoryMenu));
+
+        // Links to a task picked by name; an edit that would make a task wait for itself is refused
+        Button parentButton = new Button("Set Parent...");
+        parentButton.setOnAction(e -> linkSelected(TaskField.PARENT));
+        Button blockedByButton = new Button("Blocked By...");
+        blockedByButton.setOnAction(e -> linkSelected(TaskField.BLOCKED_BY));
+        Button clearLinksButton = new Button("Clear Links");
+        clearLinksButton.setOnAction(e -> clearSelectedLinks());
+
+        HBox bulkBox = new HBox(10, new Label("Selected:"), completeButton, priorityMenu, categoryMenu,
+                parentButton, blockedByButton, clearLinksButton);
+        bulkBox.setPadding(new Insets(0, 10, 0, 10));
+
+        importButton.setOnAction(e -> importTasks());
+        exportButton.setOnAction(e -> exportTasks());
+        cancelTransferButton.setOnAction(e -> transferCancelled = true);
+        setTransferRunning(false);
+
+        archiveButton.setOnAction(e -> archiveCompleted());
+
+        HBox buttonBox = new HBox(10, addButton, deleteButton, importButton, exportButton, archiveButton,
+                transferProgress, cancelTransferButton, transferStatusLabel, archiveToggle, calendarToggle,
+                diagnosticsToggle);
+        buttonBox.setPadding(new Insets(10));
+
+        // Main layout
+        VBox root = new VBox(10);
+        root.setPadding(new Insets(10));
+        
+        // Filter panel
+        HBox filterControls = new HBox(10, 
+            new Label("Filters:"), 
+            filterPriorityCombo, 
+            filterCategoryCombo, 
+            showCompletedCheck, 
+            showOverdueCheck,
+            readyOnlyCheck,
+            searchField
+        );
+        HBox queryControls = new HBox(10, new Label("Query:"), queryField, savedViewCombo, saveViewButton,
+                deleteViewButton);
+        VBox filterPanel = new VBox(5, filterControls, queryControls);
+        filterPanel.setPadding(new Insets(10));
+        filterPanel.setStyle("-fx-background-color: #e0e0e0; -fx-border-color: #ccc; -fx-border-width: 1px;");
+
+        VBox diagnosticsPanel = createDiagnosticsPanel();
+        VBox archivePanel = createArchivePanel();
+        VBox calendarPanel = createCalendarPanel();
+
+        storageWarningLabel.setWrapText(true);
+        storageWarningLabel.setStyle("-fx-text-fill: red; -fx-font-weight: bold;");
+        storageWarningLabel.visibleProperty().bind(storageWarningLabel.textProperty().isNotEmpty());
+        storageWarningLabel.managedProperty().bind(storageWarningLabel.textProperty().isNotEmpty());
+        root.getChildren().addAll(
+            storageWarningLabel,
+            new Label("Task Manager"),
+            statsPanel,
+            inputGrid,
+            buttonBox,
+            bulkBox,
+            diagnosticsPanel,
+            calendarPanel,
+            filterPanel,
+            taskTable,
+            archivePanel
+        );
+
+        // Set up scene and stage
+        Scene scene = new Scene(root, 800, 600);
+        metrics.monitor(scene);
+        stage.setScene(scene);
+        stage.show();
+
+        // Initial statistics update
+        updateStatistics();
+    }
+
+    private void setupTaskTable() {
+        // Make the table editable
+        taskTable.setEditable(true);
+        taskTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        
+        // Completed column with checkbox
+        completedCol.setCellValueFactory(cellData -> cellData.getValue().completedProperty());
+        completedCol.setCellFactory(createCompletedCellFactory());
+        completedCol.setEditable(true);
+
+        // Name column - Editable
+        nameCol.setCellValueFactory(cellData -> cellData.getValue().nameProperty());
+        nameCol.setCellFactory(TextFieldTableCell.forTableColumn());
+        nameCol.setOnEditCommit(event -> {
+            try (TaskMetrics.Span span = metrics.span("editName")) {
+                Task task = event.getRowValue();
+                String newValue = event.getNewValue().trim();
+                if (!newValue.isEmpty()) {
+                    store.update(task, TaskField.NAME, newValue);
+                } else {
+                    // If empty name, revert to old value
+                    refreshTable();
+                    showAlert("Error", "Task name cannot be empty!");
+                }
+            }
+        });
+        nameCol.setEditable(true);
+
+        // Description column - Editable
+        descriptionCol.setCellValueFactory(cellData -> cellData.getValue().descriptionProperty());
+        descriptionCol.setCellFactory(TextFieldTableCell.forTableColumn());
+        descriptionCol.setOnEditCommit(event -> {
+            try (TaskMetrics.Span span = metrics.span("editDescription")) {
+                store.update(event.getRowValue(), TaskField.DESCRIPTION, event.getNewValue());
+            }
+        });
+        descriptionCol.setEditable(true);
+
+        // Priority column - Editable with ComboBox
+        ObservableList<Priority> priorities = FXCollections.observableArrayList(Priority.values());
+        priorityCol.setCellValueFactory(cellData -> cellData.getValue().priorityProperty());
+        priorityCol.setCellFactory(column -> new ComboBoxTableCell<Task, Priority>(priorities) {
+            @Override
+            public void updateItem(Priority priority, boolean empty) {
+                super.updateItem(priority, empty);
+                if (empty || priority == null) {
+                    setText(null);
+                    setStyle("");
+                } else {
+                    setText(priority.toString());
+                    if (priority == Priority.HIGH) {
+                        setStyle("-fx-text-fill: red; -fx-font-weight: bold;");
+                    } else if (priority == Priority.MEDIUM) {
+                        setStyle("-fx-text-fill: orange;");
+                    } else {
+                        setStyle("-fx-text-fill: green;");
+                    }
+                }
+            }
+        });
+        priorityCol.setOnEditCommit(event -> {
+            try (TaskMetrics.Span span = metrics.span("editPriority")) {
+                store.update(event.getRowValue(), TaskField.PRIORITY, event.getNewValue());
+            }
+        });
+        priorityCol.setEditable(true);
+
+        // Deadline column - Special custom cell factory for date editing
+        deadlineCol.setCellValueFactory(cellData -> cellData.getValue().deadlineProperty());
+            
+        // Custom cell factory for editable LocalDate cells
+        deadlineCol.setCellFactory(createDateCellFactory());
+        deadlineCol.setEditable(true);
+
+        // Category column - Editable with ComboBox
+        categoryItems.setAll(categories.values());
+        categoryItems.sort(CATEGORY_ORDER);
+        StringConverter<Category> categoryConverter = new StringConverter<Category>() {
+            @Override
+            public String toString(Category category) {
+                return category == null ? "" : category.getName();
+            }
+
+            @Override
+            public Category fromString(String name) {
+                return categories.get(name);
+            }
+        };
+        categoryCol.setCellValueFactory(cellData -> cellData.getValue().categoryProperty());
+        categoryCol.setCellFactory(ComboBoxTableCell.forTableColumn(categoryConverter, categoryItems));
+        categoryCol.setOnEditCommit(event -> {
+            try (TaskMetrics.Span span = metrics.span("editCategory")) {
+                store.update(event.getRowValue(), TaskField.CATEGORY, event.getNewValue());
+            }
+        });
+        categoryCol.setEditable(true);
+
+        // Links column - read only, worked out when a row is shown; a task whose
+        // blockers finish is published as updated, which repaints its row
+        linksCol.setCellValueFactory(cellData -> new ReadOnlyStringWrapper(describeLinks(cellData.getValue())));
+        linksCol.setSortable(false);
+
+        // Add columns to table
+        taskTable.getColumns().addAll(completedCol, nameCol, descriptionCol, priorityCol, deadlineCol, categoryCol,
+                linksCol);
+        taskTable.setItems(sortedTasks);
+
+        // Header clicks re-order the sort stage; with no sort column the rows stay in urgency order
+        sortFields.put(completedCol, TaskField.COMPLETED);
+        sortFields.put(nameCol, TaskField.NAME);
+        sortFields.put(descriptionCol, TaskField.DESCRIPTION);
+        sortFields.put(priorityCol, TaskField.PRIORITY);
+        sortFields.put(deadlineCol, TaskField.DEADLINE);
+        sortFields.put(categoryCol, TaskField.CATEGORY);
+        taskTable.setSortPolicy(table -> {
+            TaskSortedList.Order order = new TaskSortedList.Order();
+            for (TableColumn<Task, ?> column : table.getSortOrder()) {
+                order = order.then(sortFields.get(column), column.getSortType() == TableColumn.SortType.DESCENDING);
+            }
+            sortedTasks.setOrder(order.then(TaskSortedList.Order.URGENCY));
+            return true;
+        });
+        taskTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        
+        // Enable row selection without loading details into the form
+        // No auto-loading of task details when selecting a row
+    }
+    
+    private Callback<TableColumn<Task, Boolean>, TableCell<Task, Boolean>> createCompletedCellFactory() {
+        return column -> new TableCell<Task, Boolean>() {
+            private final CheckBox checkBox = new CheckBox();
+
+            {
+                // The row repaints through the list extractor once the store publishes the edit
+                checkBox.setOnAction(e -> {
+                    Task task = getTableRow().getItem();
+                    if (task != null) {
+                        try (TaskMetrics.Span span = metrics.span("editCompleted")) {
+                            store.update(task, TaskField.COMPLETED, checkBox.isSelected());
+                        }
+                        // Completing a series only moves its deadline, so the row may not repaint
+                        checkBox.setSelected(task.isCompleted());
+                    }
+                });
+            }
+
+            @Override
+            protected void updateItem(Boolean completed, boolean empty) {
+                super.updateItem(completed, empty);
+                if (empty || completed == null) {
+                    setGraphic(null);
+                } else {
+                    checkBox.setSelected(completed);
+                    setGraphic(checkBox);
+                }
+            }
+        };
+    }
+
+    private Callback<TableColumn<Task, LocalDate>, TableCell<Task, LocalDate>> createDateCellFactory() {
+        return column -> new TableCell<Task, LocalDate>() {
+            private final DatePicker datePicker = new DatePicker();
+            private final Tooltip seriesTooltip = new Tooltip();
+            
+            {
+                // Occurrences are listed only when the tooltip is about to show
+                seriesTooltip.setOnShowing(e -> {
+                    Task task = getTableRow() == null ? null : getTableRow().getItem();
+                    if (task != null && task.getRecurrence() != null) {
+                        seriesTooltip.setText(describeRecurrence(task));
+                    }
+                });
+
+                // Configure date picker
+                datePicker.setDayCellFactory(picker -> new DateCell() {
+                    @Override
+                    public void updateItem(LocalDate date, boolean empty) {
+                        super.updateItem(date, empty);
+                        setDisable(date.isBefore(clock.today()));
+                    }
+                });
+                
+                // Handle date selection
+                datePicker.setOnAction(e -> {
+                    commitEdit(datePicker.getValue());
+                });
+            }
+            
+            @Override
+            public void startEdit() {
+                if (!isEmpty()) {
+                    super.startEdit();
+                    datePicker.setValue(getItem());
+                    setText(null);
+                    setGraphic(datePicker);
+                }
+            }
+            
+            @Override
+            public void cancelEdit() {
+                super.cancelEdit();
+                updateItem(getItem(), false);
+            }
+            
+            @Override
+            public void commitEdit(LocalDate newValue) {
+                try (TaskMetrics.Span span = metrics.span("editDeadline")) {
+                    super.commitEdit(newValue);
+                    Task task = getTableView().getItems().get(getIndex());
+                    store.update(task, TaskField.DEADLINE, newValue);
+                }
+            }
+            
+            @Override
+            protected void updateItem(LocalDate date, boolean empty) {
+                super.updateItem(date, empty);
+                
+                Task task = empty || getTableRow() == null ? null : getTableRow().getItem();
+                boolean series = task != null && task.getRecurrence() != null;
+                setTooltip(series ? seriesTooltip : null);
+                if (empty || date == null) {
+                    setText(null);
+                    setStyle("");
+                    setGraphic(null);
+                } else {
+                    setGraphic(null); // Reset graphic to null when not in edit mode
+                    setText(series ? "\u21bb " + date.format(DateTimeFormatter.ISO_DATE)
+                            : date.format(DateTimeFormatter.ISO_DATE));
+                    if (date.isBefore(clock.today())) {
+                        setStyle("-fx-text-fill: red; -fx-font-weight: bold;");
+                    } else {
+                        setStyle("");
+                    }
+                }
+            }
+        };
+    }
+
+    private void setupFilters() {
+        // Set up filter controls
+        showCompletedCheck.setSelected(true);
+        
+        // Add listeners to filter controls
+        filterPriorityCombo.valueProperty().addListener((obs, oldVal, newVal) -> applyFilters());
+        filterCategoryCombo.valueProperty().addListener((obs, oldVal, newVal) -> applyFilters());
+        showCompletedCheck.selectedProperty().addListener((obs, oldVal, newVal) -> applyFilters());
+        showOverdueCheck.selectedProperty().addListener((obs, oldVal, newVal) -> applyFilters());
+        readyOnlyCheck.selectedProperty().addListener((obs, oldVal, newVal) -> applyFilters());
+
+        // Search box - matches words in the task name or description
+        searchField.setPromptText("Search tasks");
+        searchField.textProperty().addListener((obs, oldVal, newVal) -> applyFilters());
+
+        // Query box - the TaskQuery language, for what the controls above cannot express
+        queryField.setPromptText("e.g. priority in (HIGH, MEDIUM) and due within 7 days and open");
+        queryField.setPrefColumnCount(36);
+        queryField.textProperty().addListener((obs, oldVal, newVal) -> applyFilters());
+
+        savedViewCombo.setPromptText("Saved views");
+        try {
+            savedViews.putAll(TaskPersistence.loadViews(dataDirectory));
+        } catch (IOException e) {
+            System.err.println("Could not read the saved views: " + e.getMessage());
+        }
+        savedViewCombo.getItems().setAll(savedViews.keySet());
+        savedViewCombo.setOnAction(e -> showSavedView(savedViewCombo.getValue()));
+        saveViewButton.setOnAction(e -> saveView());
+        deleteViewButton.setOnAction(e -> deleteView());
+    }
+
+    /**
+     * Shows a saved view. Its query already covers the whole panel, so the
+     * other controls go back to showing everything.
+     */
+    private void showSavedView(String name) {
+        String query = name == null ? null : savedViews.get(name);
+        if (query == null) {
+            return;
+        }
+        filterPriorityCombo.setValue(null);
+        filterCategoryCombo.setValue("All Categories");
+        showCompletedCheck.setSelected(true);
+        showOverdueCheck.setSelected(false);
+        readyOnlyCheck.setSelected(false);
+        searchField.clear();
+        queryField.setText(query);
+    }
+
+    private void saveView() {
+        String query = panelQuery();
+        if (query.isEmpty()) {
+            showAlert("Error", "Set a filter or type a query to save as a view.");
+            return;
+        }
+        try {
+            TaskQuery.parse(query);
+        } catch (IllegalArgumentException e) {
+            showAlert("Error", "The query is not valid: " + e.getMessage());
+            return;
+        }
+        TextInputDialog dialog = new TextInputDialog(savedViewCombo.getValue());
+        dialog.setTitle("Save View");
+        dialog.setHeaderText(null);
+        dialog.setContentText("View name:");
+        Optional<String> result = dialog.showAndWait();
+        if (result.isEmpty() || result.get().isBlank()) {
+            return;
+        }
+        // Tabs and line breaks separate the entries in the views file
+        String name = result.get().replaceAll("[\\t\\r\\n]", " ").trim();
+        savedViews.put(name, query.replaceAll("[\\t\\r\\n]", " "));
+        if (writeSavedViews()) {
+            savedViewCombo.getItems().setAll(savedViews.keySet());
+            savedViewCombo.setValue(name);
+        }
+    }
+
+    private void deleteView() {
+        String name = savedViewCombo.getValue();
+        if (name == null || savedViews.remove(name) == null) {
+            return;
+        }
+        if (writeSavedViews()) {
+            savedViewCombo.getItems().setAll(savedViews.keySet());
+            savedViewCombo.setValue(null);
+        }
+    }
+
+    private boolean writeSavedViews() {
+        try {
+            TaskPersistence.saveViews(dataDirectory, savedViews);
+            return true;
+        } catch (IOException e) {
+            showAlert("Error", "Could not save the views in " + dataDirectory + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** The whole filter panel written as one query, so a saved view needs nothing but its text. */
+    private String panelQuery() {
+        List<String> parts = new ArrayList<>();
+        if (filterPriorityCombo.getValue() != null) {
+            parts.add("priority = " + filterPriorityCombo.getValue().name());
+        }
+        String category = filterCategoryCombo.getValue();
+        if (category != null && !"All Categories".equals(category)) {
+            parts.add("category = \"" + category + "\"");
+        }
+        if (!showCompletedCheck.isSelected()) {
+            parts.add("open");
+        }
+        if (showOverdueCheck.isSelected()) {
+            parts.add("overdue");
+        }
+        if (readyOnlyCheck.isSelected()) {
+            parts.add("ready");
+        }
+        if (!searchField.getText().isBlank()) {
+            parts.add("\"" + searchField.getText().replace('"', ' ').trim() + "\"");
+        }
+        String query = queryField.getText().trim();
+        if (!query.isEmpty()) {
+            parts.add(parts.isEmpty() ? query : "(" + query + ")");
+        }
+        return String.join(" and ", parts);
+    }
+
+    /**
+     * Schedules the filter to be re-evaluated off the FX thread once the
+     * controls have been quiet for {@link #FILTER_DEBOUNCE_MILLIS}. A newer
+     * change cancels an evaluation that has not started and discards the
+     * result of one that has.
+     */
+    private void applyFilters() {
+        try (TaskMetrics.Span span = metrics.span("applyFilters")) {
+            // Priority filter - null means "All Priorities"
+            Priority selectedPriority = filterPriorityCombo.getValue();
+            String selectedCategory = filterCategoryCombo.getValue();
+            Category category = "All Categories".equals(selectedCategory) ? null : categories.get(selectedCategory);
+            TaskQuery query;
+            try {
+                query = TaskQuery.parse(queryField.getText());
+                if (readyOnlyCheck.isSelected()) {
+                    // Parsed on its own first, so error positions refer to the text as typed
+                    query = TaskQuery.parse(query == null ? "ready" : "ready and (" + query.getText() + ")");
+                }
+                queryField.setStyle("");
+                queryField.setTooltip(null);
+            } catch (IllegalArgumentException e) {
+                // Keep the last result on screen until the query parses again
+                queryField.setStyle("-fx-border-color: #d9534f;");
+                queryField.setTooltip(new Tooltip(e.getMessage()));
+                return;
+            }
+
+            TaskFilter filter = new TaskFilter(selectedPriority, category,
+                    showCompletedCheck.isSelected(), showOverdueCheck.isSelected(), searchField.getText(), query);
+            long generation = filterGeneration.incrementAndGet();
+            if (pendingFilter != null) {
+                pendingFilter.cancel(false);
+            }
+            pendingFilter = filterExecutor.schedule(() -> evaluateFilter(filter, generation),
+                    FILTER_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void evaluateFilter(TaskFilter filter, long generation) {
+        if (generation != filterGeneration.get()) {
+            return;
+        }
+        TaskStatistics.Snapshot statistics;
+        // Timed on the filter thread; the FX thread's share is "publishFilter" below
+        try (TaskMetrics.Span span = metrics.span("evaluateFilter")) {
+            statistics = filterView.setFilter(filter, clock.today());
+        }
+        if (generation != filterGeneration.get()) {
+            return;
+        }
+        Platform.runLater(() -> {
+            if (generation != filterGeneration.get()) {
+                return;
+            }
+            try (TaskMetrics.Span span = metrics.span("publishFilter")) {
+                // The view answers membership from its bitset; a fresh predicate makes the
+                // list re-test every row and publish the new contents as one change
+                filteredTasks.setPredicate(filterView::contains);
+                showFilteredStatistics(statistics);
+            }
+        });
+    }
+
+    private void showFilteredStatistics(TaskStatistics.Snapshot statistics) {
+        filteredStatsLabel.setText("Showing: " + statistics.getTotal()
+                + "  Completed: " + statistics.getCompleted()
+                + "  Overdue: " + statistics.getOverdue()
+                + "  High Priority: " + statistics.getHighPriority());
+    }
+
+    // Removed loadTaskForEditing method as it's no longer needed
+
+    private void addTask() {
+        String name = taskNameField.getText().trim();
+        if (name.isEmpty()) {
+            showAlert("Error", "Task name cannot be empty!");
+            return;
+        }
+
+        try (TaskMetrics.Span span = metrics.span("addTask")) {
+            String description = descriptionArea.getText();
+            Priority priority = priorityComboBox.getValue();
+            String categoryName = categoryComboBox.getValue();
+            LocalDate deadline = deadlineDatePicker.getValue();
+
+            Category category = categories.get(categoryName);
+            Recurrence.Frequency frequency = repeatFrequency(repeatComboBox.getValue());
+            if (frequency == null) {
+                store.add(new RegularTask(name, description, priority, deadline, category));
+            } else {
+                // A series starts at its deadline, today when none was picked
+                Recurrence rule = Recurrence.of(deadline != null ? deadline : clock.today(), frequency);
+                store.add(new RecurringTask(name, description, priority, category, rule));
+            }
+
+            clearFields();
+        }
+    }
+
+    private void deleteTask() {
+        List<Task> selected = selectedTasks();
+        if (!selected.isEmpty()) {
+            try (TaskMetrics.Span span = metrics.span("deleteTask")) {
+                store.removeAll(selected);
+            }
+        }
+    }
+
+    private void fillCategoryMenu(MenuButton menu) {
+        menu.getItems().clear();
+        for (String name : new TreeSet<>(categories.keySet())) {
+            MenuItem item = new MenuItem(name);
+            item.setOnAction(e -> updateSelected(TaskField.CATEGORY, categories.get(name)));
+            menu.getItems().add(item);
+        }
+    }
+
+    private void updateSelected(TaskField field, Object value) {
+        List<Task> selected = selectedTasks();
+        if (!selected.isEmpty()) {
+            try (TaskMetrics.Span span = metrics.span("updateSelected")) {
+                store.updateAll(selected, field, value);
+            }
+        }
+    }
+
+    /**
+     * Links the selected tasks to a task picked by name: as their parent,
+     * or as one more task they are blocked by. One batch, so a link that
+     * would make some task wait for itself leaves all of them unchanged.
+     */
+    private void linkSelected(TaskField field) {
+        List<Task> selected = selectedTasks();
+        if (selected.isEmpty()) {
+            return;
+        }
+        Task target = pickTask(field == TaskField.PARENT ? "Set Parent" : "Blocked By");
+        if (target == null) {
+            return;
+        }
+        try (TaskMetrics.Span span = metrics.span("linkSelected")) {
+            store.batch(batch -> {
+                for (Task task : selected) {
+                    if (task.getId() == target.getId()) {
+                        continue;
+                    }
+                    if (field == TaskField.PARENT) {
+                        batch.update(task, TaskField.PARENT, target.getId());
+                    } else {
+                        List<Long> blockers = new ArrayList<>(task.getBlockedBy());
+                        blockers.add(target.getId());
+                        batch.update(task, TaskField.BLOCKED_BY, Task.normalizeIds(blockers));
+                    }
+                }
+            });
+        } catch (IllegalArgumentException e) {
+            showAlert("Error", e.getMessage());
+        }
+    }
+
+    private void clearSelectedLinks() {
+        List<Task> selected = selectedTasks();
+        if (!selected.isEmpty()) {
+            try (TaskMetrics.Span span = metrics.span("clearLinks")) {
+                store.batch(batch -> {
+                    for (Task task : selected) {
+                        batch.update(task, TaskField.PARENT, null);
+                        batch.update(task, TaskField.BLOCKED_BY, List.of());
+                    }
+                });
+            }
+        }
+    }
+
+    /** Asks for a task: a search over names and descriptions, then a choice among the best matches. */
+    private Task pickTask(String title) {
+        TextInputDialog search = new TextInputDialog();
+        search.setTitle(title);
+        search.setHeaderText(null);
+        search.setContentText("Find task:");
+        Optional<String> text = search.showAndWait();
+        if (text.isEmpty() || text.get().isBlank()) {
+            return null;
+        }
+        TaskFilter filter = new TaskFilter(null, null, true, false, text.get());
+        Map<String, Task> matches = new LinkedHashMap<>();
+        for (Task task : store.search(filter, clock.today(), PICKER_LIMIT)) {
+            matches.put(task.getName() + " (#" + task.getId() + ")", task);
+        }
+        if (matches.isEmpty()) {
+            showAlert("Error", "No task matches \"" + text.get().trim() + "\".");
+            return null;
+        }
+        ChoiceDialog<String> choice = new ChoiceDialog<>(matches.keySet().iterator().next(), matches.keySet());
+        choice.setTitle(title);
+        choice.setHeaderText(null);
+        choice.setContentText("Task:");
+        return choice.showAndWait().map(matches::get).orElse(null);
+    }
+
+    /** The Links cell: the task this one is a subtask of, and the open tasks it waits for. */
+    private String describeLinks(Task task) {
+        StringJoiner links = new StringJoiner("; ");
+        Long parentId = task.getParentId();
+        if (parentId != null) {
+            Task parent = store.find(parentId);
+            links.add("Subtask of " + (parent == null ? "#" + parentId : parent.getName()));
+        }
+        List<Task> waitsFor = store.openPrerequisites(task);
+        if (!waitsFor.isEmpty()) {
+            StringJoiner names = new StringJoiner(", ", "Waits for ", "");
+            for (int i = 0; i < Math.min(waitsFor.size(), LINK_NAME_LIMIT); i++) {
+                names.add(waitsFor.get(i).getName());
+            }
+            if (waitsFor.size() > LINK_NAME_LIMIT) {
+                names.add((waitsFor.size() - LINK_NAME_LIMIT) + " more");
+            }
+            links.add(names.toString());
+        }
+        return links.toString();
+    }
+
+    /** Copies the selection, which changes as the store's batch is applied. */
+    private List<Task> selectedTasks() {
+        List<Task> selected = new ArrayList<>(taskTable.getSelectionModel().getSelectedItems());
+        if (selected.isEmpty()) {
+            showAlert("Error", "No task selected!");
+        }
+        return selected;
+    }
+
+    private void importTasks() {
+        File file = createTransferChooser("Import Tasks").showOpenDialog(taskTable.getScene().getWindow());
+        if (file != null) {
+            TaskTransfer.Format format = TaskTransfer.Format.forPath(file.toPath());
+            runTransfer("Importing", "Imported", progress ->
+                new TaskTransfer(store).importFrom(file.toPath(), format, progress, () -> transferCancelled));
+        }
+    }
+
+    private void exportTasks() {
+        File file = createTransferChooser("Export Tasks").showSaveDialog(taskTable.getScene().getWindow());
+        if (file != null) {
+            TaskTransfer.Format format = TaskTransfer.Format.forPath(file.toPath());
+            runTransfer("Exporting", "Exported", progress ->
+                new TaskTransfer(store).exportTo(file.toPath(), format, progress, () -> transferCancelled));
+        }
+    }
+
+    private FileChooser createTransferChooser(String title) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(title);
+        chooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("CSV files", "*.csv"),
+            new FileChooser.ExtensionFilter("JSON Lines files", "*.jsonl", "*.ndjson"));
+        return chooser;
+    }
+
+    private interface TransferJob {
+        TaskTransfer.Result run(TaskTransfer.Progress progress) throws Exception;
+    }
+
+    /**
+     * Runs an import or export on a background thread. Progress reaches the
+     * FX thread through at most one pending runLater at a time, however fast
+     * the job reports it.
+     */
+    private void runTransfer(String activity, String doneVerb, TransferJob job) {
+        transferCancelled = false;
+        transferFraction = 0;
+        transferProgress.setProgress(0);
+        transferStatusLabel.setText(activity + "...");
+        setTransferRunning(true);
+
+        TaskTransfer.Progress progress = (done, total) -> {
+            transferFraction = total > 0 ? (double) done / total : ProgressBar.INDETERMINATE_PROGRESS;
+            if (progressUpdatePending.compareAndSet(false, true)) {
+                Platform.runLater(() -> {
+                    progressUpdatePending.set(false);
+                    transferProgress.setProgress(transferFraction);
+                });
+            }
+        };
+        transferExecutor.execute(() -> {
+            try {
+                TaskTransfer.Result result = job.run(progress);
+                String summary = result.isCancelled()
+                        ? activity + " cancelled after " + result.getProcessed() + " tasks"
+                        : doneVerb + " " + result.getProcessed() + " tasks"
+                            + (result.getSkipped() > 0 ? " (" + result.getSkipped() + " invalid rows skipped)" : "");
+                Platform.runLater(() -> {
+                    setTransferRunning(false);
+                    transferStatusLabel.setText(summary);
+                });
+            } catch (Exception e) {
+                Platform.runLater(() -> {
+                    setTransferRunning(false);
+                    transferStatusLabel.setText("");
+                    showAlert("Error", activity + " failed: " + e.getMessage());
+                });
+            }
+        });
+    }
+
+    private void setTransferRunning(boolean running) {
+        importButton.setDisable(running);
+        exportButton.setDisable(running);
+        archiveButton.setDisable(running || archive == null);
+        transferProgress.setVisible(running);
+        cancelTransferButton.setVisible(running);
+    }
+
+    private void clearFields() {
+        taskNameField.clear();
+        descriptionArea.clear();
+        priorityComboBox.setValue(Priority.MEDIUM);
+        categoryComboBox.setValue("Work");
+        deadlineDatePicker.setValue(clock.today());
+        repeatComboBox.setValue(DOES_NOT_REPEAT);
+    }
+
+    private static String repeatLabel(Recurrence.Frequency frequency) {
+        String name = frequency.name();
+        return name.charAt(0) + name.substring(1).toLowerCase(Locale.ROOT);
+    }
+
+    /** The frequency chosen in the repeat selector, or null for a one-off task. */
+    private static Recurrence.Frequency repeatFrequency(String label) {
+        for (Recurrence.Frequency frequency : Recurrence.Frequency.values()) {
+            if (repeatLabel(frequency).equals(label)) {
+                return frequency;
+            }
+        }
+        return null;
+    }
+
+    /** Tooltip text for a series: its rule and the occurrences of the next few weeks. */
+    private String describeRecurrence(Task task) {
+        StringBuilder text = new StringBuilder(task.getRecurrence().describe());
+        LocalDate today = clock.today();
+        LocalDate end = today.plusDays(UPCOMING_OCCURRENCE_DAYS);
+        List<LocalDate> upcoming = new ArrayList<>();
+        if (task.getDeadline() != null && !task.getDeadline().isAfter(end)) {
+            upcoming.add(task.getDeadline());
+        }
+        LocalDate from = task.getDeadline() == null || task.getDeadline().isBefore(today)
+                ? today : task.getDeadline().plusDays(1);
+        store.forEachOccurrence(task.getRecurrence(), from, end, upcoming::add);
+        if (upcoming.isEmpty()) {
+            text.append("\nNo occurrences in the next ").append(UPCOMING_OCCURRENCE_DAYS / 7).append(" weeks");
+        } else {
+            text.append("\nNext:");
+            for (LocalDate date : upcoming) {
+                text.append("\n  ").append(date.format(DateTimeFormatter.ISO_DATE));
+            }
+        }
+        return text.toString();
+    }
+
+    private void updateStatistics() {
+        try (TaskMetrics.Span span = metrics.span("updateStatistics")) {
+            showStatistics(store.statistics());
+            showFilteredStatistics(filterView.statistics());
+            updateCriticalPath();
+            showDueSoon();
+            if (calendarToggle.isSelected()) {
+                refreshCalendar();
+            }
+        }
+    }
+
+    /** Open tasks due from today through the end of the week and of the month, from the deadline histogram. */
+    private void showDueSoon() {
+        LocalDate today = clock.today();
+        LocalDate endOfWeek = today.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
+        LocalDate endOfMonth = today.with(TemporalAdjusters.lastDayOfMonth());
+        int high = DeadlineHistogram.open(Priority.HIGH);
+        dueSoonLabel.setText("Due this week: " + store.countDue(today, endOfWeek, DeadlineHistogram.OPEN)
+                + " (" + store.countDue(today, endOfWeek, high) + " high)"
+                + "    Due this month: " + store.countDue(today, endOfMonth, DeadlineHistogram.OPEN)
+                + " (" + store.countDue(today, endOfMonth, high) + " high)");
+    }
+
+    private void showStatistics(TaskStatistics.Snapshot statistics) {
+        // Counters are maintained incrementally, so reading them is cheap
+        long total = statistics.getTotal();
+        long completed = statistics.getCompleted();
+        long overdue = statistics.getOverdue();
+        long highPriority = statistics.getHighPriority();
+
+        totalTasksLabel.setText("Total: " + total);
+        completedTasksLabel.setText("Completed: " + completed + " (" + (total > 0 ? (completed * 100 / total) : 0) + "%)");
+        overdueTasksLabel.setText("Overdue: " + overdue);
+        highPriorityLabel.setText("High Priority: " + highPriority);
+
+        StringJoiner byPriority = new StringJoiner("  ", "By priority: ", "");
+        for (Priority priority : Priority.values()) {
+            byPriority.add(priority + " " + statistics.getCount(priority));
+        }
+        priorityBreakdownLabel.setText(byPriority.toString());
+
+        StringJoiner byCategory = new StringJoiner("  ", "By category: ", "");
+        for (String name : new TreeSet<>(categories.keySet())) {
+            byCategory.add(name + " " + statistics.getCount(categories.get(name)));
+        }
+        categoryBreakdownLabel.setText(byCategory.toString());
+    }
+
+    /**
+     * Recomputes the critical path on the filter thread. The store caches it
+     * until the dependencies, completions or deadlines change, but after such
+     * a change it walks every linked task; requests made meanwhile share the
+     * queued update.
+     */
+    private void updateCriticalPath() {
+        if (!criticalPathPending.compareAndSet(false, true)) {
+            return;
+        }
+        filterExecutor.execute(() -> {
+            criticalPathPending.set(false);
+            TaskGraph.CriticalPath path;
+            try (TaskMetrics.Span span = metrics.span("criticalPath")) {
+                path = store.criticalPath();
+            }
+            Platform.runLater(() -> showCriticalPath(path));
+        });
+    }
+
+    private void showCriticalPath(TaskGraph.CriticalPath path) {
+        List<Task> chain = path.getTasks();
+        if (chain.isEmpty()) {
+            criticalPathLabel.setText("Critical path: none");
+            return;
+        }
+        StringJoiner names = new StringJoiner(" \u2192 ");
+        for (int i = 0; i < Math.min(chain.size(), LINK_NAME_LIMIT); i++) {
+            names.add(chain.get(i).getName());
+        }
+        if (chain.size() > LINK_NAME_LIMIT) {
+            names.add("\u2026");
+        }
+        String slack = path.getSlackDays() == null ? "no deadline"
+                : path.getSlackDays() < 0 ? -path.getSlackDays() + " days late for " + path.getDeadline()
+                : path.getSlackDays() + " days of slack before " + path.getDeadline();
+        criticalPathLabel.setText("Critical path: " + chain.size() + " tasks, " + slack + " (" + names + ")");
+    }
+
+    private void refreshTable() {
+        try (TaskMetrics.Span span = metrics.span("refreshTable")) {
+            taskTable.refresh();
+        }
+    }
+
+    /**
+     * The archive table, shown instead of the task table while the Archive
+     * toggle is on. It is read-only and keeps the order tasks were archived in;
+     * rows are read from the archive files only when scrolled into view.
+     */
+    private VBox createArchivePanel() {
+        TableColumn<Task, String> doneColumn = new TableColumn<>("Done");
+        doneColumn.setCellValueFactory(cellData ->
+                new ReadOnlyStringWrapper(cellData.getValue().isCompleted() ? "\u2713" : ""));
+        TableColumn<Task, String> nameColumn = new TableColumn<>("Task Name");
+        nameColumn.setCellValueFactory(cellData -> new ReadOnlyStringWrapper(cellData.getValue().getName()));
+        TableColumn<Task, String> descriptionColumn = new TableColumn<>("Description");
+        descriptionColumn.setCellValueFactory(cellData ->
+                new ReadOnlyStringWrapper(cellData.getValue().getDescription()));
+        TableColumn<Task, Priority> priorityColumn = new TableColumn<>("Priority");
+        priorityColumn.setCellValueFactory(cellData ->
+                new ReadOnlyObjectWrapper<>(cellData.getValue().getPriority()));
+        TableColumn<Task, LocalDate> deadlineColumn = new TableColumn<>("Deadline");
+        deadlineColumn.setCellValueFactory(cellData ->
+                new ReadOnlyObjectWrapper<>(cellData.getValue().getDeadline()));
+        TableColumn<Task, Category> categoryColumn = new TableColumn<>("Category");
+        categoryColumn.setCellValueFactory(cellData ->
+                new ReadOnlyObjectWrapper<>(cellData.getValue().getCategory()));
+        archiveTable.getColumns().addAll(doneColumn, nameColumn, descriptionColumn, priorityColumn, deadlineColumn,
+                categoryColumn);
+        // Sorting would have to read every row; the archive stays in archiving order
+        for (TableColumn<Task, ?> column : archiveTable.getColumns()) {
+            column.setSortable(false);
+        }
+        archiveTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        archiveTable.setPlaceholder(new Label("No archived tasks"));
+
+        if (archivedTasks != null) {
+            archiveTable.setItems(archivedTasks);
+            archivedTasks.addListener((ListChangeListener<Task>) change -> showArchiveSize());
+            metrics.gauge("archive.rows", archivedTasks::size);
+            metrics.gauge("archive.pageLoads", archivedTasks::getPageLoads);
+        }
+        showArchiveSize();
+
+        VBox panel = new VBox(5, archiveStatusLabel, archiveTable);
+        panel.visibleProperty().bind(archiveToggle.selectedProperty());
+        panel.managedProperty().bind(archiveToggle.selectedProperty());
+        taskTable.visibleProperty().bind(archiveToggle.selectedProperty().not());
+        taskTable.managedProperty().bind(archiveToggle.selectedProperty().not());
+        return panel;
+    }
+
+    private void showArchiveSize() {
+        archiveStatusLabel.setText(archivedTasks == null ? "The archive could not be opened"
+                : archivedTasks.size() + " archived tasks");
+    }
+
+    /**
+     * Moves the completed tasks into the archive, a chunk at a time on the
+     * transfer thread. The tasks of a chunk still in the store and still
+     * completed are copied under a read lock and appended to the archive
+     * outside any lock, as the append waits for the disk. A short batch then
+     * removes those not changed since they were copied; a task edited in
+     * between stays in the store and also has a stale row in the archive. A
+     * failed append removes nothing, and a crash after an append can leave a
+     * task in both places, never in neither.
+     */
+    private void archiveCompleted() {
+        List<Task> completed = store.query(COMPLETED_TASKS, clock.today());
+        if (completed.isEmpty()) {
+            transferStatusLabel.setText("No completed tasks to archive");
+            return;
+        }
+        runTransfer("Archiving", "Archived", progress -> {
+            int archived = 0;
+            for (int from = 0; from < completed.size() && !transferCancelled; from += ARCHIVE_CHUNK) {
+                List<Task> chunk = completed.subList(from, Math.min(completed.size(), from + ARCHIVE_CHUNK));
+                List<Task> chosen = new ArrayList<>();
+                List<TaskRecord> records = new ArrayList<>();
+                List<Long> versions = new ArrayList<>();
+                store.forEach(chunk, task -> {
+                    if (task.isCompleted()) {
+                        chosen.add(task);
+                        records.add(TaskRecord.of(task));
+                        versions.add(task.getVersion());
+                    }
+                });
+                // Written and forced outside the store's lock, so edits and reads go on meanwhile
+                archive.append(records);
+                int[] removed = new int[1];
+                store.batch(batch -> {
+                    for (int i = 0; i < chosen.size(); i++) {
+                        Task task = chosen.get(i);
+                        // A task edited since it was copied stays, and its archived row is a stale duplicate
+                        if (batch.contains(task) && task.getVersion() == versions.get(i)) {
+                            batch.remove(task);
+                            removed[0]++;
+                        }
+                    }
+                });
+                archived += removed[0];
+                progress.update(from + chunk.size(), completed.size());
+                Platform.runLater(archivedTasks::refresh);
+            }
+            return new TaskTransfer.Result(archived, 0, transferCancelled);
+        });
+    }
+
+    private VBox createCalendarPanel() {
+        calendarMonth = YearMonth.from(clock.today());
+        calendarPriorityCombo.getItems().add(null);
+        calendarPriorityCombo.getItems().addAll(Priority.values());
+        calendarPriorityCombo.setCellFactory(lv -> createPriorityCell());
+        calendarPriorityCombo.setButtonCell(createPriorityCell());
+        calendarPriorityCombo.setValue(null);
+        calendarPriorityCombo.setOnAction(e -> refreshCalendar());
+
+        Button previousButton = new Button("<");
+        previousButton.setOnAction(e -> showCalendarMonth(calendarMonth.minusMonths(1)));
+        Button nextButton = new Button(">");
+        nextButton.setOnAction(e -> showCalendarMonth(calendarMonth.plusMonths(1)));
+        Button todayButton = new Button("Today");
+        todayButton.setOnAction(e -> showCalendarMonth(YearMonth.from(clock.today())));
+        calendarMonthLabel.setMinWidth(120);
+
+        calendarGrid.setHgap(2);
+        calendarGrid.setVgap(2);
+        for (int column = 0; column < 7; column++) {
+            DayOfWeek day = DayOfWeek.MONDAY.plus(column);
+            calendarGrid.add(new Label(day.getDisplayName(TextStyle.SHORT, Locale.getDefault())), column, 0);
+        }
+        for (int cell = 0; cell < CALENDAR_DAYS; cell++) {
+            calendarDays[cell] = new Label();
+            calendarDays[cell].setPrefSize(90, 36);
+            calendarGrid.add(calendarDays[cell], cell % 7, 1 + cell / 7);
+        }
+
+        HBox header = new HBox(10, previousButton, calendarMonthLabel, nextButton, todayButton,
+                calendarPriorityCombo);
+        VBox panel = new VBox(5, header, calendarGrid);
+        panel.setPadding(new Insets(10));
+        panel.setStyle("-fx-background-color: #f0f4f8; -fx-border-color: #ccc; -fx-border-width: 1px;");
+        panel.visibleProperty().bind(calendarToggle.selectedProperty());
+        panel.managedProperty().bind(calendarToggle.selectedProperty());
+        calendarToggle.selectedProperty().addListener((obs, oldVal, shown) -> {
+            if (shown) {
+                refreshCalendar();
+            }
+        });
+        return panel;
+    }
+
+    private static ListCell<Priority> createPriorityCell() {
+        return new ListCell<Priority>() {
+            @Override
+            protected void updateItem(Priority item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(item == null ? "All Priorities" : item.toString());
+            }
+        };
+    }
+
+    private void showCalendarMonth(YearMonth month) {
+        calendarMonth = month;
+        refreshCalendar();
+    }
+
+    /**
+     * Fills the calendar with the open tasks due on each of the six weeks
+     * shown, from the deadline histogram, plus the later occurrences of open
+     * series. Clicking a day filters the table to the tasks due on it.
+     */
+    private void refreshCalendar() {
+        try (TaskMetrics.Span span = metrics.span("refreshCalendar")) {
+            LocalDate today = clock.today();
+            LocalDate first = calendarMonth.atDay(1).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            LocalDate last = first.plusDays(CALENDAR_DAYS - 1);
+            Priority priority = calendarPriorityCombo.getValue();
+            int buckets = priority == null ? DeadlineHistogram.OPEN : DeadlineHistogram.open(priority);
+            int[] due = store.countDueByDay(first, last, buckets);
+            int[] repeats = store.countRepeatsByDay(first, last, buckets);
+            int busiest = 1;
+            for (int cell = 0; cell < CALENDAR_DAYS; cell++) {
+                busiest = Math.max(busiest, due[cell] + repeats[cell]);
+            }
+
+            calendarMonthLabel.setText(calendarMonth.getMonth().getDisplayName(TextStyle.FULL, Locale.getDefault())
+                    + " " + calendarMonth.getYear());
+            for (int cell = 0; cell < CALENDAR_DAYS; cell++) {
+                Label dayLabel = calendarDays[cell];
+                LocalDate date = first.plusDays(cell);
+                int count = due[cell] + repeats[cell];
+                dayLabel.setText(date.getDayOfMonth() + (count > 0 ? "\n" + count + " due" : ""));
+                dayLabel.setTooltip(count == 0 ? null : new Tooltip(due[cell] + " open tasks due"
+                        + (repeats[cell] > 0 ? ", " + repeats[cell] + " more repeats of a series" : "")));
+                // Shaded by the day's share of the busiest day shown
+                double heat = count == 0 ? 0 : 0.15 + 0.65 * count / busiest;
+                String text = !YearMonth.from(date).equals(calendarMonth) ? "-fx-text-fill: #999;"
+                        : date.isBefore(today) && count > 0 ? "-fx-text-fill: red;" : "";
+                String border = date.equals(today) ? "-fx-border-color: #333;" : "-fx-border-color: #ddd;";
+                dayLabel.setStyle(String.format(Locale.ROOT, "-fx-background-color: rgba(229, 57, 53, %.2f); %s %s",
+                        heat, text, border));
+                dayLabel.setOnMouseClicked(e -> queryField.setText("due on " + date));
+            }
+        }
+    }
+
+    /**
+     * Panel with the operation timings, shown by the Diagnostics toggle. It
+     * only re-reads the metrics, and only counts dropped frames, while open.
+     */
+    private VBox createDiagnosticsPanel() {
+        // Only read from the FX thread: by the panel and by a dump
+        metrics.gauge("tasks.shown", filteredTasks::size);
+        diagnosticsLabel.setFont(Font.font("Monospaced", 11));
+        diagnosticsRefresh.setCycleCount(Timeline.INDEFINITE);
+
+        Button dumpButton = new Button("Dump Metrics");
+        dumpButton.setOnAction(e -> dumpMetrics());
+
+        VBox panel = new VBox(5, diagnosticsLabel, new HBox(10, dumpButton, diagnosticsStatusLabel));
+        panel.setPadding(new Insets(10));
+        panel.setStyle("-fx-background-color: #f8f8e8; -fx-border-color: #ccc; -fx-border-width: 1px;");
+        panel.visibleProperty().bind(diagnosticsToggle.selectedProperty());
+        panel.managedProperty().bind(diagnosticsToggle.selectedProperty());
+
+        diagnosticsToggle.selectedProperty().addListener((obs, oldVal, shown) -> {
+            metrics.setFrameMonitoring(shown);
+            if (shown) {
+                refreshDiagnostics();
+                diagnosticsRefresh.play();
+            } else {
+                diagnosticsRefresh.stop();
+            }
+        });
+        return panel;
+    }
+
+    private void refreshDiagnostics() {
+        diagnosticsLabel.setText(metrics.report());
+    }
+
+    /** Writes metrics.json and metrics.prom next to the task data. */
+    private void dumpMetrics() {
+        try {
+            metrics.dump(dataDirectory);
+            diagnosticsStatusLabel.setText("Wrote metrics.json and metrics.prom to " + dataDirectory);
+        } catch (IOException e) {
+            showAlert("Error", "Could not write metrics to " + dataDirectory + ": " + e.getMessage());
+        }
+    }
+
+    private void showReminder(LocalDate today, List<Task> due) {
+        StringBuilder list = new StringBuilder();
+        for (Task task : due.subList(0, Math.min(due.size(), REMINDER_LIST_LIMIT))) {
+            list.append(task.getDeadline().equals(today) ? "Today" : task.getDeadline().format(DateTimeFormatter.ISO_DATE))
+                .append(": ").append(task.getName()).append('\n');
+        }
+        if (due.size() > REMINDER_LIST_LIMIT) {
+            list.append("...and ").append(due.size() - REMINDER_LIST_LIMIT).append(" more");
+        }
+        // Not modal: a reminder should not block whatever the user is doing
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Reminder");
+        alert.setHeaderText(due.size() + (due.size() == 1 ? " task is" : " tasks are") + " due soon");
+        alert.setContentText(list.toString());
+        alert.show();
+    }
+
+    private void showAlert(String title, String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+}
+
+enum Priority {
+    HIGH("High"), MEDIUM("Medium"), LOW("Low");
+
+    private final String displayName;
+
+    Priority(String displayName) {
+        this.displayName = displayName;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
+
+enum TaskField {
+    // Appended fields keep the ordinals that journals and change feeds store
+    NAME, DESCRIPTION, PRIORITY, DEADLINE, COMPLETED, CATEGORY, PARENT, BLOCKED_BY
+}
+
+/**
+ * Receives membership and per-field change notifications for tasks, so that
+ * aggregates can be maintained incrementally instead of rescanning the list.
+ */
+interface TaskChangeListener {
+    default void taskAdded(Task task) {}
+    default void taskRemoved(Task task) {}
+    void taskChanged(Task task, TaskField field, Object oldValue, Object newValue);
+}
+
+/**
+ * A task as seen by the rest of the app. Where the field values live is up to
+ * the subclass: {@link HeapTask} keeps them on the object, while the views
+ * handed out by {@link TaskColumns} read them from shared column arrays.
+ */
+abstract class Task {
+    private TaskChangeListener changeListener;
+    private int slot = -1;
+    private int row = -1;
+    private long id;
+    // Store version of the batch that last added or changed the task
+    private long version;
+
+    // Created on first use and only ever touched on the FX thread. The stored
+    // fields are the source of truth; syncProperties() publishes them.
+    private Properties properties;
+
+    public abstract String getTaskType();
+
+    public abstract String getName();
+    public abstract String getDescription();
+    public abstract Priority getPriority();
+    public abstract LocalDate getDeadline();
+    public abstract boolean isCompleted();
+    public abstract Category getCategory();
+
+    /** The repeat rule of a recurring task; null for a one-off task. */
+    public Recurrence getRecurrence() {
+        return null;
+    }
+
+    /** Id of the task this is a subtask of; null for a top-level task. */
+    public abstract Long getParentId();
+
+    /** Ids of the tasks that must be completed before this one, ascending; empty when unblocked. */
+    public abstract List<Long> getBlockedBy();
+
+    protected abstract void writeName(String name);
+    protected abstract void writeDescription(String description);
+    protected abstract void writePriority(Priority priority);
+    protected abstract void writeDeadline(LocalDate deadline);
+    protected abstract void writeCompleted(boolean completed);
+    protected abstract void writeCategory(Category category);
+    protected abstract void writeParentId(Long parentId);
+    protected abstract void writeBlockedBy(List<Long> blockedBy);
+
+    // Setters are for tasks that are not in a store yet. Once a task has been
+    // added, change it through TaskStore so the edit is locked, indexed and
+    // published to subscribers.
+
+    public void setName(String name) {
+        String old = getName();
+        writeName(name);
+        fireChanged(TaskField.NAME, old, name);
+    }
+    public ReadOnlyStringProperty nameProperty() {
+        Properties p = properties();
+        if (p.name == null) p.name = new ReadOnlyStringWrapper(this, "name", getName());
+        return p.name.getReadOnlyProperty();
+    }
+
+    public void setDescription(String description) {
+        String old = getDescription();
+        writeDescription(description);
+        fireChanged(TaskField.DESCRIPTION, old, description);
+    }
+    public ReadOnlyStringProperty descriptionProperty() {
+        Properties p = properties();
+        if (p.description == null) p.description = new ReadOnlyStringWrapper(this, "description", getDescription());
+        return p.description.getReadOnlyProperty();
+    }
+
+    public void setPriority(Priority priority) {
+        Priority old = getPriority();
+        writePriority(priority);
+        fireChanged(TaskField.PRIORITY, old, priority);
+    }
+    public ReadOnlyObjectProperty<Priority> priorityProperty() {
+        Properties p = properties();
+        if (p.priority == null) p.priority = new ReadOnlyObjectWrapper<>(this, "priority", getPriority());
+        return p.priority.getReadOnlyProperty();
+    }
+
+    public void setDeadline(LocalDate deadline) {
+        LocalDate old = getDeadline();
+        writeDeadline(deadline);
+        fireChanged(TaskField.DEADLINE, old, deadline);
+    }
+    public ReadOnlyObjectProperty<LocalDate> deadlineProperty() {
+        Properties p = properties();
+        if (p.deadline == null) p.deadline = new ReadOnlyObjectWrapper<>(this, "deadline", getDeadline());
+        return p.deadline.getReadOnlyProperty();
+    }
+
+    public void setCompleted(boolean completed) {
+        boolean old = isCompleted();
+        writeCompleted(completed);
+        fireChanged(TaskField.COMPLETED, old, completed);
+    }
+    public ReadOnlyBooleanProperty completedProperty() {
+        Properties p = properties();
+        if (p.completed == null) p.completed = new ReadOnlyBooleanWrapper(this, "completed", isCompleted());
+        return p.completed.getReadOnlyProperty();
+    }
+
+    public void setCategory(Category category) {
+        Category old = getCategory();
+        writeCategory(category);
+        fireChanged(TaskField.CATEGORY, old, category);
+    }
+    public ReadOnlyObjectProperty<Category> categoryProperty() {
+        Properties p = properties();
+        if (p.category == null) p.category = new ReadOnlyObjectWrapper<>(this, "category", getCategory());
+        return p.category.getReadOnlyProperty();
+    }
+
+    public void setParentId(Long parentId) {
+        Long old = getParentId();
+        writeParentId(parentId);
+        fireChanged(TaskField.PARENT, old, parentId);
+    }
+
+    /** Replaces the blockers; the ids are stored sorted and without duplicates. */
+    public void setBlockedBy(List<Long> blockedBy) {
+        List<Long> old = getBlockedBy();
+        List<Long> normalized = normalizeIds(blockedBy);
+        writeBlockedBy(normalized);
+        fireChanged(TaskField.BLOCKED_BY, old, normalized);
+    }
+
+    static List<Long> normalizeIds(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        return List.copyOf(new TreeSet<>(ids));
+    }
+
+    /**
+     * Copies the fields into any properties created so far. Called on the FX
+     * thread when the store reports this task as updated.
+     */
+    void syncProperties() {
+        Properties p = properties;
+        if (p == null) return;
+        if (p.name != null) p.name.set(getName());
+        if (p.description != null) p.description.set(getDescription());
+        if (p.priority != null) p.priority.set(getPriority());
+        if (p.deadline != null) p.deadline.set(getDeadline());
+        if (p.completed != null) p.completed.set(isCompleted());
+        if (p.category != null) p.category.set(getCategory());
+    }
+
+    Object get(TaskField field) {
+        switch (field) {
+            case NAME: return getName();
+            case DESCRIPTION: return getDescription();
+            case PRIORITY: return getPriority();
+            case DEADLINE: return getDeadline();
+            case COMPLETED: return isCompleted();
+            case CATEGORY: return getCategory();
+            case PARENT: return getParentId();
+            case BLOCKED_BY: return getBlockedBy();
+            default: throw new IllegalArgumentException("Unknown field: " + field);
+        }
+    }
+
+    void set(TaskField field, Object value) {
+        switch (field) {
+            case NAME: setName((String) value); break;
+            case DESCRIPTION: setDescription((String) value); break;
+            case PRIORITY: setPriority((Priority) value); break;
+            case DEADLINE: setDeadline((LocalDate) value); break;
+            case COMPLETED: setCompleted((Boolean) value); break;
+            case CATEGORY: setCategory((Category) value); break;
+            case PARENT: setParentId((Long) value); break;
+            case BLOCKED_BY: setBlockedBy(castIds(value)); break;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Long> castIds(Object value) {
+        return (List<Long>) value;
+    }
+
+    long getId() { return id; }
+    void setId(long id) { this.id = id; }
+    long getVersion() { return version; }
+    void setVersion(long version) { this.version = version; }
+    int getSlot() { return slot; }
+    void setSlot(int slot) { this.slot = slot; }
+    // Position in the FX mirror list, kept by TaskMirror; FX thread only
+    int getRow() { return row; }
+    void setRow(int row) { this.row = row; }
+
+    void setChangeListener(TaskChangeListener changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    private Properties properties() {
+        if (properties == null) properties = new Properties();
+        return properties;
+    }
+
+    private void fireChanged(TaskField field, Object oldValue, Object newValue) {
+        if (changeListener != null && !Objects.equals(oldValue, newValue)) {
+            changeListener.taskChanged(this, field, oldValue, newValue);
+        }
+    }
+
+    /** One holder instead of six fields, since most tasks never get properties. */
+    private static class Properties {
+        ReadOnlyStringWrapper name;
+        ReadOnlyStringWrapper description;
+        ReadOnlyObjectWrapper<Priority> priority;
+        ReadOnlyObjectWrapper<LocalDate> deadline;
+        ReadOnlyBooleanWrapper completed;
+        ReadOnlyObjectWrapper<Category> category;
+    }
+}
+
+/** Task whose field values are plain fields on the object. */
+abstract class HeapTask extends Task {
+    private String name;
+    private String description;
+    private Priority priority;
+    private LocalDate deadline;
+    private boolean completed;
+    private Category category;
+    private Long parentId;
+    private List<Long> blockedBy = List.of();
+
+    public HeapTask(String name, String description, Priority priority, LocalDate deadline, Category category) {
+        this.name = name;
+        this.description = description;
+        this.priority = priority;
+        this.deadline = deadline;
+        this.category = category;
+        this.completed = false;
+    }
+
+    @Override public String getName() { return name; }
+    @Override public String getDescription() { return description; }
+    @Override public Priority getPriority() { return priority; }
+    @Override public LocalDate getDeadline() { return deadline; }
+    @Override public boolean isCompleted() { return completed; }
+    @Override public Category getCategory() { return category; }
+    @Override public Long getParentId() { return parentId; }
+    @Override public List<Long> getBlockedBy() { return blockedBy; }
+
+    @Override protected void writeName(String name) { this.name = name; }
+    @Override protected void writeDescription(String description) { this.description = description; }
+    @Override protected void writePriority(Priority priority) { this.priority = priority; }
+    @Override protected void writeDeadline(LocalDate deadline) { this.deadline = deadline; }
+    @Override protected void writeCompleted(boolean completed) { this.completed = completed; }
+    @Override protected void writeCategory(Category category) { this.category = category; }
+    @Override protected void writeParentId(Long parentId) { this.parentId = parentId; }
+    @Override protected void writeBlockedBy(List<Long> blockedBy) { this.blockedBy = blockedBy; }
+}
+
+class RegularTask extends HeapTask {
+    static final String TYPE = "Regular Task";
+
+    public RegularTask(String name, String description, Priority priority, LocalDate deadline, Category category) {
+        super(name, description, priority, deadline, category);
+    }
+
+    @Override
+    public String getTaskType() {
+        return TYPE;
+    }
+}
+
+/**
+ * A repeating task. The series is a single task whose deadline is its current
+ * occurrence: completing it moves the deadline on to the next occurrence (see
+ * {@link TaskStore.Batch#update}), and only the last occurrence of a bounded
+ * series completes the task. Counters, indexes and filters therefore treat
+ * the series like any other task, and later occurrences are only computed
+ * when a date window asks for them.
+ */
+class RecurringTask extends HeapTask {
+    static final String TYPE = "Recurring Task";
+
+    private final Recurrence recurrence;
+
+    /** Starts the series at the rule's first occurrence. */
+    public RecurringTask(String name, String description, Priority priority, Category category,
+                         Recurrence recurrence) {
+        this(name, description, priority, recurrence.first(), category, recurrence);
+    }
+
+    /** Restores a series whose current occurrence is {@code deadline}. */
+    public RecurringTask(String name, String description, Priority priority, LocalDate deadline,
+                         Category category, Recurrence recurrence) {
+        super(name, description, priority, deadline, category);
+        this.recurrence = recurrence;
+    }
+
+    @Override
+    public String getTaskType() {
+        return TYPE;
+    }
+
+    @Override
+    public Recurrence getRecurrence() {
+        return recurrence;
+    }
+}
+
+class Category {
+    private String name;
+
+    public Category(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
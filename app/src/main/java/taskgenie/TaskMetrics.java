@@ -0,0 +1,356 @@
+package taskgenie;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.Scene;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters and latency histograms for the UI's hot paths, cheap enough to
+ * leave on in production: recording a sample is a few uncontended adds. Each
+ * timed operation is also a JDK Flight Recorder event carrying the task count
+ * at the time, so a recording shows which operation stalled and how large the
+ * list was when it did.
+ *
+ * Histograms have power-of-two buckets from 1 µs up, which is precise enough
+ * to tell a 2 ms operation from a 200 ms one and maps directly onto
+ * Prometheus' cumulative {@code le} buckets.
+ */
+final class TaskMetrics {
+    /** Buckets 0..n-2 hold samples up to 2^i µs; the last one everything slower. */
+    private static final int BUCKETS = 26;
+    /** One frame at JavaFX's default 60 pulses per second. */
+    static final long FRAME_NANOS = 1_000_000_000L / 60;
+
+    @Name("taskgenie.Operation")
+    @Label("Operation")
+    @jdk.jfr.Category("TaskGenie")
+    @Description("A timed UI operation")
+    static class OperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Task Count")
+        long taskCount;
+    }
+
+    @Name("taskgenie.SlowPulse")
+    @Label("Slow Pulse")
+    @jdk.jfr.Category("TaskGenie")
+    @Description("A scene pulse whose CSS and layout pass overran a frame")
+    @Threshold("16 ms")
+    static class PulseEvent extends Event {
+        @Label("Task Count")
+        long taskCount;
+    }
+
+    /** Latency histogram of one operation. */
+    static final class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        public void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            buckets.incrementAndGet(bucket(nanos));
+        }
+
+        public long getCount() { return count.sum(); }
+        public long getTotalNanos() { return totalNanos.sum(); }
+        public long getMaxNanos() { return maxNanos.get(); }
+
+        public long getMeanNanos() {
+            long n = getCount();
+            return n == 0 ? 0 : getTotalNanos() / n;
+        }
+
+        /**
+         * Upper bound of the bucket holding the given quantile, capped at the
+         * slowest sample seen. Exact to within a factor of two.
+         */
+        public long getQuantileNanos(double quantile) {
+            long n = getCount();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * n);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS - 1; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBoundNanos(i), getMaxNanos());
+                }
+            }
+            return getMaxNanos();
+        }
+
+        private static int bucket(long nanos) {
+            // Rounded up, so a sample never lands in a bucket whose bound is below it
+            long micros = (nanos + 999) / 1000;
+            if (micros <= 1) {
+                return 0;
+            }
+            return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros - 1));
+        }
+
+        private static long upperBoundNanos(int bucket) {
+            return (1L << bucket) * 1000;
+        }
+    }
+
+    /** One run of a timed operation; closing it records the sample. */
+    final class Span implements AutoCloseable {
+        private final Timer timer;
+        private final OperationEvent event = new OperationEvent();
+        private final long start;
+
+        private Span(String operation) {
+            this.timer = timer(operation);
+            event.operation = operation;
+            event.begin();
+            this.start = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            timer.record(System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.taskCount = taskCount.getAsLong();
+                event.commit();
+            }
+        }
+    }
+
+    private final LongSupplier taskCount;
+    private final Map<String, Timer> timers = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private final LongAdder droppedFrames = counter("frames.dropped");
+    private AnimationTimer frameMonitor;
+
+    /** @param taskCount the store's task count, read when an event is committed */
+    public TaskMetrics(LongSupplier taskCount) {
+        this.taskCount = taskCount;
+        gauge("tasks", taskCount);
+    }
+
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, n -> new Timer());
+    }
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /** Starts timing an operation, for use in try-with-resources. */
+    public Span span(String operation) {
+        return new Span(operation);
+    }
+
+    /**
+     * Times the CSS and layout pass of every pulse of the scene. Rendering
+     * happens afterwards on the render thread and is not included.
+     */
+    public void monitor(Scene scene) {
+        Timer pulses = timer("pulse");
+        long[] pulseStart = new long[1];
+        PulseEvent[] event = new PulseEvent[1];
+        scene.addPreLayoutPulseListener(() -> {
+            event[0] = new PulseEvent();
+            event[0].begin();
+            pulseStart[0] = System.nanoTime();
+        });
+        scene.addPostLayoutPulseListener(() -> {
+            pulses.record(System.nanoTime() - pulseStart[0]);
+            event[0].end();
+            if (event[0].shouldCommit()) {
+                event[0].taskCount = taskCount.getAsLong();
+                event[0].commit();
+            }
+        });
+    }
+
+    /**
+     * Counts dropped frames while enabled. JavaFX only pulses when something
+     * needs repainting, so this keeps it pulsing every frame and counts the
+     * frames missed whenever the FX thread was too busy to keep up. That
+     * costs a wake-up per frame, so it is meant to be on only while someone
+     * is watching.
+     */
+    public void setFrameMonitoring(boolean enabled) {
+        if (enabled && frameMonitor == null) {
+            frameMonitor = new AnimationTimer() {
+                private long last;
+
+                @Override
+                public void handle(long now) {
+                    // Half a frame of slack absorbs ordinary timer jitter
+                    if (last != 0 && now - last > FRAME_NANOS * 3 / 2) {
+                        droppedFrames.add((now - last + FRAME_NANOS / 2) / FRAME_NANOS - 1);
+                    }
+                    last = now;
+                }
+            };
+            frameMonitor.start();
+        } else if (!enabled && frameMonitor != null) {
+            frameMonitor.stop();
+            frameMonitor = null;
+        }
+    }
+
+    /** Plain-text summary for the diagnostics panel. */
+    public String report() {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            out.append(gauge.getKey()).append(": ").append(gauge.getValue().getAsLong()).append("   ");
+        }
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            out.append(counter.getKey()).append(": ").append(counter.getValue().sum()).append("   ");
+        }
+        out.append('\n').append(String.format("%-20s %8s %9s %9s %9s %9s%n",
+                "operation (ms)", "count", "mean", "p50", "p99", "max"));
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            Timer timer = entry.getValue();
+            out.append(String.format("%-20s %8d %9.2f %9.2f %9.2f %9.2f%n", entry.getKey(), timer.getCount(),
+                    millis(timer.getMeanNanos()), millis(timer.getQuantileNanos(0.5)),
+                    millis(timer.getQuantileNanos(0.99)), millis(timer.getMaxNanos())));
+        }
+        return out.toString();
+    }
+
+    /** JSON summary; bucket i of a timer counts the samples up to 2^i µs, the last one the rest. */
+    public String toJson() {
+        StringBuilder out = new StringBuilder("{");
+        Json.appendField(out, "timestamp", Instant.now().toString());
+        out.append(",\"gauges\":{");
+        appendValues(out, gauges, LongSupplier::getAsLong);
+        out.append("},\"counters\":{");
+        appendValues(out, counters, LongAdder::sum);
+        out.append("},\"timers\":{");
+        boolean first = true;
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            Timer timer = entry.getValue();
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            Json.appendString(out, entry.getKey()).append(":{")
+                .append("\"count\":").append(timer.getCount())
+                .append(",\"totalNanos\":").append(timer.getTotalNanos())
+                .append(",\"meanNanos\":").append(timer.getMeanNanos())
+                .append(",\"p50Nanos\":").append(timer.getQuantileNanos(0.5))
+                .append(",\"p99Nanos\":").append(timer.getQuantileNanos(0.99))
+                .append(",\"maxNanos\":").append(timer.getMaxNanos())
+                .append(",\"buckets\":[");
+            for (int i = 0; i < BUCKETS; i++) {
+                out.append(i == 0 ? "" : ",").append(timer.buckets.get(i));
+            }
+            out.append("]}");
+        }
+        return out.append("}}\n").toString();
+    }
+
+    /** Prometheus text exposition format, as read by a node exporter's textfile collector. */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            String name = metricName(gauge.getKey());
+            out.append("# TYPE ").append(name).append(" gauge\n")
+               .append(name).append(' ').append(gauge.getValue().getAsLong()).append('\n');
+        }
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            String name = metricName(counter.getKey()) + "_total";
+            out.append("# TYPE ").append(name).append(" counter\n")
+               .append(name).append(' ').append(counter.getValue().sum()).append('\n');
+        }
+        out.append("# TYPE taskgenie_operation_seconds histogram\n");
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            Timer timer = entry.getValue();
+            String label = "operation=\"" + entry.getKey() + "\"";
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS - 1; i++) {
+                cumulative += timer.buckets.get(i);
+                out.append("taskgenie_operation_seconds_bucket{").append(label)
+                   .append(",le=\"").append(seconds(Timer.upperBoundNanos(i))).append("\"} ")
+                   .append(cumulative).append('\n');
+            }
+            // Read once, so +Inf and _count agree even while samples arrive
+            long count = cumulative + timer.buckets.get(BUCKETS - 1);
+            out.append("taskgenie_operation_seconds_bucket{").append(label).append(",le=\"+Inf\"} ")
+               .append(count).append('\n')
+               .append("taskgenie_operation_seconds_sum{").append(label).append("} ")
+               .append(seconds(timer.getTotalNanos())).append('\n')
+               .append("taskgenie_operation_seconds_count{").append(label).append("} ")
+               .append(count).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes {@code metrics.json} and {@code metrics.prom} into the directory.
+     * Each file is replaced in one rename, so a collector polling the
+     * directory never reads half a file.
+     */
+    public void dump(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        write(directory.resolve("metrics.json"), toJson());
+        write(directory.resolve("metrics.prom"), toPrometheus());
+    }
+
+    private static void write(Path path, String content) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private interface ValueReader<T> {
+        long read(T value);
+    }
+
+    private static <T> void appendValues(StringBuilder out, Map<String, T> values, ValueReader<T> reader) {
+        boolean first = true;
+        for (Map.Entry<String, T> entry : values.entrySet()) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            Json.appendString(out, entry.getKey()).append(':').append(reader.read(entry.getValue()));
+        }
+    }
+
+    private static String metricName(String name) {
+        return "taskgenie_" + name.replaceAll("[^A-Za-z0-9]", "_");
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+}
@@ -0,0 +1,106 @@
+package taskgenie;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * FX-thread list of the store's tasks, fed from change batches. Each task
+ * remembers its row (see {@link Task#getRow()}), so an edit is reported as an
+ * update of that row directly. An extractor would do the same by observing
+ * six properties on every task in the list, which creates the properties and
+ * their listeners for every task whether or not its row is ever shown.
+ */
+class TaskMirror extends ObservableListBase<Task> {
+    private final ArrayList<Task> rows = new ArrayList<>();
+
+    @Override
+    public Task get(int index) {
+        return rows.get(index);
+    }
+
+    @Override
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * Applies one store batch: removals, additions and edits. Listeners get a
+     * single change for the whole batch, however many tasks it touched.
+     */
+    void apply(TaskStore.Changes changes) {
+        beginChange();
+        removed(changes.getRemoved());
+        added(changes.getAdded());
+        for (Task task : changes.getUpdated()) {
+            task.syncProperties();
+        }
+        updated(changes.getUpdated());
+        endChange();
+    }
+
+    void added(Collection<Task> added) {
+        if (added.isEmpty()) {
+            return;
+        }
+        int from = rows.size();
+        rows.ensureCapacity(from + added.size());
+        for (Task task : added) {
+            task.setRow(rows.size());
+            rows.add(task);
+        }
+        beginChange();
+        nextAdd(from, rows.size());
+        endChange();
+    }
+
+    void removed(Collection<Task> removed) {
+        int[] positions = new int[removed.size()];
+        int count = 0;
+        for (Task task : removed) {
+            if (task.getRow() >= 0) {
+                positions[count++] = task.getRow();
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        Arrays.sort(positions, 0, count);
+        beginChange();
+        // Highest first, so each index is still valid when reported
+        for (int i = count - 1; i >= 0; i--) {
+            nextRemove(positions[i], rows.get(positions[i]));
+        }
+        // One compaction pass instead of a shift per removed row
+        int write = positions[0];
+        int next = 0;
+        for (int read = positions[0]; read < rows.size(); read++) {
+            Task task = rows.get(read);
+            if (next < count && positions[next] == read) {
+                task.setRow(-1);
+                next++;
+            } else {
+                task.setRow(write);
+                rows.set(write++, task);
+            }
+        }
+        rows.subList(write, rows.size()).clear();
+        endChange();
+    }
+
+    /** Reports the tasks as updated; their properties should be synced first. */
+    void updated(Collection<Task> updated) {
+        if (updated.isEmpty()) {
+            return;
+        }
+        beginChange();
+        for (Task task : updated) {
+            if (task.getRow() >= 0) {
+                nextUpdate(task.getRow());
+            }
+        }
+        endChange();
+    }
+}
@@ -0,0 +1,457 @@
+package taskgenie;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable storage for the task list: a binary snapshot plus a tail of journal
+ * segments. Every add, delete and field edit is appended to the journal as
+ * the store logs it, with the stamp and node that settle sync conflicts; a
+ * background thread periodically folds sealed segments into a new snapshot so
+ * that startup only has to replay the short tail. The snapshot keeps each
+ * task's per-field stamps, and a tombstone for every deleted task.
+ *
+ * Snapshot records are kept in id order, and each node hands out ids in
+ * insertion order, so compaction streams the old snapshot and applies the journal delta
+ * on the fly instead of holding the whole task set in memory.
+ */
+class TaskPersistence implements TaskStore.ChangeLogListener, Closeable {
+    private static final int SNAPSHOT_MAGIC = 0x54474e53;
+    // Versions 1 to 3 hold task records in the layout of the same number and nothing else.
+    // Version 4 holds records in layout 3 with their stamps, and tombstones.
+    private static final int SNAPSHOT_VERSION = 4;
+    private static final int STAMPED_SNAPSHOT_VERSION = 4;
+    // Item tags of a version 4 snapshot; earlier versions only have TASK and END
+    private static final byte END = 0;
+    private static final byte TASK = 1;
+    private static final byte TOMBSTONE = 2;
+    private static final long COMPACTION_PERIOD_SECONDS = 30;
+    private static final int FIELDS = TaskField.values().length;
+
+    /**
+     * Receives the stored state: a PUT entry for each task, with the stamp
+     * and node of each field's last change (0 where they were never saved),
+     * and a DELETE entry for each deleted task. Versions are 0.
+     */
+    interface EntrySink {
+        void accept(TaskChangeLog.Entry entry) throws IOException;
+    }
+
+    private final Path directory;
+    private final TaskJournal journal;
+    private final ScheduledExecutorService compactor;
+
+    private TaskPersistence(Path directory, long firstSegment) throws IOException {
+        this.directory = directory;
+        this.journal = new TaskJournal(directory, firstSegment);
+        this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-snapshot-compactor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(this::compactQuietly,
+                COMPACTION_PERIOD_SECONDS, COMPACTION_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Loads the stored tasks and tombstones, passing them to {@code sink},
+     * tasks in insertion order, and opens a fresh journal segment for new
+     * changes. {@link TaskStore#restore} takes what the sink receives.
+     */
+    public static TaskPersistence open(Path directory, EntrySink sink) throws IOException {
+        Files.createDirectories(directory);
+        long covered = readCoveredSegment(snapshotPath(directory));
+        Delta delta = new Delta();
+        long lastSegment = covered;
+        for (long segment : TaskJournal.listSegments(directory)) {
+            if (segment > covered) {
+                TaskJournal.replay(TaskJournal.segmentPath(directory, segment), delta::apply);
+            }
+            lastSegment = Math.max(lastSegment, segment);
+        }
+        merge(snapshotPath(directory), delta, sink);
+        return new TaskPersistence(directory, lastSegment + 1);
+    }
+
+    @Override
+    public void logged(List<TaskChangeLog.Entry> entries) {
+        for (TaskChangeLog.Entry entry : entries) {
+            // Encoded now, while the batch's tasks are as it left them
+            journal.append(out -> {
+                out.writeByte(TaskJournal.CHANGE);
+                TaskChangeLog.writeEntry(out, entry);
+            });
+        }
+    }
+
+    /**
+     * Sets who is told when journal writes fail and when they recover. While
+     * they fail, changes are held in memory and retried, and are lost if the
+     * persistence is closed before a retry succeeds.
+     */
+    public void setFailureListener(TaskJournal.FailureListener listener) {
+        journal.setFailureListener(listener);
+    }
+
+    /**
+     * Folds every sealed journal segment into a new snapshot and deletes the
+     * segments it covers. Runs on the compactor thread.
+     */
+    public void compact() throws IOException {
+        Path snapshot = snapshotPath(directory);
+        long covered = readCoveredSegment(snapshot);
+        long current = journal.currentSegment();
+        List<Long> sealed = new ArrayList<>();
+        Delta delta = new Delta();
+        for (long segment : TaskJournal.listSegments(directory)) {
+            if (segment > covered && segment < current) {
+                TaskJournal.replay(TaskJournal.segmentPath(directory, segment), delta::apply);
+                sealed.add(segment);
+            }
+        }
+        if (sealed.isEmpty()) {
+            return;
+        }
+
+        long newCovered = sealed.get(sealed.size() - 1);
+        Path temp = directory.resolve("snapshot.bin.tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(newCovered);
+            merge(snapshot, delta, entry -> {
+                if (entry.kind == TaskChangeLog.DELETE) {
+                    out.writeByte(TOMBSTONE);
+                    out.writeLong(entry.id);
+                    writeStamp(out, entry.stamp, entry.node);
+                } else {
+                    out.writeByte(TASK);
+                    entry.record().write(out);
+                    writeStamps(out, entry.stamps, entry.nodes);
+                }
+            });
+            out.writeByte(END);
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        for (long segment : sealed) {
+            Files.deleteIfExists(TaskJournal.segmentPath(directory, segment));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException e) {
+            // Leave the segments in place; the next run or the next startup replays them
+            System.err.println("Snapshot compaction failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the node id of the instance using this directory, picking a
+     * random one on first use, so tasks created here get ids that instances
+     * syncing with it do not hand out.
+     */
+    public static int nodeId(Path directory) throws IOException {
+        Path file = directory.resolve("node");
+        if (Files.exists(file)) {
+            try {
+                return Integer.parseInt(Files.readString(file).trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Unreadable node id in " + file);
+            }
+        }
+        Files.createDirectories(directory);
+        int node = 1 + new SecureRandom().nextInt(TaskStore.MAX_NODE_ID);
+        Files.writeString(file, Integer.toString(node));
+        return node;
+    }
+
+    /**
+     * Returns the API token of the instance using this directory, creating a
+     * random one on first use. Clients of {@link TaskApiServer} send it as a
+     * bearer token, so only someone who can read this directory can use the
+     * API. The file is readable by its owner only where the file system
+     * supports POSIX permissions.
+     */
+    public static String apiToken(Path directory) throws IOException {
+        Path file = directory.resolve("api-token");
+        if (Files.exists(file)) {
+            String token = Files.readString(file).trim();
+            if (token.isEmpty()) {
+                throw new IOException("Empty API token in " + file);
+            }
+            return token;
+        }
+        Files.createDirectories(directory);
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        Path temp = directory.resolve("api-token.tmp");
+        Files.deleteIfExists(temp);
+        if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(temp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        Files.writeString(temp, token);
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        return token;
+    }
+
+    /**
+     * Reads the saved filter views of this directory, by name in the order
+     * they were saved. Each line of the file is a name, a tab and the query.
+     */
+    public static Map<String, String> loadViews(Path directory) throws IOException {
+        Map<String, String> views = new LinkedHashMap<>();
+        Path file = directory.resolve("views.txt");
+        if (Files.exists(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    views.put(line.substring(0, tab), line.substring(tab + 1));
+                }
+            }
+        }
+        return views;
+    }
+
+    /** Replaces the saved filter views; names and queries must not contain tabs or line breaks. */
+    public static void saveViews(Path directory, Map<String, String> views) throws IOException {
+        Files.createDirectories(directory);
+        List<String> lines = new ArrayList<>();
+        views.forEach((name, query) -> lines.add(name + '\t' + query));
+        Path temp = directory.resolve("views.txt.tmp");
+        Files.write(temp, lines, StandardCharsets.UTF_8);
+        Files.move(temp, directory.resolve("views.txt"), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static Path snapshotPath(Path directory) {
+        return directory.resolve("snapshot.bin");
+    }
+
+    private static long readCoveredSegment(Path snapshot) throws IOException {
+        if (!Files.exists(snapshot)) {
+            return -1;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(snapshot))) {
+            readHeader(in, snapshot);
+            return in.readLong();
+        }
+    }
+
+    /** Checks the header and returns the snapshot's version. */
+    private static int readHeader(DataInputStream in, Path snapshot) throws IOException {
+        int version = in.readInt() == SNAPSHOT_MAGIC ? in.readInt() : -1;
+        if (version < 1 || version > SNAPSHOT_VERSION) {
+            throw new IOException("Unrecognised snapshot format: " + snapshot);
+        }
+        return version;
+    }
+
+    /**
+     * Streams the snapshot through the journal delta: deleted records are
+     * dropped, edited ones patched, and records added since are appended in
+     * id order, followed by the tombstones of the tasks deleted since.
+     */
+    private static void merge(Path snapshot, Delta delta, EntrySink sink) throws IOException {
+        if (Files.exists(snapshot)) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16))) {
+                int version = readHeader(in, snapshot);
+                boolean stamped = version >= STAMPED_SNAPSHOT_VERSION;
+                in.readLong();
+                for (byte tag = in.readByte(); tag != END; tag = in.readByte()) {
+                    if (tag == TOMBSTONE && stamped) {
+                        long id = in.readLong();
+                        long stamp = TaskChangeLog.readVarLong(in);
+                        int node = (int) TaskChangeLog.readVarLong(in);
+                        // A newer delete, or a task added back, replaces it
+                        if (!delta.tombstones.containsKey(id) && !delta.added.containsKey(id)) {
+                            sink.accept(TaskChangeLog.Entry.delete(0, stamp, node, id));
+                        }
+                        continue;
+                    }
+                    if (tag != TASK) {
+                        throw new IOException("Damaged snapshot: " + snapshot);
+                    }
+                    StoredTask task = new StoredTask(TaskRecord.read(in, stamped ? 3 : version));
+                    if (stamped) {
+                        readStamps(in, task.stamps, task.nodes);
+                    }
+                    if (delta.deleted.contains(task.record.id)) {
+                        continue;
+                    }
+                    List<TaskChangeLog.Entry> updates = delta.updates.get(task.record.id);
+                    if (updates != null) {
+                        for (TaskChangeLog.Entry update : updates) {
+                            task.apply(update);
+                        }
+                    }
+                    sink.accept(task.toEntry());
+                }
+            }
+        }
+        for (StoredTask task : delta.added.values()) {
+            sink.accept(task.toEntry());
+        }
+        for (TaskChangeLog.Entry tombstone : delta.tombstones.values()) {
+            sink.accept(tombstone);
+        }
+    }
+
+    // All fields changed by the same edit are written once, which covers most tasks
+    private static void writeStamps(DataOutputStream out, long[] stamps, int[] nodes) throws IOException {
+        boolean same = true;
+        for (int i = 1; i < FIELDS && same; i++) {
+            same = stamps[i] == stamps[0] && nodes[i] == nodes[0];
+        }
+        out.writeBoolean(same);
+        for (int i = 0; i < (same ? 1 : FIELDS); i++) {
+            writeStamp(out, stamps[i], nodes[i]);
+        }
+    }
+
+    private static void readStamps(DataInputStream in, long[] stamps, int[] nodes) throws IOException {
+        boolean same = in.readBoolean();
+        for (int i = 0; i < (same ? 1 : FIELDS); i++) {
+            stamps[i] = TaskChangeLog.readVarLong(in);
+            nodes[i] = (int) TaskChangeLog.readVarLong(in);
+        }
+        if (same) {
+            Arrays.fill(stamps, stamps[0]);
+            Arrays.fill(nodes, nodes[0]);
+        }
+    }
+
+    private static void writeStamp(DataOutputStream out, long stamp, int node) throws IOException {
+        TaskChangeLog.writeVarLong(out, stamp);
+        TaskChangeLog.writeVarLong(out, node);
+    }
+
+    /** A task's fields and the stamp and node of each field's last change, as they are folded. */
+    private static class StoredTask {
+        final TaskRecord record;
+        final long[] stamps = new long[FIELDS];
+        final int[] nodes = new int[FIELDS];
+
+        StoredTask(TaskRecord record) {
+            this.record = record;
+        }
+
+        StoredTask(TaskChangeLog.Entry entry) {
+            this(entry.record());
+            for (TaskField field : TaskField.values()) {
+                stamps[field.ordinal()] = entry.stampOf(field);
+                nodes[field.ordinal()] = entry.nodeOf(field);
+            }
+        }
+
+        void apply(TaskChangeLog.Entry update) {
+            record.apply(update.field, update.value);
+            stamps[update.field.ordinal()] = update.stamp;
+            nodes[update.field.ordinal()] = update.node;
+        }
+
+        TaskChangeLog.Entry toEntry() {
+            return new TaskChangeLog.Entry(TaskChangeLog.PUT, 0, 0, 0, record.id, null, null, record,
+                    stamps, nodes);
+        }
+    }
+
+    /**
+     * Net effect of a run of journal records on top of a snapshot. Records
+     * written before stamps were journaled count as changed at stamp 0.
+     */
+    private static class Delta {
+        final TreeMap<Long, StoredTask> added = new TreeMap<>();
+        final Map<Long, List<TaskChangeLog.Entry>> updates = new HashMap<>();
+        // Snapshot records to drop
+        final Set<Long> deleted = new HashSet<>();
+        final Map<Long, TaskChangeLog.Entry> tombstones = new LinkedHashMap<>();
+
+        void apply(DataInputStream in) throws IOException {
+            byte type = in.readByte();
+            if (type == TaskJournal.ADD || type == TaskJournal.ADD_V2 || type == TaskJournal.ADD_V3) {
+                add(new StoredTask(TaskRecord.read(in, type == TaskJournal.ADD ? 1
+                        : type == TaskJournal.ADD_V2 ? 2 : 3)));
+            } else if (type == TaskJournal.UPDATE) {
+                long id = in.readLong();
+                TaskField field = TaskRecord.readField(in);
+                update(TaskChangeLog.Entry.update(0, 0, 0, id, field, TaskRecord.readValue(in, field)));
+            } else if (type == TaskJournal.DELETE) {
+                delete(TaskChangeLog.Entry.delete(0, 0, 0, in.readLong()));
+            } else if (type == TaskJournal.CHANGE) {
+                TaskChangeLog.Entry entry = TaskChangeLog.readEntry(in);
+                switch (entry.kind) {
+                    case TaskChangeLog.UPDATE: update(entry); break;
+                    case TaskChangeLog.DELETE: delete(entry); break;
+                    default: add(new StoredTask(entry)); break;
+                }
+            }
+        }
+
+        private void add(StoredTask task) {
+            added.put(task.record.id, task);
+            tombstones.remove(task.record.id);
+        }
+
+        private void update(TaskChangeLog.Entry entry) {
+            StoredTask task = added.get(entry.id);
+            if (task != null) {
+                task.apply(entry);
+            } else {
+                updates.computeIfAbsent(entry.id, k -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        private void delete(TaskChangeLog.Entry delete) {
+            if (added.remove(delete.id) == null) {
+                updates.remove(delete.id);
+                deleted.add(delete.id);
+            }
+            tombstones.put(delete.id, delete);
+        }
+    }
+}
@@ -0,0 +1,807 @@
+package taskgenie;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A filter written as text, such as
+ * {@code (priority = HIGH or priority = MEDIUM) and category in (Work, Finance)
+ * and due within 7 days and not completed}. Parsed once into a tree that is
+ * evaluated as set operations over the {@link TaskIndex} bitsets; the same
+ * tree tests a single task when a view is kept current after an edit.
+ *
+ * <pre>
+ * query      = term { "or" term }
+ * term       = factor { ["and"] factor }
+ * factor     = "not" factor | "(" query ")" | condition
+ * condition  = "priority" ("=" | ":" | "!=") NAME | "priority" "in" "(" NAME {"," NAME} ")"
+ *            | "category" ("=" | ":" | "!=") NAME | "category" "in" "(" NAME {"," NAME} ")"
+ *            | "due" ("&lt;" | "&lt;=" | "&gt;" | "&gt;=" | "=" | "before" | "after" | "on") DATE
+ *            | "due" "within" NUMBER ("days" | "weeks")
+ *            | "completed" | "done" | "open" | "overdue" | "recurring" | "blocked" | "ready"
+ *            | WORD | "quoted text"
+ * DATE       = 2026-12-31 | today | tomorrow | yesterday | today+N | today-N
+ * </pre>
+ *
+ * Keywords are case-insensitive and so are category names. Any other word,
+ * or quoted text, is a search term as in the search box. Dates relative to
+ * today are resolved when the query is evaluated, so a saved view keeps
+ * meaning the same thing from day to day. A task is blocked while it waits
+ * for an open blocker or subtask, and ready when it is open and not blocked.
+ */
+final class TaskQuery {
+    private final String text;
+    private final Node root;
+
+    private TaskQuery(String text, Node root) {
+        this.text = text;
+        this.root = root;
+    }
+
+    /** Parses a query; a blank one gives null, which filters nothing out. */
+    public static TaskQuery parse(String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        Parser parser = new Parser(text);
+        Node root = parser.query();
+        if (parser.peek() != null) {
+            throw parser.error("Unexpected '" + parser.peek().text + "'");
+        }
+        return new TaskQuery(text.trim(), root);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /** True if the result can change when the day changes, not just when tasks do. */
+    public boolean dependsOnDate() {
+        return root.dependsOnDate();
+    }
+
+    /** Narrows {@code slots} to the tasks matching the query. */
+    void retain(BitSet slots, TaskIndex index, LocalDate today, boolean parallel) {
+        root.retain(slots, new Context(index, today, parallel));
+    }
+
+    /** Tests a single task; the index answers whether it is blocked. */
+    public boolean test(Task task, LocalDate today, TaskIndex index) {
+        return root.test(task, new Context(index, today, false));
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    private static final class Context {
+        final TaskIndex index;
+        final LocalDate today;
+        final boolean parallel;
+
+        Context(TaskIndex index, LocalDate today, boolean parallel) {
+            this.index = index;
+            this.today = today;
+            this.parallel = parallel;
+        }
+    }
+
+    /**
+     * A node of the parsed query. {@link #evaluate} returns a bitset the
+     * caller may modify; the other operations fold the node into one the
+     * caller already has, which lets leaves use the index bitsets in place.
+     */
+    private abstract static class Node {
+        abstract BitSet evaluate(Context context);
+
+        abstract boolean test(Task task, Context context);
+
+        boolean dependsOnDate() {
+            return false;
+        }
+
+        void retain(BitSet slots, Context context) {
+            slots.and(evaluate(context));
+        }
+
+        void remove(BitSet slots, Context context) {
+            slots.andNot(evaluate(context));
+        }
+
+        void add(BitSet slots, Context context) {
+            slots.or(evaluate(context));
+        }
+    }
+
+    /** A condition answered by one bitset, which may belong to the index and must not be modified. */
+    private abstract static class Leaf extends Node {
+        abstract BitSet bits(Context context);
+
+        /** Whether {@link #bits} hands out a bitset of the index rather than a new one. */
+        boolean shared() {
+            return true;
+        }
+
+        @Override
+        BitSet evaluate(Context context) {
+            BitSet bits = bits(context);
+            return shared() ? (BitSet) bits.clone() : bits;
+        }
+
+        @Override
+        void retain(BitSet slots, Context context) {
+            slots.and(bits(context));
+        }
+
+        @Override
+        void remove(BitSet slots, Context context) {
+            slots.andNot(bits(context));
+        }
+
+        @Override
+        void add(BitSet slots, Context context) {
+            slots.or(bits(context));
+        }
+    }
+
+    private static final class And extends Node {
+        private final List<Node> operands;
+
+        And(List<Node> operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        BitSet evaluate(Context context) {
+            // Start from a positive operand where there is one, so negations become a single andNot
+            int first = 0;
+            while (first < operands.size() - 1 && operands.get(first) instanceof Not) {
+                first++;
+            }
+            BitSet result = operands.get(first).evaluate(context);
+            for (int i = 0; i < operands.size() && !result.isEmpty(); i++) {
+                if (i != first) {
+                    operands.get(i).retain(result, context);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        void retain(BitSet slots, Context context) {
+            for (int i = 0; i < operands.size() && !slots.isEmpty(); i++) {
+                operands.get(i).retain(slots, context);
+            }
+        }
+
+        @Override
+        boolean test(Task task, Context context) {
+            for (Node operand : operands) {
+                if (!operand.test(task, context)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        boolean dependsOnDate() {
+            return operands.stream().anyMatch(Node::dependsOnDate);
+        }
+    }
+
+    private static final class Or extends Node {
+        private final List<Node> operands;
+
+        Or(List<Node> operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        BitSet evaluate(Context context) {
+            BitSet result = operands.get(0).evaluate(context);
+            for (int i = 1; i < operands.size(); i++) {
+                operands.get(i).add(result, context);
+            }
+            return result;
+        }
+
+        @Override
+        boolean test(Task task, Context context) {
+            for (Node operand : operands) {
+                if (operand.test(task, context)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        boolean dependsOnDate() {
+            return operands.stream().anyMatch(Node::dependsOnDate);
+        }
+    }
+
+    private static final class Not extends Node {
+        private final Node operand;
+
+        Not(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        BitSet evaluate(Context context) {
+            BitSet result = (BitSet) context.index.liveSlots().clone();
+            operand.remove(result, context);
+            return result;
+        }
+
+        @Override
+        void retain(BitSet slots, Context context) {
+            operand.remove(slots, context);
+        }
+
+        @Override
+        boolean test(Task task, Context context) {
+            return !operand.test(task, context);
+        }
+
+        @Override
+        boolean dependsOnDate() {
+            return operand.dependsOnDate();
+        }
+    }
+
+    private static final class PriorityIn extends Leaf {
+        private final Set<Priority> priorities;
+
+        PriorityIn(Set<Priority> priorities) {
+            this.priorities = priorities;
+        }
+
+        @Override
+        boolean shared() {
+            return priorities.size() == 1;
+        }
+
+        @Override
+        BitSet bits(Context context) {
+            if (priorities.size() == 1) {
+                return context.index.prioritySlots(priorities.iterator().next());
+            }
+            BitSet result = new BitSet();
+            for (Priority priority : priorities) {
+                result.or(context.index.prioritySlots(priority));
+            }
+            return result;
+        }
+
+        @Override
+        boolean test(Task task, Context context) {
+            return priorities.contains(task.getPriority());
+        }
+    }
+
+    private static final class CategoryIn extends Leaf {
+        private final List<String> names;
+
+        CategoryIn(List<String> names) {
+            this.names = names;
+        }
+
+        @Override
+        boolean shared() {
+            return false;
+        }
+
+        @Override
+        BitSet bits(Context context) {
+            return context.index.categorySlots(names);
+        }
+
+        @Override
+        boolean test(Task task, Context context) {
+            Category category = task.getCategory();
+            return category != null && contains(names, category.getName());
+        }
+
+        static boolean contains(List<String> names, String name) {
+            for (String candidate : names) {
+                if (candidate.equalsIgnoreCase(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Completed extends Leaf {
+        @Override
+        BitSet bits(Context context) {
+            return context.index.completedSlots();
+        }
+
+        @Override
+        boolean test(Task task, Context context) {
+            return task.isCompleted();
+        }
+    }
+
+    private static final class Recurring extends Leaf {
+        @Override
+        BitSet bits(Context context) {
+            return context.index.recurringSlots();
+        }
+
+        @Override
+        boolean test(Task task, Context context) {
+            return task.getRecurrence() != null;
+        }
+    }
+
+    private static final class Blocked extends Leaf {
+        @Override
+        BitSet bits(Context context) {
+            return context.index.blockedSlots();
+        }
+
+        @Override
+        boolean test(Task task, Context context) {
+            return context.index.isBlocked(task);
+        }
+    }
+
+    /**
+     * Deadline from the latest lower bound through the earliest upper bound,
+     * each a day resolved against today; no bound on a side leaves it open.
+     * Several conditions on the deadline joined by "and" merge into one, so
+     * the day buckets are read once for the narrowed range.
+     */
+    private static final class Due extends Leaf {
+        private final List<Day> from;
+        private final List<Day> to;
+
+        Due(Day from, Day to) {
+            this(from == null ? List.of() : List.of(from), to == null ? List.of() : List.of(to));
+        }
+
+        private Due(List<Day> from, List<Day> to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        Due intersect(Due other) {
+            List<Day> lower = new ArrayList<>(from);
+            lower.addAll(other.from);
+            List<Day> upper = new ArrayList<>(to);
+            upper.addAll(other.to);
+            return new Due(lower, upper);
+        }
+
+        @Override
+        boolean shared() {
+            return false;
+        }
+
+        @Override
+        BitSet bits(Context context) {
+            LocalDate first = null;
+            for (Day day : from) {
+                LocalDate date = day.resolve(context.today);
+                first = first == null || date.isAfter(first) ? date : first;
+            }
+            LocalDate last = null;
+            for (Day day : to) {
+                LocalDate date = day.resolve(context.today);
+                last = last == null || date.isBefore(last) ? date : last;
+            }
+            return context.index.dueBetween(first, last == null ? null : last.plusDays(1));
+        }
+
+        @Override
+        boolean test(Task task, Context context) {
+            LocalDate deadline = task.getDeadline();
+            if (deadline == null) {
+                return false;
+            }
+            for (Day day : from) {
+                if (deadline.isBefore(day.resolve(context.today))) {
+                    return false;
+                }
+            }
+            for (Day day : to) {
+                if (deadline.isAfter(day.resolve(context.today))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        boolean dependsOnDate() {
+            return from.stream().anyMatch(day -> day.relative) || to.stream().anyMatch(day -> day.relative);
+        }
+    }
+
+    private static final class Overdue extends Node {
+        @Override
+        BitSet evaluate(Context context) {
+            BitSet result = context.index.dueBetween(null, context.today);
+            result.andNot(context.index.completedSlots());
+            return result;
+        }
+
+        @Override
+        boolean test(Task task, Context context) {
+            LocalDate deadline = task.getDeadline();
+            return !task.isCompleted() && deadline != null && deadline.isBefore(context.today);
+        }
+
+        @Override
+        boolean dependsOnDate() {
+            return true;
+        }
+    }
+
+    private static final class Text extends Leaf {
+        private final String[] terms;
+
+        Text(String[] terms) {
+            this.terms = terms;
+        }
+
+        @Override
+        boolean shared() {
+            return false;
+        }
+
+        @Override
+        BitSet bits(Context context) {
+            return context.index.match(terms, context.parallel);
+        }
+
+        @Override
+        boolean test(Task task, Context context) {
+            return TaskSearchIndex.matches(task, terms);
+        }
+    }
+
+    /** A fixed date, or a number of days from whatever today is at evaluation. */
+    private static final class Day {
+        final LocalDate date;
+        final int offset;
+        final boolean relative;
+
+        Day(LocalDate date, int offset) {
+            this.date = date;
+            this.offset = offset;
+            this.relative = date == null;
+        }
+
+        LocalDate resolve(LocalDate today) {
+            return relative ? today.plusDays(offset) : date.plusDays(offset);
+        }
+
+        Day plus(int days) {
+            return new Day(date, offset + days);
+        }
+    }
+
+    private static final class Token {
+        final String text;
+        final int position;
+        final boolean quoted;
+
+        Token(String text, int position, boolean quoted) {
+            this.text = text;
+            this.position = position;
+            this.quoted = quoted;
+        }
+
+        boolean is(String keyword) {
+            return !quoted && text.equalsIgnoreCase(keyword);
+        }
+    }
+
+    /** Recursive descent over the grammar in the class comment. */
+    private static final class Parser {
+        private static final String SYMBOLS = "(),=:<>!";
+        private static final Set<String> KEYWORDS = Set.of("and", "or", "not", "in", "priority", "category",
+                "due", "within", "before", "after", "on");
+
+        private final String source;
+        private final List<Token> tokens = new ArrayList<>();
+        private int next;
+
+        Parser(String source) {
+            this.source = source;
+            tokenize();
+        }
+
+        Node query() {
+            List<Node> operands = new ArrayList<>();
+            operands.add(term());
+            while (accept("or")) {
+                operands.add(term());
+            }
+            return operands.size() == 1 ? operands.get(0) : new Or(operands);
+        }
+
+        private Node term() {
+            List<Node> operands = new ArrayList<>();
+            Due due = null;
+            while (true) {
+                Node factor = factor();
+                if (factor instanceof Due) {
+                    if (due != null) {
+                        // Merged in place, keeping the position of the first deadline condition
+                        operands.set(operands.indexOf(due), due = due.intersect((Due) factor));
+                        factor = null;
+                    } else {
+                        due = (Due) factor;
+                    }
+                }
+                if (factor != null) {
+                    operands.add(factor);
+                }
+                if (!accept("and") && (peek() == null || peek().is("or") || peek().is(")"))) {
+                    break;
+                }
+            }
+            return operands.size() == 1 ? operands.get(0) : new And(operands);
+        }
+
+        private Node factor() {
+            Token token = peek();
+            if (token == null) {
+                throw error("Query ends too early");
+            }
+            if (accept("not")) {
+                return new Not(factor());
+            }
+            if (accept("(")) {
+                Node node = query();
+                expect(")");
+                return node;
+            }
+            if (token.quoted) {
+                next++;
+                return text(token);
+            }
+            switch (token.text.toLowerCase(Locale.ROOT)) {
+                case "priority":
+                    next++;
+                    return priority();
+                case "category":
+                    next++;
+                    return category();
+                case "due":
+                    next++;
+                    return due();
+                case "completed":
+                case "done":
+                    next++;
+                    return new Completed();
+                case "open":
+                    next++;
+                    return new Not(new Completed());
+                case "overdue":
+                    next++;
+                    return new Overdue();
+                case "recurring":
+                    next++;
+                    return new Recurring();
+                case "blocked":
+                    next++;
+                    return new Blocked();
+                case "ready":
+                    next++;
+                    return new And(List.of(new Not(new Completed()), new Not(new Blocked())));
+                default:
+                    if (KEYWORDS.contains(token.text.toLowerCase(Locale.ROOT))
+                            || SYMBOLS.indexOf(token.text.charAt(0)) >= 0) {
+                        throw error("Unexpected '" + token.text + "'");
+                    }
+                    next++;
+                    return text(token);
+            }
+        }
+
+        private Node priority() {
+            EnumSet<Priority> priorities = EnumSet.noneOf(Priority.class);
+            boolean negated = false;
+            if (accept("in")) {
+                priorities.addAll(list(this::priorityNamed));
+            } else {
+                negated = comparison();
+                priorities.add(priorityNamed(value()));
+            }
+            Node node = new PriorityIn(priorities);
+            return negated ? new Not(node) : node;
+        }
+
+        private Node category() {
+            List<String> names = new ArrayList<>();
+            boolean negated = false;
+            if (accept("in")) {
+                names.addAll(list(name -> name));
+            } else {
+                negated = comparison();
+                names.add(value());
+            }
+            Node node = new CategoryIn(names);
+            return negated ? new Not(node) : node;
+        }
+
+        private Node due() {
+            if (accept("within")) {
+                Token count = peek();
+                int days = number(value());
+                if (accept("weeks") || accept("week")) {
+                    days *= 7;
+                } else if (!accept("days") && !accept("day")) {
+                    throw error("Expected 'days' or 'weeks' after " + count.text);
+                }
+                return new Due(new Day(null, 0), new Day(null, days));
+            }
+            if (accept("before")) {
+                return new Due(null, day().plus(-1));
+            }
+            if (accept("after")) {
+                return new Due(day().plus(1), null);
+            }
+            if (accept("on") || accept("=") || accept(":")) {
+                Day day = day();
+                return new Due(day, day);
+            }
+            if (accept("<")) {
+                return accept("=") ? new Due(null, day()) : new Due(null, day().plus(-1));
+            }
+            if (accept(">")) {
+                return accept("=") ? new Due(day(), null) : new Due(day().plus(1), null);
+            }
+            throw error("Expected a comparison after 'due'");
+        }
+
+        /** Reads {@code =}, {@code :} or {@code !=} and tells whether it was the negation. */
+        private boolean comparison() {
+            if (accept("=") || accept(":")) {
+                return false;
+            }
+            if (accept("!")) {
+                expect("=");
+                return true;
+            }
+            throw error("Expected '=', ':', '!=' or 'in'");
+        }
+
+        /** Reads a parenthesized list, converting each value as soon as it is read. */
+        private <T> List<T> list(Function<String, T> convert) {
+            expect("(");
+            List<T> values = new ArrayList<>();
+            values.add(convert.apply(value()));
+            while (accept(",")) {
+                values.add(convert.apply(value()));
+            }
+            expect(")");
+            return values;
+        }
+
+        private Day day() {
+            Token token = peek();
+            String value = value().toLowerCase(Locale.ROOT);
+            switch (value) {
+                case "today": return new Day(null, 0);
+                case "tomorrow": return new Day(null, 1);
+                case "yesterday": return new Day(null, -1);
+                default:
+                    break;
+            }
+            if (value.startsWith("today+") || value.startsWith("today-")) {
+                int days = number(value.substring(6));
+                return new Day(null, value.charAt(5) == '+' ? days : -days);
+            }
+            try {
+                return new Day(LocalDate.parse(value), 0);
+            } catch (DateTimeParseException e) {
+                next--;
+                throw error("Not a date: " + token.text);
+            }
+        }
+
+        private String value() {
+            Token token = peek();
+            if (token == null || (!token.quoted && SYMBOLS.indexOf(token.text.charAt(0)) >= 0)) {
+                throw error(token == null ? "Query ends too early" : "Unexpected '" + token.text + "'");
+            }
+            next++;
+            return token.text;
+        }
+
+        private int number(String value) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                next--;
+                throw error("Not a number: " + value);
+            }
+        }
+
+        private Priority priorityNamed(String name) {
+            try {
+                return TaskTransfer.parsePriority(name);
+            } catch (IllegalArgumentException e) {
+                next--;
+                throw error(e.getMessage());
+            }
+        }
+
+        private Node text(Token token) {
+            String[] terms = TaskSearchIndex.tokenize(token.text).toArray(new String[0]);
+            if (terms.length == 0) {
+                throw error("Nothing to search for in '" + token.text + "'");
+            }
+            return new Text(terms);
+        }
+
+        Token peek() {
+            return next < tokens.size() ? tokens.get(next) : null;
+        }
+
+        private boolean accept(String keyword) {
+            Token token = peek();
+            if (token != null && token.is(keyword)) {
+                next++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String keyword) {
+            if (!accept(keyword)) {
+                throw error("Expected '" + keyword + "'");
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            Token token = peek();
+            int position = token == null ? source.length() : token.position;
+            return new IllegalArgumentException(message + " at position " + (position + 1));
+        }
+
+        private void tokenize() {
+            int i = 0;
+            while (i < source.length()) {
+                char c = source.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '"') {
+                    int end = source.indexOf('"', i + 1);
+                    if (end < 0) {
+                        throw new IllegalArgumentException("Unclosed quote at position " + (i + 1));
+                    }
+                    tokens.add(new Token(source.substring(i + 1, end), i, true));
+                    i = end + 1;
+                } else if (SYMBOLS.indexOf(c) >= 0) {
+                    tokens.add(new Token(String.valueOf(c), i, false));
+                    i++;
+                } else {
+                    int start = i;
+                    while (i < source.length() && !Character.isWhitespace(source.charAt(i))
+                            && SYMBOLS.indexOf(source.charAt(i)) < 0 && source.charAt(i) != '"') {
+                        i++;
+                    }
+                    tokens.add(new Token(source.substring(start, i), start, false));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package taskgenie;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Plain, detached copy of a task's persistent state together with its binary
+ * encoding. Used by the journal and snapshot code, which never touch live
+ * {@link Task} objects off the FX thread.
+ */
+class TaskRecord {
+    /**
+     * Layout written by {@link #write}. Version 2 appended the repeat rule,
+     * version 3 the parent and the blockers.
+     */
+    static final int VERSION = 3;
+
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    long id;
+    String name;
+    String description;
+    Priority priority;
+    LocalDate deadline;
+    boolean completed;
+    String category;
+    // Repeat rule of a recurring task, as Recurrence.toString() writes it
+    String recurrence;
+    // Ids of the parent task, or null, and of the blocking tasks
+    Long parent;
+    List<Long> blockedBy = List.of();
+
+    public static TaskRecord of(Task task) {
+        TaskRecord record = new TaskRecord();
+        record.id = task.getId();
+        record.name = task.getName();
+        record.description = task.getDescription();
+        record.priority = task.getPriority();
+        record.deadline = task.getDeadline();
+        record.completed = task.isCompleted();
+        record.category = task.getCategory() == null ? null : task.getCategory().getName();
+        record.recurrence = task.getRecurrence() == null ? null : task.getRecurrence().toString();
+        record.parent = task.getParentId();
+        record.blockedBy = task.getBlockedBy();
+        return record;
+    }
+
+    public Task toTask(Function<String, Category> categories) {
+        Category resolved = category == null ? null : categories.apply(category);
+        Task task = recurrence == null
+                ? new RegularTask(name, description, priority, deadline, resolved)
+                : new RecurringTask(name, description, priority, deadline, resolved,
+                        Recurrence.parse(recurrence, deadline));
+        task.setId(id);
+        task.setCompleted(completed);
+        task.setParentId(parent);
+        task.setBlockedBy(blockedBy);
+        return task;
+    }
+
+    /** Reads one field, in the form {@link #apply} takes it: categories by name. */
+    public Object get(TaskField field) {
+        switch (field) {
+            case NAME: return name;
+            case DESCRIPTION: return description;
+            case PRIORITY: return priority;
+            case DEADLINE: return deadline;
+            case COMPLETED: return completed;
+            case PARENT: return parent;
+            case BLOCKED_BY: return blockedBy;
+            default: return category;
+        }
+    }
+
+    public void apply(TaskField field, Object value) {
+        switch (field) {
+            case NAME: name = (String) value; break;
+            case DESCRIPTION: description = (String) value; break;
+            case PRIORITY: priority = (Priority) value; break;
+            case DEADLINE: deadline = (LocalDate) value; break;
+            case COMPLETED: completed = (Boolean) value; break;
+            case CATEGORY: category = (String) value; break;
+            case PARENT: parent = (Long) value; break;
+            case BLOCKED_BY: blockedBy = Task.normalizeIds(castIds(value)); break;
+        }
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeLong(id);
+        writeString(out, name);
+        writeString(out, description);
+        out.writeByte(priority == null ? -1 : priority.ordinal());
+        out.writeLong(deadline == null ? NO_DATE : deadline.toEpochDay());
+        out.writeBoolean(completed);
+        writeString(out, category);
+        writeString(out, recurrence);
+        writeParent(out, parent);
+        writeIds(out, blockedBy);
+    }
+
+    public static TaskRecord read(DataInput in) throws IOException {
+        return read(in, VERSION);
+    }
+
+    /** Reads a record written in the given layout version. */
+    public static TaskRecord read(DataInput in, int version) throws IOException {
+        TaskRecord record = new TaskRecord();
+        record.id = in.readLong();
+        record.name = readString(in);
+        record.description = readString(in);
+        byte priority = in.readByte();
+        record.priority = priority < 0 ? null : Priority.values()[priority];
+        long deadline = in.readLong();
+        record.deadline = deadline == NO_DATE ? null : LocalDate.ofEpochDay(deadline);
+        record.completed = in.readBoolean();
+        record.category = readString(in);
+        if (version >= 2) {
+            record.recurrence = readString(in);
+        }
+        if (version >= 3) {
+            record.parent = readParent(in);
+            record.blockedBy = readIds(in);
+        }
+        return record;
+    }
+
+    /**
+     * Writes a single field value in the form expected by {@link #apply}.
+     * Categories are written by name.
+     */
+    public static void writeValue(DataOutput out, TaskField field, Object value) throws IOException {
+        out.writeByte(field.ordinal());
+        switch (field) {
+            case PRIORITY:
+                out.writeByte(value == null ? -1 : ((Priority) value).ordinal());
+                break;
+            case DEADLINE:
+                out.writeLong(value == null ? NO_DATE : ((LocalDate) value).toEpochDay());
+                break;
+            case COMPLETED:
+                out.writeBoolean((Boolean) value);
+                break;
+            case CATEGORY:
+                writeString(out, value == null ? null : ((Category) value).getName());
+                break;
+            case PARENT:
+                writeParent(out, (Long) value);
+                break;
+            case BLOCKED_BY:
+                writeIds(out, castIds(value));
+                break;
+            default:
+                writeString(out, (String) value);
+                break;
+        }
+    }
+
+    public static TaskField readField(DataInput in) throws IOException {
+        return TaskField.values()[in.readByte()];
+    }
+
+    public static Object readValue(DataInput in, TaskField field) throws IOException {
+        switch (field) {
+            case PRIORITY:
+                byte priority = in.readByte();
+                return priority < 0 ? null : Priority.values()[priority];
+            case DEADLINE:
+                long deadline = in.readLong();
+                return deadline == NO_DATE ? null : LocalDate.ofEpochDay(deadline);
+            case COMPLETED:
+                return in.readBoolean();
+            case PARENT:
+                return readParent(in);
+            case BLOCKED_BY:
+                return readIds(in);
+            default:
+                return readString(in);
+        }
+    }
+
+    // Task ids are positive, so 0 stands for no parent
+    private static void writeParent(DataOutput out, Long parent) throws IOException {
+        out.writeLong(parent == null ? 0 : parent);
+    }
+
+    private static Long readParent(DataInput in) throws IOException {
+        long parent = in.readLong();
+        return parent == 0 ? null : parent;
+    }
+
+    private static void writeIds(DataOutput out, List<Long> ids) throws IOException {
+        out.writeInt(ids.size());
+        for (long id : ids) {
+            out.writeLong(id);
+        }
+    }
+
+    private static List<Long> readIds(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count == 0) {
+            return List.of();
+        }
+        Long[] ids = new Long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = in.readLong();
+        }
+        return List.of(ids);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Long> castIds(Object value) {
+        return (List<Long>) value;
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,346 @@
+package taskgenie;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Incremental inverted index over task names and descriptions, keyed by slot.
+ *
+ * Text is split into lower-case letter/digit tokens. A search term shorter than
+ * three characters matches tokens that start with it, answered from postings
+ * kept for every token prefix of up to three characters. Longer terms match
+ * anywhere inside a token: whole-token and prefix hits are exact, and the
+ * remaining candidates come from intersecting trigram postings and are
+ * confirmed against the task text. Every term of a query must match.
+ */
+class TaskSearchIndex implements TaskChangeListener {
+    private static final int NAME_WEIGHT = 2;
+    private static final int PREFIX_LENGTH = 3;
+    // Below this many candidates, splitting the confirmation across threads costs more than it saves
+    private static final int PARALLEL_CONFIRM_THRESHOLD = 20_000;
+
+    // Hash dictionaries: bulk loads add hundreds of thousands of unique tokens, too costly to keep sorted
+    private final Dictionary tokens = new Dictionary();
+    private final Dictionary nameTokens = new Dictionary();
+    // Trigrams are packed into a long, three 16-bit chars, to avoid a substring per key
+    private final Map<Long, RoaringBitmap> trigrams = new HashMap<>();
+    private final IntFunction<Task> tasks;
+    private int size;
+
+    /**
+     * @param tasks resolves a slot to its task, for confirming trigram
+     *              candidates and ranking
+     */
+    public TaskSearchIndex(IntFunction<Task> tasks) {
+        this.tasks = tasks;
+    }
+
+    @Override
+    public void taskAdded(Task task) {
+        reindex(task.getSlot(), null, null, task.getName(), task.getDescription());
+        size++;
+    }
+
+    @Override
+    public void taskRemoved(Task task) {
+        reindex(task.getSlot(), task.getName(), task.getDescription(), null, null);
+        size--;
+    }
+
+    @Override
+    public void taskChanged(Task task, TaskField field, Object oldValue, Object newValue) {
+        if (field == TaskField.NAME) {
+            reindex(task.getSlot(), (String) oldValue, task.getDescription(), (String) newValue, task.getDescription());
+        } else if (field == TaskField.DESCRIPTION) {
+            reindex(task.getSlot(), task.getName(), (String) oldValue, task.getName(), (String) newValue);
+        }
+    }
+
+    /** Returns the slots of the tasks matching every term. */
+    public BitSet match(String[] terms) {
+        return match(terms, false);
+    }
+
+    /**
+     * As {@link #match(String[])}, optionally confirming large candidate sets
+     * on the common fork-join pool. The caller must hold the store's read lock
+     * rather than its write lock, since the pool threads read tasks too.
+     */
+    public BitSet match(String[] terms, boolean parallel) {
+        RoaringBitmap result = null;
+        for (String term : terms) {
+            RoaringBitmap matches = matchTerm(term, tokens, null, parallel);
+            result = result == null ? matches : RoaringBitmap.and(result, matches);
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        BitSet bits = new BitSet();
+        if (result != null) {
+            result.forEach((int slot) -> bits.set(slot));
+        }
+        return bits;
+    }
+
+    /**
+     * Orders the candidate slots by relevance and returns the best
+     * {@code limit} tasks. Each matching term scores its inverse document
+     * frequency, doubled when it matches the name rather than only the
+     * description.
+     */
+    public List<Task> rank(BitSet candidates, String[] terms, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        if (terms.length == 0) {
+            List<Task> result = new ArrayList<>(Math.min(limit, candidates.cardinality()));
+            for (int slot = candidates.nextSetBit(0); slot >= 0 && result.size() < limit;
+                 slot = candidates.nextSetBit(slot + 1)) {
+                result.add(tasks.apply(slot));
+            }
+            return result;
+        }
+
+        RoaringBitmap candidateBitmap = new RoaringBitmap();
+        candidates.stream().forEach(candidateBitmap::add);
+        double[] idf = new double[terms.length];
+        RoaringBitmap[] inName = new RoaringBitmap[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            int documents = matchTerm(terms[i], tokens, candidateBitmap, false).getCardinality();
+            idf[i] = Math.log(1 + (double) size / Math.max(1, documents));
+            inName[i] = matchTerm(terms[i], nameTokens, candidateBitmap, false);
+        }
+
+        PriorityQueue<double[]> best = new PriorityQueue<>(limit + 1,
+                (a, b) -> a[0] != b[0] ? Double.compare(a[0], b[0]) : Double.compare(b[1], a[1]));
+        for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+            double score = 0;
+            for (int i = 0; i < terms.length; i++) {
+                score += idf[i] * (inName[i].contains(slot) ? NAME_WEIGHT : 1);
+            }
+            best.add(new double[] {score, slot});
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<Task> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(tasks.apply((int) best.poll()[1]));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Splits text into lower-case letter/digit tokens, in order of first
+     * appearance and without duplicates.
+     */
+    public static List<String> tokenize(String text) {
+        Set<String> result = new LinkedHashSet<>();
+        addTokens(text, result);
+        return new ArrayList<>(result);
+    }
+
+    /** Tests a single task against the terms without using the index. */
+    public static boolean matches(Task task, String[] terms) {
+        Set<String> text = new LinkedHashSet<>();
+        addTokens(task.getName(), text);
+        addTokens(task.getDescription(), text);
+        for (String term : terms) {
+            if (!anyTokenMatches(text, term)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private RoaringBitmap matchTerm(String term, Dictionary dictionary, RoaringBitmap within, boolean parallel) {
+        // Short prefixes and whole tokens are an exact answer straight from the dictionary
+        RoaringBitmap result = dictionary.lookup(term);
+        if (within != null) {
+            result.and(within);
+        }
+        if (term.length() < 3) {
+            return result;
+        }
+
+        RoaringBitmap candidates = null;
+        for (long trigram : trigramsOf(Collections.singleton(term))) {
+            RoaringBitmap postings = trigrams.get(trigram);
+            if (postings == null) {
+                return result;
+            }
+            candidates = candidates == null ? postings.clone() : RoaringBitmap.and(candidates, postings);
+        }
+        if (within != null) {
+            candidates.and(within);
+        }
+        candidates.andNot(result);
+        // Trigrams only narrow the remaining candidates; confirm the term occurs inside a token
+        boolean nameOnly = dictionary == nameTokens;
+        if (parallel && candidates.getCardinality() >= PARALLEL_CONFIRM_THRESHOLD) {
+            result.add(IntStream.of(candidates.toArray()).parallel()
+                    .filter(slot -> confirm(slot, term, nameOnly))
+                    .toArray());
+        } else {
+            candidates.forEach((int slot) -> {
+                if (confirm(slot, term, nameOnly)) {
+                    result.add(slot);
+                }
+            });
+        }
+        return result;
+    }
+
+    private boolean confirm(int slot, String term, boolean nameOnly) {
+        Task task = tasks.apply(slot);
+        Set<String> text = new LinkedHashSet<>();
+        addTokens(task.getName(), text);
+        if (!nameOnly) {
+            addTokens(task.getDescription(), text);
+        }
+        return anyTokenMatches(text, term);
+    }
+
+    private void reindex(int slot, String oldName, String oldDescription, String newName, String newDescription) {
+        Set<String> oldNameTokens = new HashSet<>();
+        Set<String> newNameTokens = new HashSet<>();
+        addTokens(oldName, oldNameTokens);
+        addTokens(newName, newNameTokens);
+        Set<String> oldText = new HashSet<>(oldNameTokens);
+        Set<String> newText = new HashSet<>(newNameTokens);
+        addTokens(oldDescription, oldText);
+        addTokens(newDescription, newText);
+
+        nameTokens.update(oldNameTokens, newNameTokens, slot);
+        tokens.update(oldText, newText, slot);
+
+        long[] oldTrigrams = trigramsOf(oldText);
+        long[] newTrigrams = trigramsOf(newText);
+        // Both arrays are sorted; walk them together to find keys only on one side
+        int i = 0;
+        int j = 0;
+        while (i < oldTrigrams.length || j < newTrigrams.length) {
+            if (j == newTrigrams.length || (i < oldTrigrams.length && oldTrigrams[i] < newTrigrams[j])) {
+                removePosting(trigrams, oldTrigrams[i++], slot);
+            } else if (i == oldTrigrams.length || newTrigrams[j] < oldTrigrams[i]) {
+                trigrams.computeIfAbsent(newTrigrams[j++], k -> new RoaringBitmap()).add(slot);
+            } else {
+                i++;
+                j++;
+            }
+        }
+    }
+
+    /** Postings per whole token and per token prefix of up to {@link #PREFIX_LENGTH} chars. */
+    private static class Dictionary {
+        private final Map<String, RoaringBitmap> tokens = new HashMap<>();
+        private final Map<String, RoaringBitmap> prefixes = new HashMap<>();
+
+        RoaringBitmap lookup(String term) {
+            RoaringBitmap postings = (term.length() <= PREFIX_LENGTH ? prefixes : tokens).get(term);
+            return postings == null ? new RoaringBitmap() : postings.clone();
+        }
+
+        void update(Set<String> before, Set<String> after, int slot) {
+            updatePostings(tokens, before, after, slot);
+            updatePostings(prefixes, prefixesOf(before), prefixesOf(after), slot);
+        }
+
+        private static Set<String> prefixesOf(Set<String> tokens) {
+            Set<String> result = new HashSet<>();
+            for (String token : tokens) {
+                for (int length = 1; length <= Math.min(PREFIX_LENGTH, token.length()); length++) {
+                    result.add(token.substring(0, length));
+                }
+            }
+            return result;
+        }
+    }
+
+    private static <K> void updatePostings(Map<K, RoaringBitmap> postings, Set<K> before, Set<K> after, int slot) {
+        for (K key : before) {
+            if (!after.contains(key)) {
+                removePosting(postings, key, slot);
+            }
+        }
+        for (K key : after) {
+            if (!before.contains(key)) {
+                postings.computeIfAbsent(key, k -> new RoaringBitmap()).add(slot);
+            }
+        }
+    }
+
+    private static <K> void removePosting(Map<K, RoaringBitmap> postings, K key, int slot) {
+        RoaringBitmap bitmap = postings.get(key);
+        if (bitmap != null) {
+            bitmap.remove(slot);
+            if (bitmap.isEmpty()) {
+                postings.remove(key);
+            }
+        }
+    }
+
+    private static boolean anyTokenMatches(Set<String> text, String term) {
+        for (String token : text) {
+            if (term.length() < 3 ? token.startsWith(term) : token.contains(term)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the distinct packed trigrams of the tokens, sorted. */
+    private static long[] trigramsOf(Collection<String> tokens) {
+        int count = 0;
+        for (String token : tokens) {
+            count += Math.max(0, token.length() - 2);
+        }
+        long[] keys = new long[count];
+        int n = 0;
+        for (String token : tokens) {
+            for (int i = 0; i + 3 <= token.length(); i++) {
+                keys[n++] = ((long) token.charAt(i) << 32) | ((long) token.charAt(i + 1) << 16) | token.charAt(i + 2);
+            }
+        }
+        Arrays.sort(keys);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                keys[distinct++] = keys[i];
+            }
+        }
+        return distinct == n ? keys : Arrays.copyOf(keys, distinct);
+    }
+
+    private static void addTokens(String text, Set<String> into) {
+        if (text == null) {
+            return;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean tokenChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (tokenChar && start < 0) {
+                start = i;
+            } else if (!tokenChar && start >= 0) {
+                into.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+    }
+}
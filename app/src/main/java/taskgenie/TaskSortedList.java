@@ -0,0 +1,610 @@
+package taskgenie;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.TransformationList;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sorting stage between the filtered list and the table. Each row carries a
+ * precomputed 64-bit key packing its leading sort fields, so nearly every
+ * comparison is a single unsigned long compare; only rows whose keys are
+ * equal fall back to comparing the task fields.
+ *
+ * Unlike {@link javafx.collections.transformation.SortedList}, which
+ * re-sorts the whole list when a row is updated, an edit here re-keys just
+ * that row and moves it with a binary search, reported as a permutation of
+ * the rows it passed so the selection follows it. Additions and removals
+ * are merged in with one pass over the list, however many there are.
+ *
+ * Keys are computed when a change is processed, which is also when the row
+ * moves, so the stored order always agrees with the stored keys. Rows are
+ * found by their source index, never by searching on a key, so a task that
+ * changed before its change arrived cannot be lost.
+ */
+class TaskSortedList extends TransformationList<Task, Task> {
+
+    /** Sort fields in priority order. Immutable; ties are broken by task id. */
+    static final class Order {
+        static final Order URGENCY = new Order()
+                .then(TaskField.PRIORITY, false)
+                .then(TaskField.DEADLINE, false)
+                .then(TaskField.NAME, false);
+
+        private static final int DEADLINE_BITS = 24;
+        private static final long NO_DEADLINE = (1L << DEADLINE_BITS) - 1;
+
+        private final TaskField[] fields;
+        private final boolean[] descending;
+
+        Order() {
+            this(new TaskField[0], new boolean[0]);
+        }
+
+        private Order(TaskField[] fields, boolean[] descending) {
+            this.fields = fields;
+            this.descending = descending;
+        }
+
+        /** Returns this order with one more field; a field already present is ignored. */
+        Order then(TaskField field, boolean descending) {
+            for (TaskField present : fields) {
+                if (present == field) {
+                    return this;
+                }
+            }
+            int n = fields.length;
+            Order order = new Order(Arrays.copyOf(fields, n + 1), Arrays.copyOf(this.descending, n + 1));
+            order.fields[n] = field;
+            order.descending[n] = descending;
+            return order;
+        }
+
+        /** Returns this order followed by the fields of {@code next} not already in it. */
+        Order then(Order next) {
+            Order order = this;
+            for (int i = 0; i < next.fields.length; i++) {
+                order = order.then(next.fields[i], next.descending[i]);
+            }
+            return order;
+        }
+
+        /**
+         * Packs the leading fields into an unsigned key that orders like
+         * {@link #compare}: flags and priority take a few bits, the deadline
+         * 24, and a text field the rest, encoded so that ASCII characters
+         * take 8 bits each. Text ends the key, as its tail would have to be
+         * compared before any later field.
+         */
+        long key(Task task) {
+            long key = 0;
+            int free = 64;
+            for (int i = 0; i < fields.length && free > 0; i++) {
+                long value;
+                int width;
+                switch (fields[i]) {
+                    case COMPLETED:
+                        value = task.isCompleted() ? 1 : 0;
+                        width = 1;
+                        break;
+                    case PRIORITY:
+                        value = priorityCode(task.getPriority());
+                        width = 2;
+                        break;
+                    case DEADLINE:
+                        value = deadlineCode(task.getDeadline());
+                        width = DEADLINE_BITS;
+                        break;
+                    default:
+                        value = textCode(text(task, fields[i]), free);
+                        width = free;
+                        break;
+                }
+                if (width > free) {
+                    break;
+                }
+                if (descending[i]) {
+                    value = ~value & (width == 64 ? -1L : (1L << width) - 1);
+                }
+                free -= width;
+                key |= value << free;
+                if (fields[i] == TaskField.NAME || fields[i] == TaskField.DESCRIPTION
+                        || fields[i] == TaskField.CATEGORY) {
+                    break;
+                }
+            }
+            return key;
+        }
+
+        /** Full comparison of the fields in order, for rows with equal keys. */
+        int compare(Task a, Task b) {
+            for (int i = 0; i < fields.length; i++) {
+                int c = compareField(fields[i], a, b);
+                if (c != 0) {
+                    return descending[i] ? -c : c;
+                }
+            }
+            return 0;
+        }
+
+        private static int compareField(TaskField field, Task a, Task b) {
+            switch (field) {
+                case COMPLETED:
+                    return Boolean.compare(a.isCompleted(), b.isCompleted());
+                case PRIORITY:
+                    return Long.compare(priorityCode(a.getPriority()), priorityCode(b.getPriority()));
+                case DEADLINE:
+                    return Long.compare(deadlineCode(a.getDeadline()), deadlineCode(b.getDeadline()));
+                default:
+                    return text(a, field).compareTo(text(b, field));
+            }
+        }
+
+        private static long priorityCode(Priority priority) {
+            return priority == null ? 3 : priority.ordinal();
+        }
+
+        /** Epoch day offset into 24 bits; far-off dates clamp and tie. A missing deadline sorts last. */
+        private static long deadlineCode(LocalDate deadline) {
+            if (deadline == null) {
+                return NO_DEADLINE;
+            }
+            long offset = deadline.toEpochDay() + (1L << (DEADLINE_BITS - 1));
+            return Math.max(0, Math.min(NO_DEADLINE - 1, offset));
+        }
+
+        private static String text(Task task, TaskField field) {
+            String text;
+            switch (field) {
+                case NAME: text = task.getName(); break;
+                case DESCRIPTION: text = task.getDescription(); break;
+                default: text = task.getCategory() == null ? null : task.getCategory().getName(); break;
+            }
+            return text == null ? "" : text;
+        }
+
+        /**
+         * Order-preserving prefix code in the top {@code width} bits: 0 and
+         * seven bits below U+0080, 1 and sixteen bits otherwise. Truncating
+         * the code keeps the order, though strings may then compare equal.
+         */
+        private static long textCode(String text, int width) {
+            long code = 0;
+            int used = 0;
+            for (int i = 0; i < text.length() && used < width; i++) {
+                char c = text.charAt(i);
+                int bits = c < 0x80 ? 8 : 17;
+                long value = c < 0x80 ? c : (1L << 16) | c;
+                if (used + bits > width) {
+                    // Keep the top bits of the last character
+                    value >>>= used + bits - width;
+                    bits = width - used;
+                }
+                used += bits;
+                code |= value << (width - used);
+            }
+            return code;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Order && Arrays.equals(fields, ((Order) o).fields)
+                    && Arrays.equals(descending, ((Order) o).descending);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(fields) * 31 + Arrays.hashCode(descending);
+        }
+    }
+
+    private Order order;
+    private int size;
+    /** By sorted position: the source index and the key of the row. */
+    private int[] sourceIndex = new int[0];
+    private long[] keys = new long[0];
+    /** By source index: the sorted position. */
+    private int[] position = new int[0];
+
+    public TaskSortedList(ObservableList<Task> source) {
+        this(source, Order.URGENCY);
+    }
+
+    public TaskSortedList(ObservableList<Task> source, Order order) {
+        super(source);
+        this.order = order;
+        size = source.size();
+        sourceIndex = new int[size];
+        keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            sourceIndex[i] = i;
+            keys[i] = order.key(source.get(i));
+        }
+        sortAll();
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    /** Re-sorts by a new order, reported as a single permutation. */
+    public void setOrder(Order order) {
+        if (order.equals(this.order)) {
+            return;
+        }
+        this.order = order;
+        int[] oldPosition = position.clone();
+        for (int i = 0; i < size; i++) {
+            keys[i] = order.key(getSource().get(sourceIndex[i]));
+        }
+        sortAll();
+        int[] permutation = new int[size];
+        for (int i = 0; i < size; i++) {
+            permutation[oldPosition[i]] = position[i];
+        }
+        beginChange();
+        nextPermutation(0, size, permutation);
+        endChange();
+    }
+
+    @Override
+    public Task get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return getSource().get(sourceIndex[index]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getSourceIndex(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return sourceIndex[index];
+    }
+
+    @Override
+    public int getViewIndex(int index) {
+        return position[index];
+    }
+
+    @Override
+    protected void sourceChanged(ListChangeListener.Change<? extends Task> c) {
+        if (c.next() && c.wasUpdated() && c.getTo() - c.getFrom() == 1 && !c.next()) {
+            beginChange();
+            moveOne(c.getFrom());
+            endChange();
+            return;
+        }
+        c.reset();
+        // The additions, removals and permutations arrive in ascending,
+        // non-overlapping order, so one walk over them maps every old source
+        // index to its new one. Updates come after all of them, already in
+        // the new indices, and are collected in a second walk.
+        int[] newIndex = new int[size];
+        Task[] removedTasks = null;
+        BitSet added = new BitSet();
+        BitSet updated = new BitSet();
+        int old = 0;
+        int shift = 0;
+        while (c.next()) {
+            if (c.wasUpdated()) {
+                continue;
+            }
+            for (int from = c.getFrom(); old < from - shift; old++) {
+                newIndex[old] = old + shift;
+            }
+            if (c.wasPermutated()) {
+                for (int i = c.getFrom(); i < c.getTo(); i++) {
+                    newIndex[old++] = c.getPermutation(i);
+                }
+            } else {
+                List<? extends Task> removed = c.getRemoved();
+                if (!removed.isEmpty() && removedTasks == null) {
+                    removedTasks = new Task[size];
+                }
+                for (Task task : removed) {
+                    removedTasks[old] = task;
+                    newIndex[old++] = -1;
+                }
+                added.set(c.getFrom(), c.getFrom() + c.getAddedSize());
+                shift += c.getAddedSize() - c.getRemovedSize();
+            }
+        }
+        for (; old < size; old++) {
+            newIndex[old] = old + shift;
+        }
+        c.reset();
+        while (c.next()) {
+            if (c.wasUpdated()) {
+                updated.set(c.getFrom(), c.getTo());
+            }
+        }
+        // A row added in this change is inserted anyway
+        updated.andNot(added);
+        beginChange();
+        if (added.isEmpty() && removedTasks == null) {
+            moveUpdated(newIndex, updated);
+        } else {
+            merge(newIndex, removedTasks, added, updated);
+        }
+        endChange();
+    }
+
+    /**
+     * A single edited row, the common case: shifts only the rows between its
+     * old and new place, with no allocation proportional to the list.
+     */
+    private void moveOne(int source) {
+        int from = position[source];
+        long key = order.key(getSource().get(source));
+        int to = from;
+        if (from > 0 && compare(sourceIndex[from - 1], keys[from - 1], source, key) > 0) {
+            to = search(sourceIndex, keys, 0, from, source, key);
+            System.arraycopy(sourceIndex, to, sourceIndex, to + 1, from - to);
+            System.arraycopy(keys, to, keys, to + 1, from - to);
+        } else if (from < size - 1 && compare(sourceIndex[from + 1], keys[from + 1], source, key) < 0) {
+            to = search(sourceIndex, keys, from + 1, size, source, key) - 1;
+            System.arraycopy(sourceIndex, from + 1, sourceIndex, from, to - from);
+            System.arraycopy(keys, from + 1, keys, from, to - from);
+        }
+        sourceIndex[to] = source;
+        keys[to] = key;
+        if (to != from) {
+            int low = Math.min(from, to);
+            int high = Math.max(from, to);
+            int[] permutation = new int[high - low + 1];
+            for (int p = low; p <= high; p++) {
+                permutation[position[sourceIndex[p]] - low] = p;
+                position[sourceIndex[p]] = p;
+            }
+            nextPermutation(low, high + 1, permutation);
+        }
+        nextUpdate(to);
+    }
+
+    /**
+     * Re-keys the updated rows and moves those whose place changed. Every
+     * other row keeps its relative order, so the result is one permutation
+     * spanning the moved rows.
+     */
+    private void moveUpdated(int[] newIndex, BitSet updated) {
+        int oldSize = size;
+        int[] oldPosition = new int[oldSize];
+        int[] keptSource = new int[oldSize];
+        long[] keptKeys = new long[oldSize];
+        int kept = 0;
+        int[] moving = updated.stream().toArray();
+        long[] movingKeys = new long[moving.length];
+        for (int p = 0; p < oldSize; p++) {
+            int index = newIndex[sourceIndex[p]];
+            oldPosition[index] = p;
+            if (!updated.get(index)) {
+                keptSource[kept] = index;
+                keptKeys[kept++] = keys[p];
+            }
+        }
+        for (int j = 0; j < moving.length; j++) {
+            movingKeys[j] = order.key(getSource().get(moving[j]));
+        }
+        sortByKey(moving, movingKeys);
+        int[] finalPosition = insert(keptSource, keptKeys, kept, moving, movingKeys);
+
+        int low = oldSize;
+        int high = -1;
+        int[] permutation = new int[oldSize];
+        for (int p = 0; p < oldSize; p++) {
+            int from = oldPosition[sourceIndex[p]];
+            permutation[from] = p;
+            if (from != p) {
+                low = Math.min(low, from);
+                high = Math.max(high, from);
+            }
+        }
+        if (high >= 0) {
+            nextPermutation(low, high + 1, Arrays.copyOfRange(permutation, low, high + 1));
+        }
+        for (int position : finalPosition) {
+            nextUpdate(position);
+        }
+    }
+
+    /**
+     * Applies additions and removals: drops the removed rows, then inserts
+     * the added ones and the re-keyed updated ones at their sorted places.
+     * Moved rows are reported as removed and added again.
+     */
+    private void merge(int[] newIndex, Task[] removedTasks, BitSet added, BitSet updated) {
+        int oldSize = size;
+        int[] keptSource = new int[oldSize];
+        long[] keptKeys = new long[oldSize];
+        int kept = 0;
+        // Removals are reported highest first, one per run of adjacent rows,
+        // so each position is still valid when reported
+        List<Task> run = new ArrayList<>();
+        int runStart = -1;
+        for (int p = oldSize - 1; p >= 0; p--) {
+            int old = sourceIndex[p];
+            int index = newIndex[old];
+            if (index < 0 || updated.get(index)) {
+                if (p != runStart - 1 && !run.isEmpty()) {
+                    flushRemoved(runStart, run);
+                }
+                runStart = p;
+                run.add(index < 0 ? removedTasks[old] : getSource().get(index));
+            }
+        }
+        if (!run.isEmpty()) {
+            flushRemoved(runStart, run);
+        }
+        for (int p = 0; p < oldSize; p++) {
+            int index = newIndex[sourceIndex[p]];
+            if (index >= 0 && !updated.get(index)) {
+                keptSource[kept] = index;
+                keptKeys[kept++] = keys[p];
+            }
+        }
+
+        BitSet inserted = (BitSet) added.clone();
+        inserted.or(updated);
+        int[] insertedSource = inserted.stream().toArray();
+        long[] insertedKeys = new long[insertedSource.length];
+        for (int j = 0; j < insertedSource.length; j++) {
+            insertedKeys[j] = order.key(getSource().get(insertedSource[j]));
+        }
+        sortByKey(insertedSource, insertedKeys);
+        int[] finalPosition = insert(keptSource, keptKeys, kept, insertedSource, insertedKeys);
+
+        // Additions ascending, one per run of adjacent positions
+        for (int j = 0; j < finalPosition.length; ) {
+            int from = finalPosition[j];
+            int to = from + 1;
+            while (++j < finalPosition.length && finalPosition[j] == to) {
+                to++;
+            }
+            nextAdd(from, to);
+        }
+    }
+
+    private void flushRemoved(int from, List<Task> run) {
+        // Collected highest first; the event wants them in list order
+        List<Task> removed = new ArrayList<>(run);
+        Collections.reverse(removed);
+        nextRemove(from, removed);
+        run.clear();
+    }
+
+    /**
+     * Inserts sorted rows among the kept ones, each found by binary search,
+     * and rebuilds the arrays in one copy pass. Returns the final position
+     * of each inserted row.
+     */
+    private int[] insert(int[] keptSource, long[] keptKeys, int kept, int[] insertSource, long[] insertKeys) {
+        int count = insertSource.length;
+        int newSize = kept + count;
+        int[] newSourceIndex = new int[newSize];
+        long[] newKeys = new long[newSize];
+        int[] finalPosition = new int[count];
+        int from = 0;
+        int write = 0;
+        for (int j = 0; j < count; j++) {
+            int at = search(keptSource, keptKeys, from, kept, insertSource[j], insertKeys[j]);
+            System.arraycopy(keptSource, from, newSourceIndex, write, at - from);
+            System.arraycopy(keptKeys, from, newKeys, write, at - from);
+            write += at - from;
+            from = at;
+            newSourceIndex[write] = insertSource[j];
+            newKeys[write] = insertKeys[j];
+            finalPosition[j] = write++;
+        }
+        System.arraycopy(keptSource, from, newSourceIndex, write, kept - from);
+        System.arraycopy(keptKeys, from, newKeys, write, kept - from);
+        sourceIndex = newSourceIndex;
+        keys = newKeys;
+        size = newSize;
+        rebuildPositions();
+        return finalPosition;
+    }
+
+    /** First position in [from, to) whose row sorts after the given one. */
+    private int search(int[] rowSource, long[] rowKeys, int from, int to, int source, long key) {
+        Task task = null;
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int c = Long.compareUnsigned(rowKeys[mid], key);
+            if (c == 0) {
+                if (task == null) {
+                    task = getSource().get(source);
+                }
+                c = compareTies(getSource().get(rowSource[mid]), task);
+            }
+            if (c <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compareTies(Task a, Task b) {
+        int c = order.compare(a, b);
+        return c != 0 ? c : Long.compare(a.getId(), b.getId());
+    }
+
+    private int compare(int sourceA, long keyA, int sourceB, long keyB) {
+        int c = Long.compareUnsigned(keyA, keyB);
+        return c != 0 ? c : compareTies(getSource().get(sourceA), getSource().get(sourceB));
+    }
+
+    private void sortAll() {
+        sortByKey(sourceIndex, keys);
+        rebuildPositions();
+    }
+
+    private void rebuildPositions() {
+        if (position.length != getSource().size()) {
+            position = new int[getSource().size()];
+        }
+        for (int i = 0; i < size; i++) {
+            position[sourceIndex[i]] = i;
+        }
+    }
+
+    /** Merge sort of parallel source/key arrays, comparing keys first. */
+    private void sortByKey(int[] source, long[] key) {
+        if (source.length > 1) {
+            mergeSort(source.clone(), key.clone(), source, key, 0, source.length);
+        }
+    }
+
+    private void mergeSort(int[] fromSource, long[] fromKey, int[] toSource, long[] toKey, int low, int high) {
+        if (high - low < 8) {
+            // Insertion sort straight into the destination
+            for (int i = low; i < high; i++) {
+                int s = toSource[i];
+                long k = toKey[i];
+                int j = i;
+                while (j > low && compare(toSource[j - 1], toKey[j - 1], s, k) > 0) {
+                    toSource[j] = toSource[j - 1];
+                    toKey[j] = toKey[j - 1];
+                    j--;
+                }
+                toSource[j] = s;
+                toKey[j] = k;
+            }
+            return;
+        }
+        int mid = (low + high) >>> 1;
+        // The halves are sorted into the scratch arrays, then merged back
+        mergeSort(toSource, toKey, fromSource, fromKey, low, mid);
+        mergeSort(toSource, toKey, fromSource, fromKey, mid, high);
+        if (compare(fromSource[mid - 1], fromKey[mid - 1], fromSource[mid], fromKey[mid]) <= 0) {
+            System.arraycopy(fromSource, low, toSource, low, high - low);
+            System.arraycopy(fromKey, low, toKey, low, high - low);
+            return;
+        }
+        for (int i = low, p = low, q = mid; i < high; i++) {
+            if (q >= high || p < mid && compare(fromSource[p], fromKey[p], fromSource[q], fromKey[q]) <= 0) {
+                toSource[i] = fromSource[p];
+                toKey[i] = fromKey[p++];
+            } else {
+                toSource[i] = fromSource[q];
+                toKey[i] = fromKey[q++];
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package taskgenie;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counter-based task statistics. Every add, remove and field edit adjusts the
+ * counters in constant time. "Overdue" also moves with the calendar, so on a
+ * day change the store passes in just the tasks whose deadline the boundary
+ * crossed.
+ */
+class TaskStatistics implements TaskChangeListener {
+
+    /** Immutable copy of the counters, safe to hand to another thread. */
+    static class Snapshot {
+        private final int total;
+        private final int completed;
+        private final int overdue;
+        private final int[] byPriority;
+        private final Map<Category, Integer> byCategory;
+
+        Snapshot(int total, int completed, int overdue, int[] byPriority, Map<Category, Integer> byCategory) {
+            this.total = total;
+            this.completed = completed;
+            this.overdue = overdue;
+            this.byPriority = byPriority;
+            this.byCategory = byCategory;
+        }
+
+        public int getTotal() { return total; }
+        public int getCompleted() { return completed; }
+        public int getOverdue() { return overdue; }
+        public int getHighPriority() { return getCount(Priority.HIGH); }
+
+        public int getCount(Priority priority) {
+            return byPriority[priority.ordinal()];
+        }
+
+        public int getCount(Category category) {
+            return byCategory.getOrDefault(category, 0);
+        }
+    }
+
+    private final int[] byPriority = new int[Priority.values().length];
+    private final Map<Category, Integer> byCategory = new HashMap<>();
+    private int total;
+    private int completed;
+    private int overdue;
+    private LocalDate today;
+
+    public TaskStatistics(Collection<Task> tasks, LocalDate today) {
+        this.today = today;
+        for (Task task : tasks) {
+            taskAdded(task);
+        }
+    }
+
+    @Override
+    public void taskAdded(Task task) {
+        apply(task, 1);
+    }
+
+    @Override
+    public void taskRemoved(Task task) {
+        apply(task, -1);
+    }
+
+    @Override
+    public void taskChanged(Task task, TaskField field, Object oldValue, Object newValue) {
+        switch (field) {
+            case PRIORITY:
+                countPriority((Priority) oldValue, -1);
+                countPriority((Priority) newValue, 1);
+                break;
+            case CATEGORY:
+                countCategory((Category) oldValue, -1);
+                countCategory((Category) newValue, 1);
+                break;
+            case COMPLETED:
+                completed += task.isCompleted() ? 1 : -1;
+                if (isBeforeToday(task.getDeadline())) {
+                    overdue += task.isCompleted() ? -1 : 1;
+                }
+                break;
+            case DEADLINE:
+                if (!task.isCompleted()) {
+                    overdue += (isBeforeToday((LocalDate) newValue) ? 1 : 0)
+                            - (isBeforeToday((LocalDate) oldValue) ? 1 : 0);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Moves "today" and adjusts the overdue counter for the given tasks, which
+     * must include every task with a deadline between the old and new day.
+     */
+    public void advanceDay(LocalDate newToday, Collection<Task> crossing) {
+        LocalDate previous = today;
+        for (Task task : crossing) {
+            if (!task.isCompleted()) {
+                overdue += (isBefore(task.getDeadline(), newToday) ? 1 : 0)
+                        - (isBefore(task.getDeadline(), previous) ? 1 : 0);
+            }
+        }
+        today = newToday;
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(total, completed, overdue, byPriority.clone(), new HashMap<>(byCategory));
+    }
+
+    public int getTotal() { return total; }
+    public int getCompleted() { return completed; }
+    public int getOverdue() { return overdue; }
+    public int getHighPriority() { return getCount(Priority.HIGH); }
+
+    public int getCount(Priority priority) {
+        return byPriority[priority.ordinal()];
+    }
+
+    public Map<Category, Integer> getCategoryCounts() {
+        return Collections.unmodifiableMap(byCategory);
+    }
+
+    private void apply(Task task, int delta) {
+        total += delta;
+        countPriority(task.getPriority(), delta);
+        countCategory(task.getCategory(), delta);
+        if (task.isCompleted()) {
+            completed += delta;
+        }
+        if (isOverdue(task)) {
+            overdue += delta;
+        }
+    }
+
+    private void countPriority(Priority priority, int delta) {
+        if (priority != null) {
+            byPriority[priority.ordinal()] += delta;
+        }
+    }
+
+    private void countCategory(Category category, int delta) {
+        if (category != null) {
+            byCategory.merge(category, delta, (a, b) -> a + b == 0 ? null : a + b);
+        }
+    }
+
+    private boolean isOverdue(Task task) {
+        return !task.isCompleted() && isBeforeToday(task.getDeadline());
+    }
+
+    private boolean isBeforeToday(LocalDate date) {
+        return isBefore(date, today);
+    }
+
+    private static boolean isBefore(LocalDate date, LocalDate day) {
+        return date != null && date.isBefore(day);
+    }
+}
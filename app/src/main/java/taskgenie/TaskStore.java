@@ -0,0 +1,1256 @@
+package taskgenie;
+
+import java.security.SecureRandom;
+import java.time.LocalDate;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Headless, thread-safe home of the task model. All mutations go through
+ * {@link #batch}, which applies a group of adds, removes and field edits under
+ * one write lock and publishes them to subscribers as a single
+ * {@link Changes} event. Reads take the read lock and may run concurrently
+ * from any thread.
+ *
+ * Internal {@link TaskChangeListener}s (statistics, indexes, the journal) are
+ * called under the write lock as each change is applied; subscribers are
+ * called afterwards, in version order, on the mutating thread.
+ *
+ * With {@link Storage#COLUMNAR} the field values live in {@link TaskColumns}
+ * and the store hands out flyweight views: {@link Batch#add} copies the given
+ * task and returns the view that stands for it from then on.
+ */
+class TaskStore implements TaskChangeListener {
+
+    enum Storage {
+        /** One task object per task, with its own field values. Iterates in insertion order. */
+        HEAP,
+        /** Struct-of-arrays columns behind flyweight views. Iterates in slot order. */
+        COLUMNAR
+    }
+
+    /** A task on one day: a one-off task on its deadline, or one occurrence of a series. */
+    static final class Occurrence {
+        private final Task task;
+        private final LocalDate date;
+
+        Occurrence(Task task, LocalDate date) {
+            this.task = task;
+            this.date = date;
+        }
+
+        public Task getTask() { return task; }
+        public LocalDate getDate() { return date; }
+    }
+
+    /** A page of query results, with the number of matches across all pages. */
+    static final class Page {
+        private final List<Task> tasks;
+        private final int total;
+
+        Page(List<Task> tasks, int total) {
+            this.tasks = tasks;
+            this.total = total;
+        }
+
+        public List<Task> getTasks() { return tasks; }
+        public int getTotal() { return total; }
+    }
+
+    /** Net effect of one batch. */
+    static class Changes {
+        private final long version;
+        private final List<Task> added;
+        private final List<Task> removed;
+        private final Set<Task> updated;
+        private final List<Category> newCategories;
+
+        Changes(long version, List<Task> added, List<Task> removed, Set<Task> updated,
+                List<Category> newCategories) {
+            this.version = version;
+            this.added = added;
+            this.removed = removed;
+            this.updated = updated;
+            this.newCategories = newCategories;
+        }
+
+        public long getVersion() { return version; }
+        public List<Task> getAdded() { return added; }
+        public List<Task> getRemoved() { return removed; }
+        public Set<Task> getUpdated() { return updated; }
+        public List<Category> getNewCategories() { return newCategories; }
+    }
+
+    interface Subscriber {
+        void onChanges(Changes changes);
+    }
+
+    /**
+     * Receives the change log entries of each batch, stamps included, in the
+     * order they were logged. Called with the write lock held, so the tasks
+     * that local adds refer to are read as the batch left them.
+     */
+    interface ChangeLogListener {
+        void logged(List<TaskChangeLog.Entry> entries);
+    }
+
+    /** Mutation handle passed to {@link #batch}. Only valid inside the callback. */
+    class Batch {
+        private final List<Task> added = new ArrayList<>();
+        private final List<Task> removed = new ArrayList<>();
+        private final Set<Task> updated = new LinkedHashSet<>();
+        private final List<Runnable> undo = new ArrayList<>();
+        // Change log entries, appended once the batch has succeeded
+        private final List<TaskChangeLog.Entry> logged = new ArrayList<>();
+        // Stamp shared by this batch's local edits; 0 until the first one
+        private long localStamp;
+        // Set by restore: the entries only give the stamps back and are not logged as changes
+        private boolean restoring;
+
+        /** Adds the task and returns the instance the store now holds for it. */
+        public Task add(Task task) {
+            return add(task, LOCAL, nodeId, null);
+        }
+
+        public void remove(Task task) {
+            remove(task, LOCAL, nodeId);
+        }
+
+        /** Tells whether the task is in the store, with the changes made so far in this batch. */
+        public boolean contains(Task task) {
+            return TaskStore.this.contains(task);
+        }
+
+        /**
+         * Sets one field. Completing a recurring task completes its current
+         * occurrence instead: the deadline moves to the next occurrence that
+         * is neither past nor before the current one, so a series that fell
+         * behind catches up in one step. Only a series with no occurrences
+         * left is marked completed. A parent or blockers that would make the
+         * task wait for itself are refused with an IllegalArgumentException.
+         */
+        public void update(Task task, TaskField field, Object value) {
+            if (!contains(task)) {
+                return;
+            }
+            graph.check(task, field, value);
+            if (field == TaskField.COMPLETED && Boolean.TRUE.equals(value) && task.getRecurrence() != null
+                    && !task.isCompleted()) {
+                LocalDate current = task.getDeadline();
+                LocalDate next = task.getRecurrence().next(
+                        current == null || current.isBefore(today) ? today.minusDays(1) : current);
+                if (next != null) {
+                    set(task, TaskField.DEADLINE, next, LOCAL, nodeId);
+                    return;
+                }
+            }
+            set(task, field, value, LOCAL, nodeId);
+        }
+
+        // The methods below take the stamp and node of the edit; LOCAL stamps
+        // a local edit when it is logged.
+
+        /** As {@link #add(Task)}; a remote PUT is logged as itself so its field stamps are kept. */
+        private Task add(Task task, long stamp, int node, TaskChangeLog.Entry put) {
+            if (contains(task)) {
+                return task;
+            }
+            if (task.getId() == 0) {
+                task.setId(nextId++);
+            } else if (task.getId() >>> NODE_SHIFT == nodeId) {
+                nextId = Math.max(nextId, task.getId() + 1);
+            }
+            int slot = allocateSlot();
+            Task stored = columns == null ? task : columns.attach(slot, task);
+            slots.set(slot, stored);
+            stored.setSlot(slot);
+            if (columns == null) {
+                tasks.put(stored.getId(), stored);
+            } else {
+                ids.put(stored.getId(), slot);
+            }
+            stored.setChangeListener(TaskStore.this);
+            for (TaskChangeListener listener : listeners) {
+                listener.taskAdded(stored);
+            }
+            stored.setVersion(version + 1);
+            added.add(stored);
+            undo.add(() -> remove(stored));
+            if (put == null) {
+                logged.add(TaskChangeLog.Entry.add(version + 1, stamp(stamp), node, stored));
+            } else {
+                logged.add(new TaskChangeLog.Entry(TaskChangeLog.PUT, version + 1, put.stamp, put.node,
+                        put.id, null, null, put.record(), put.stamps, put.nodes));
+            }
+            return stored;
+        }
+
+        private void remove(Task task, long stamp, int node) {
+            if (!contains(task)) {
+                return;
+            }
+            for (TaskChangeListener listener : listeners) {
+                listener.taskRemoved(task);
+            }
+            task.setChangeListener(null);
+            if (columns == null) {
+                tasks.remove(task.getId());
+            } else {
+                ids.remove(task.getId());
+                columns.detach((TaskColumns.View) task);
+            }
+            releaseSlot(task.getSlot());
+            task.setSlot(-1);
+            if (!added.remove(task)) {
+                removed.add(task);
+            }
+            updated.remove(task);
+            undo.add(() -> add(task));
+            logged.add(TaskChangeLog.Entry.delete(version + 1, stamp(stamp), node, task.getId()));
+        }
+
+        private void set(Task task, TaskField field, Object value, long stamp, int node) {
+            Object old = task.get(field);
+            long oldVersion = task.getVersion();
+            task.set(field, value);
+            task.setVersion(version + 1);
+            updated.add(task);
+            undo.add(() -> {
+                task.set(field, old);
+                task.setVersion(oldVersion);
+            });
+            logged.add(TaskChangeLog.Entry.update(version + 1, stamp(stamp), node, task.getId(), field, value));
+        }
+
+        private long stamp(long stamp) {
+            if (stamp != LOCAL) {
+                return stamp;
+            }
+            if (localStamp == 0) {
+                localStamp = changeLog.stamp();
+            }
+            return localStamp;
+        }
+
+        private void rollback() {
+            for (int i = undo.size() - 1; i >= 0; i--) {
+                undo.get(i).run();
+            }
+        }
+
+        private boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty() && updated.isEmpty() && logged.isEmpty();
+        }
+    }
+
+    private static final int MAX_OPTIMISTIC_FILTER_ATTEMPTS = 3;
+    private static final long LOCAL = -1;
+    // Task ids are the node id followed by a 40-bit counter
+    static final int NODE_SHIFT = 40;
+    static final int MAX_NODE_ID = (1 << 23) - 1;
+    // Entries per change feed page, rounded up to whole batches
+    static final int FEED_PAGE_SIZE = 10_000;
+
+    private final StampedLock lock = new StampedLock();
+    private final ReentrantLock dispatchLock = new ReentrantLock();
+    // Heap storage only; keeps insertion order for iteration
+    private final Map<Long, Task> tasks = new LinkedHashMap<>();
+    private final TaskColumns columns;
+    // Columnar storage only; the heap map above doubles as the id lookup otherwise
+    private final IdSlots ids;
+    private final TaskClock clock;
+    // The day the statistics and views were last moved to; guarded by the lock
+    private LocalDate today;
+    private final Map<String, Category> categories = new ConcurrentHashMap<>();
+    private final List<Category> pendingCategories = new ArrayList<>();
+    private final List<TaskChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final List<ChangeLogListener> changeLogListeners = new CopyOnWriteArrayList<>();
+    private final List<Task> slots = new ArrayList<>();
+    private final Collection<Task> live;
+    private final TaskStatistics statistics;
+    private final DeadlineHistogram histogram;
+    private final TaskSearchIndex search;
+    private final TaskGraph graph;
+    private final TaskIndex index;
+    private final OccurrenceCache occurrenceCache = new OccurrenceCache();
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private final int nodeId;
+    // Identifies this run of the store; versions start over with each one
+    private final long epoch = new SecureRandom().nextLong();
+    private final TaskChangeLog changeLog = new TaskChangeLog(TaskChangeLog.DEFAULT_CAPACITY);
+    private long nextId;
+    private long version;
+    // Thread holding the write lock, so column reads on it skip the lock
+    private volatile Thread writer;
+    // Write-lock acquisitions so far; lets a reader tell whether anything changed between two locks
+    private long writes;
+
+    public TaskStore() {
+        this(Storage.HEAP);
+    }
+
+    public TaskStore(Storage storage) {
+        this(storage, new TaskClock());
+    }
+
+    public TaskStore(Storage storage, TaskClock clock) {
+        this(storage, clock, 0);
+    }
+
+    /**
+     * Creates a store whose new tasks get ids prefixed with {@code nodeId}, so
+     * ids stay unique across instances that sync with each other. Node 0
+     * numbers tasks 1, 2, 3 and so on.
+     */
+    public TaskStore(Storage storage, TaskClock clock, int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id out of range: " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.nextId = ((long) nodeId << NODE_SHIFT) + 1;
+        this.clock = clock;
+        this.today = clock.today();
+        columns = storage == Storage.COLUMNAR ? new TaskColumns(lock, () -> writer == Thread.currentThread()) : null;
+        ids = columns == null ? null : new IdSlots();
+        live = columns == null ? tasks.values() : new SlotCollection();
+        statistics = new TaskStatistics(live, today);
+        histogram = new DeadlineHistogram(live);
+        search = new TaskSearchIndex(slots::get);
+        graph = new TaskGraph(slots::get, this::findLocked);
+        index = new TaskIndex(live, search, graph);
+        // The graph goes before the index, whose views test whether a task is blocked
+        listeners.add(statistics);
+        listeners.add(histogram);
+        listeners.add(graph);
+        listeners.add(index);
+        listeners.add(search);
+    }
+
+    /**
+     * Applies the mutations made through the batch atomically: readers see
+     * either none or all of them, and subscribers receive one event. If the
+     * callback throws, the changes made so far are undone and nothing is
+     * published.
+     */
+    public void batch(Consumer<Batch> work) {
+        Batch batch = new Batch();
+        Changes changes;
+        long stamp = lockWrite();
+        try {
+            try {
+                work.accept(batch);
+            } catch (RuntimeException | Error e) {
+                batch.rollback();
+                graph.drainTouched(index::refresh);
+                throw e;
+            }
+            // Tasks that became blocked or ready because of a change to another task
+            graph.drainTouched(task -> {
+                index.refresh(task);
+                batch.updated.add(task);
+            });
+            List<Category> newCategories;
+            synchronized (pendingCategories) {
+                newCategories = new ArrayList<>(pendingCategories);
+                pendingCategories.clear();
+            }
+            if (batch.isEmpty() && newCategories.isEmpty()) {
+                return;
+            }
+            batch.updated.removeAll(batch.added);
+            if (batch.restoring) {
+                batch.logged.forEach(changeLog::restore);
+            } else {
+                batch.logged.forEach(changeLog::append);
+                for (ChangeLogListener listener : changeLogListeners) {
+                    listener.logged(batch.logged);
+                }
+            }
+            changes = new Changes(++version, batch.added, batch.removed, batch.updated, newCategories);
+            // Taken before the write lock is released so events go out in version order
+            dispatchLock.lock();
+        } finally {
+            unlockWrite(stamp);
+        }
+        try {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.onChanges(changes);
+            }
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    public Task add(Task task) {
+        batch(batch -> batch.add(task));
+        return task;
+    }
+
+    public void addAll(Collection<? extends Task> added) {
+        batch(batch -> added.forEach(batch::add));
+    }
+
+    public void remove(Task task) {
+        batch(batch -> batch.remove(task));
+    }
+
+    public void removeAll(Collection<? extends Task> removed) {
+        batch(batch -> removed.forEach(batch::remove));
+    }
+
+    public void update(Task task, TaskField field, Object value) {
+        batch(batch -> batch.update(task, field, value));
+    }
+
+    /** Sets one field on every given task, as a single batch. */
+    public void updateAll(Collection<? extends Task> updated, TaskField field, Object value) {
+        batch(batch -> updated.forEach(task -> batch.update(task, field, value)));
+    }
+
+    /**
+     * Returns the category with the given name, creating it on first use. New
+     * categories are announced to subscribers with the next published batch.
+     * Safe to call inside a batch.
+     */
+    public Category category(String name) {
+        return categories.computeIfAbsent(name, key -> {
+            Category category = new Category(key);
+            synchronized (pendingCategories) {
+                pendingCategories.add(category);
+            }
+            return category;
+        });
+    }
+
+    public Map<String, Category> getCategories() {
+        return Collections.unmodifiableMap(categories);
+    }
+
+    public void addListener(TaskChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(TaskChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void addChangeLogListener(ChangeLogListener listener) {
+        changeLogListeners.add(listener);
+    }
+
+    public void removeChangeLogListener(ChangeLogListener listener) {
+        changeLogListeners.remove(listener);
+    }
+
+    public void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return live.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public long getVersion() {
+        long stamp = lock.readLock();
+        try {
+            return version;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Encodes the changes made after {@code version} of the store run
+     * {@code epoch} as a change feed page, oldest first. When the cursor is
+     * from another run, or older than the change log reaches back, the page
+     * is a reset: current tasks, with the stamps of their last changes, a
+     * page at a time in slot order. Each reset page names the slot the next
+     * one starts from, and the last adds a delete for every task deleted so
+     * far, so the reader drops the ones it missed. Reset pages all carry the
+     * version the reset started at, and changes made while the reader walks
+     * them come through the feed after it. Pass epoch 0, version 0 and slot 0
+     * to start.
+     */
+    public byte[] changesSince(long epoch, long version, int fromSlot) {
+        if (fromSlot < 0) {
+            throw new IllegalArgumentException("Negative slot " + fromSlot);
+        }
+        long through;
+        int slot = fromSlot;
+        long stamp = lock.readLock();
+        try {
+            if (epoch == this.epoch && slot == 0) {
+                List<TaskChangeLog.Entry> entries = changeLog.since(version, FEED_PAGE_SIZE);
+                if (entries != null) {
+                    // A short page has everything up to now; a full one stops at its last batch
+                    long last = entries.size() < FEED_PAGE_SIZE ? this.version : entries.get(entries.size() - 1).version;
+                    return TaskChangeLog.encode(new TaskChangeLog.Delta(this.epoch, nodeId, version,
+                            Math.max(version, last), false, 0, entries));
+                }
+            }
+            if (epoch != this.epoch || version > this.version) {
+                // A new reset, or one begun before a restart, starts over
+                slot = 0;
+            }
+            through = slot == 0 ? this.version : version;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        List<TaskChangeLog.Entry> entries = new ArrayList<>(Math.min(FEED_PAGE_SIZE, size()));
+        // The change log is guarded by the lock forEach holds while it visits
+        int next = forEach(slot, FEED_PAGE_SIZE, task -> entries.add(changeLog.put(task, through, nodeId)));
+        if (next < 0) {
+            stamp = lock.readLock();
+            try {
+                entries.addAll(changeLog.tombstones(through));
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return TaskChangeLog.encode(new TaskChangeLog.Delta(this.epoch, nodeId, 0, through, true,
+                Math.max(next, 0), entries));
+    }
+
+    /**
+     * Applies a change feed page from another instance as one batch and
+     * returns how many of its changes took effect. Conflicts are settled per
+     * field: the edit with the later stamp wins, ties going to the higher
+     * node id. Deletes win over edits, and a task deleted here is not added
+     * back by a late add. Changes made by this node are skipped, so feeds can
+     * be relayed between instances.
+     */
+    public int apply(TaskChangeLog.Delta delta) {
+        int[] applied = {0};
+        batch(batch -> {
+            // Edits applied earlier in this page, which the log does not have yet
+            Map<Long, TaskChangeLog.Entry[]> pending = new HashMap<>();
+            for (TaskChangeLog.Entry entry : delta.entries) {
+                if (entry.node == nodeId && entry.kind != TaskChangeLog.PUT) {
+                    continue;
+                }
+                changeLog.observe(entry.stamp);
+                if (entry.kind == TaskChangeLog.PUT) {
+                    // A reset page stamps its entries 0 and carries the real stamps per field
+                    for (long fieldStamp : entry.stamps) {
+                        changeLog.observe(fieldStamp);
+                    }
+                }
+                Task task = findLocked(entry.id);
+                switch (entry.kind) {
+                    case TaskChangeLog.ADD:
+                    case TaskChangeLog.PUT:
+                        if (task == null) {
+                            if (!changeLog.isDeleted(entry.id)) {
+                                Task added = entry.record().toTask(this::category);
+                                batch.add(added, entry.stamp, entry.node,
+                                        entry.kind == TaskChangeLog.PUT ? entry : null);
+                                applied[0]++;
+                            }
+                        } else if (entry.kind == TaskChangeLog.PUT) {
+                            for (TaskField field : TaskField.values()) {
+                                long fieldStamp = entry.stamps[field.ordinal()];
+                                int fieldNode = entry.nodes[field.ordinal()];
+                                if (wins(fieldStamp, fieldNode, task.getId(), field, pending)) {
+                                    Object value = entry.record().get(field);
+                                    if (!Objects.equals(value, field == TaskField.CATEGORY
+                                            ? categoryName(task.getCategory()) : task.get(field))) {
+                                        set(batch, task, field, value, fieldStamp, fieldNode, pending);
+                                        applied[0]++;
+                                    }
+                                }
+                            }
+                        }
+                        break;
+                    case TaskChangeLog.UPDATE:
+                        if (task != null && wins(entry.stamp, entry.node, task.getId(), entry.field, pending)) {
+                            set(batch, task, entry.field, entry.value, entry.stamp, entry.node, pending);
+                            applied[0]++;
+                        }
+                        break;
+                    default:
+                        if (task != null) {
+                            batch.remove(task, entry.stamp, entry.node);
+                            applied[0]++;
+                        } else if (!changeLog.isDeleted(entry.id)) {
+                            // Remembered so a relayed add arriving later does not bring it back
+                            batch.logged.add(TaskChangeLog.Entry.delete(version + 1, entry.stamp, entry.node, entry.id));
+                        }
+                        break;
+                }
+            }
+        });
+        return applied[0];
+    }
+
+    /**
+     * Adds the tasks read back from storage, given as PUT entries with the
+     * stamp and node of each field's last change, and remembers the DELETE
+     * entries among them as deleted tasks. Conflicts with other instances are
+     * then settled as they were before the restart. None of it is logged as a
+     * change of this run, nor passed to the change log listeners; peers get it
+     * in the reset page every new run starts its feed with.
+     */
+    public void restore(Collection<TaskChangeLog.Entry> entries) {
+        batch(batch -> {
+            batch.restoring = true;
+            for (TaskChangeLog.Entry entry : entries) {
+                if (entry.kind == TaskChangeLog.PUT) {
+                    batch.add(entry.record().toTask(this::category), entry.stamp, entry.node, entry);
+                } else if (entry.kind == TaskChangeLog.DELETE) {
+                    // The id of a deleted task of this node is not handed out again
+                    if (entry.id >>> NODE_SHIFT == nodeId) {
+                        nextId = Math.max(nextId, entry.id + 1);
+                    }
+                    batch.logged.add(entry);
+                }
+            }
+        });
+    }
+
+    /** Looks a task up by id with the lock held, including tasks a running batch added. */
+    private Task findLocked(long id) {
+        if (columns == null) {
+            return tasks.get(id);
+        }
+        int slot = ids.get(id);
+        return slot < 0 ? null : slots.get(slot);
+    }
+
+    /** Tells whether an edit with the given stamp beats the newest one known for the field. */
+    private boolean wins(long stamp, int node, long id, TaskField field, Map<Long, TaskChangeLog.Entry[]> pending) {
+        TaskChangeLog.Entry[] inPage = pending.get(id);
+        TaskChangeLog.Entry current = inPage == null ? null : inPage[field.ordinal()];
+        long currentStamp = current != null ? current.stampOf(field) : changeLog.stampOf(id, field);
+        int currentNode = current != null ? current.nodeOf(field) : changeLog.nodeOf(id, field);
+        return stamp != currentStamp ? stamp > currentStamp : node > currentNode;
+    }
+
+    private void set(Batch batch, Task task, TaskField field, Object value, long stamp, int node,
+                     Map<Long, TaskChangeLog.Entry[]> pending) {
+        Object resolved = field == TaskField.CATEGORY && value != null ? category((String) value) : value;
+        batch.set(task, field, resolved, stamp, node);
+        pending.computeIfAbsent(task.getId(), id -> new TaskChangeLog.Entry[TaskField.values().length])
+                [field.ordinal()] = batch.logged.get(batch.logged.size() - 1);
+    }
+
+    private static String categoryName(Category category) {
+        return category == null ? null : category.getName();
+    }
+
+    /** Returns the task with the given id, or null if the store holds none. */
+    public Task find(long id) {
+        long stamp = lock.readLock();
+        try {
+            return findLocked(id);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Copies the current task list, in the storage's iteration order. */
+    public List<Task> snapshot() {
+        long stamp = lock.readLock();
+        try {
+            return new ArrayList<>(live);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Visits every task under the read lock without copying the list. */
+    public void forEach(Consumer<? super Task> action) {
+        long stamp = lock.readLock();
+        try {
+            live.forEach(action);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Visits those of the given tasks that are still in the store, under one
+     * read lock, so their fields and versions are read as of one version of
+     * the store.
+     */
+    public void forEach(Collection<? extends Task> tasks, Consumer<? super Task> action) {
+        long stamp = lock.readLock();
+        try {
+            for (Task task : tasks) {
+                if (contains(task)) {
+                    action.accept(task);
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Visits up to {@code limit} tasks starting at slot {@code fromSlot}, in
+     * slot order, under a short read lock. Returns the slot to resume from, or
+     * -1 once every slot has been visited. Lets long-running readers walk the
+     * store without copying it and without blocking writers throughout; like
+     * a concurrent collection's iterator, the walk is weakly consistent.
+     */
+    public int forEach(int fromSlot, int limit, Consumer<? super Task> action) {
+        long stamp = lock.readLock();
+        try {
+            int slot = fromSlot;
+            int visited = 0;
+            while (slot < slots.size() && visited < limit) {
+                Task task = slots.get(slot++);
+                if (task != null) {
+                    action.accept(task);
+                    visited++;
+                }
+            }
+            return slot < slots.size() ? slot : -1;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public TaskStatistics.Snapshot statistics() {
+        long stamp = lock.readLock();
+        try {
+            return statistics.snapshot();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Counts the tasks matching the filter, as {@link #page} selects them. */
+    public TaskStatistics.Snapshot statistics(TaskFilter filter, boolean completedOnly, LocalDate today) {
+        long stamp = lock.readLock();
+        try {
+            BitSet matches = index.query(filter, today, true);
+            if (completedOnly) {
+                index.retainCompleted(matches);
+            }
+            return index.count(matches, today);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public TaskClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Moves the store to a new day. Only the open tasks whose deadline the
+     * day boundary crossed are looked at: the statistics and filter views are
+     * adjusted for them, and they are published as updated so the table
+     * re-tests and repaints just those rows.
+     */
+    public void advanceDay(LocalDate newToday) {
+        batch(batch -> {
+            if (newToday.equals(today)) {
+                return;
+            }
+            boolean forward = newToday.isAfter(today);
+            List<Task> crossing = tasks(index.openDueBetween(forward ? today : newToday,
+                    forward ? newToday : today));
+            statistics.advanceDay(newToday, crossing);
+            index.advanceDay(newToday, crossing);
+            today = newToday;
+            batch.updated.addAll(crossing);
+        });
+    }
+
+    /** Returns the open tasks due from {@code from} through {@code to}, inclusive. */
+    public List<Task> dueBetween(LocalDate from, LocalDate to) {
+        long stamp = lock.readLock();
+        try {
+            return tasks(index.openDueBetween(from, to.plusDays(1)));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Counts the tasks in the selected {@link DeadlineHistogram} buckets that
+     * are due from {@code from} through {@code to}, inclusive, in logarithmic
+     * time. A series counts once, on its current occurrence.
+     */
+    public int countDue(LocalDate from, LocalDate to, int buckets) {
+        long stamp = lock.readLock();
+        try {
+            return histogram.count(from, to, buckets);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Counts the tasks in the selected buckets due on each day from {@code from} through {@code to}. */
+    public int[] countDueByDay(LocalDate from, LocalDate to, int buckets) {
+        long stamp = lock.readLock();
+        try {
+            return histogram.countByDay(from, to, buckets);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Counts, for each day from {@code from} through {@code to}, the later
+     * occurrences of the open series in the selected buckets: the ones
+     * {@link #countDueByDay} leaves out. Expands only the open series due by
+     * {@code to}, through the occurrence cache.
+     */
+    public int[] countRepeatsByDay(LocalDate from, LocalDate to, int buckets) {
+        long stamp = lock.readLock();
+        try {
+            int[] counts = new int[(int) Math.max(0, to.toEpochDay() - from.toEpochDay() + 1)];
+            BitSet series = index.openRecurringDueBefore(to.plusDays(1));
+            for (int slot = series.nextSetBit(0); slot >= 0; slot = series.nextSetBit(slot + 1)) {
+                Task task = slots.get(slot);
+                if ((buckets & DeadlineHistogram.open(task.getPriority())) == 0) {
+                    continue;
+                }
+                LocalDate after = task.getDeadline().plusDays(1);
+                occurrenceCache.forEachBetween(task.getRecurrence(), after.isAfter(from) ? after : from, to,
+                        date -> counts[(int) (date.toEpochDay() - from.toEpochDay())]++);
+            }
+            return counts;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Tells whether the task waits for an open blocker or subtask. */
+    public boolean isBlocked(Task task) {
+        long stamp = lock.readLock();
+        try {
+            return graph.isBlocked(task);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Returns the open tasks the task waits for: its open blockers and open subtasks. */
+    public List<Task> openPrerequisites(Task task) {
+        long stamp = lock.readLock();
+        try {
+            return graph.openPrerequisites(task);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Returns the tasks whose parent is the given task. */
+    public List<Task> subtasks(Task task) {
+        long stamp = lock.readLock();
+        try {
+            return graph.subtasks(task);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Returns the chain of open tasks with the least slack against their deadlines, see {@link TaskGraph#criticalPath}. */
+    public TaskGraph.CriticalPath criticalPath() {
+        long stamp = lock.readLock();
+        try {
+            return graph.criticalPath(today);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the open occurrences from {@code from} through {@code to},
+     * ordered by date. One-off tasks come straight from the deadline index.
+     * Each open series contributes its current occurrence and the rule's
+     * later ones, expanded for this window only through the occurrence cache.
+     */
+    public List<Occurrence> occurrences(LocalDate from, LocalDate to) {
+        long stamp = lock.readLock();
+        try {
+            BitSet series = index.openRecurringDueBefore(to.plusDays(1));
+            BitSet oneOff = index.openDueBetween(from, to.plusDays(1));
+            oneOff.andNot(series);
+            List<Occurrence> result = new ArrayList<>();
+            for (int slot = oneOff.nextSetBit(0); slot >= 0; slot = oneOff.nextSetBit(slot + 1)) {
+                Task task = slots.get(slot);
+                result.add(new Occurrence(task, task.getDeadline()));
+            }
+            for (int slot = series.nextSetBit(0); slot >= 0; slot = series.nextSetBit(slot + 1)) {
+                Task task = slots.get(slot);
+                LocalDate current = task.getDeadline();
+                if (!current.isBefore(from)) {
+                    result.add(new Occurrence(task, current));
+                }
+                // The current occurrence may have been rescheduled off the rule; later ones follow it
+                LocalDate after = current.plusDays(1);
+                occurrenceCache.forEachBetween(task.getRecurrence(), after.isAfter(from) ? after : from, to,
+                        date -> result.add(new Occurrence(task, date)));
+            }
+            result.sort(Comparator.comparing(Occurrence::getDate));
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Visits a rule's occurrences from {@code from} through {@code to} through the occurrence cache. */
+    public void forEachOccurrence(Recurrence rule, LocalDate from, LocalDate to, Consumer<LocalDate> action) {
+        occurrenceCache.forEachBetween(rule, from, to, action);
+    }
+
+    /**
+     * Returns one page of the tasks matching the filter, in slot order, and
+     * how many match in all. {@code completedOnly} keeps just completed
+     * tasks, which the filter itself cannot express. Only the page's tasks
+     * are materialized; the rest of the result stays a bitset.
+     */
+    public Page page(TaskFilter filter, boolean completedOnly, LocalDate today, int offset, int limit) {
+        long stamp = lock.readLock();
+        try {
+            BitSet matches = index.query(filter, today, true);
+            if (completedOnly) {
+                index.retainCompleted(matches);
+            }
+            int slot = matches.nextSetBit(0);
+            for (int skipped = 0; skipped < offset && slot >= 0; skipped++) {
+                slot = matches.nextSetBit(slot + 1);
+            }
+            List<Task> tasks = new ArrayList<>(Math.min(limit, matches.cardinality()));
+            for (; slot >= 0 && tasks.size() < limit; slot = matches.nextSetBit(slot + 1)) {
+                tasks.add(slots.get(slot));
+            }
+            return new Page(tasks, matches.cardinality());
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Returns the tasks matching the filter, answered from the indexes. */
+    public List<Task> query(TaskFilter filter, LocalDate today) {
+        long stamp = lock.readLock();
+        try {
+            return tasks(index.query(filter, today, true));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} tasks matching the filter, best search
+     * matches first. Without search text the tasks come in insertion order.
+     */
+    public List<Task> search(TaskFilter filter, LocalDate today, int limit) {
+        long stamp = lock.readLock();
+        try {
+            return search.rank(index.query(filter, today, true), filter.getTerms(), limit);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public FilterView openView(TaskFilter filter, LocalDate today) {
+        long stamp = lockWrite();
+        try {
+            return new FilterView(index.openView(filter, today));
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    private List<Task> tasks(BitSet matches) {
+        List<Task> result = new ArrayList<>(matches.cardinality());
+        for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+            result.add(slots.get(slot));
+        }
+        return result;
+    }
+
+    /** Tells whether the task is held by this store, by its slot rather than a lookup. */
+    private boolean contains(Task task) {
+        int slot = task.getSlot();
+        return slot >= 0 && slot < slots.size() && slots.get(slot) == task;
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        slots.add(null);
+        return slots.size() - 1;
+    }
+
+    private void releaseSlot(int slot) {
+        slots.set(slot, null);
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    private long lockWrite() {
+        long stamp = lock.writeLock();
+        writer = Thread.currentThread();
+        writes++;
+        return stamp;
+    }
+
+    private void unlockWrite(long stamp) {
+        writer = null;
+        lock.unlockWrite(stamp);
+    }
+
+    @Override
+    public void taskChanged(Task task, TaskField field, Object oldValue, Object newValue) {
+        // Only reached from Batch.update, with the write lock held
+        for (TaskChangeListener listener : listeners) {
+            listener.taskChanged(task, field, oldValue, newValue);
+        }
+    }
+
+    /** The occupied slots, as the task collection in columnar mode. */
+    private class SlotCollection extends AbstractCollection<Task> {
+        @Override
+        public Iterator<Task> iterator() {
+            return new Iterator<Task>() {
+                private int next = advance(0);
+
+                private int advance(int slot) {
+                    while (slot < slots.size() && slots.get(slot) == null) {
+                        slot++;
+                    }
+                    return slot;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next < slots.size();
+                }
+
+                @Override
+                public Task next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Task task = slots.get(next);
+                    next = advance(next + 1);
+                    return task;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return slots.size() - freeCount;
+        }
+    }
+
+    /** Live, index-backed filter result that is safe to probe from any thread. */
+    class FilterView {
+        private final TaskIndex.View view;
+
+        private FilterView(TaskIndex.View view) {
+            this.view = view;
+        }
+
+        /**
+         * Re-evaluates the view for a new filter and returns the statistics of
+         * the matching tasks, computed in the same pass. The evaluation runs
+         * under the read lock, using several threads for large search
+         * candidate sets, and only the swap takes the write lock. If a write
+         * slips in between, the evaluation is repeated.
+         */
+        public TaskStatistics.Snapshot setFilter(TaskFilter filter, LocalDate today) {
+            for (int attempt = 0; attempt < MAX_OPTIMISTIC_FILTER_ATTEMPTS; attempt++) {
+                long seen;
+                BitSet matches;
+                TaskStatistics.Snapshot statistics;
+                long stamp = lock.readLock();
+                try {
+                    seen = writes;
+                    matches = index.query(filter, today, true);
+                    statistics = index.count(matches, today);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+                stamp = lockWrite();
+                try {
+                    if (writes == seen + 1) {
+                        view.setFilter(filter, today, matches);
+                        return statistics;
+                    }
+                } finally {
+                    unlockWrite(stamp);
+                }
+            }
+            // Under constant writes, give up on the read lock and evaluate on this thread alone
+            long stamp = lockWrite();
+            try {
+                view.setFilter(filter, today);
+                return view.statistics();
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        /** Statistics of the tasks currently in the view. */
+        public TaskStatistics.Snapshot statistics() {
+            long stamp = lock.readLock();
+            try {
+                return view.statistics();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Tests membership with a single bit lookup. Called once per row when
+         * the table re-filters, so it reads optimistically instead of taking
+         * the read lock every time.
+         */
+        public boolean contains(Task task) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    boolean result = view.contains(task);
+                    if (lock.validate(stamp)) {
+                        return result;
+                    }
+                } catch (RuntimeException e) {
+                    // A resize racing the lookup; validation fails and the locked read below decides
+                    if (lock.validate(stamp)) {
+                        throw e;
+                    }
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return view.contains(task);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        public void close() {
+            long stamp = lockWrite();
+            try {
+                view.close();
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Task id to slot, for columnar storage, where a boxed map would cost
+     * more than the columns themselves. Open addressing with linear probing
+     * over parallel arrays; removal shifts the following entries back, so
+     * no tombstones build up. Guarded by the store's lock.
+     */
+    private static final class IdSlots {
+        private static final long EMPTY = 0; // Ids start at 1
+
+        private long[] keys = new long[64];
+        private int[] values = new int[64];
+        private int size;
+
+        int get(long id) {
+            int mask = keys.length - 1;
+            for (int i = hash(id) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+                if (keys[i] == id) {
+                    return values[i];
+                }
+            }
+            return -1;
+        }
+
+        void put(long id, int slot) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int i = hash(id) & mask;
+            while (keys[i] != EMPTY && keys[i] != id) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == EMPTY) {
+                size++;
+            }
+            keys[i] = id;
+            values[i] = slot;
+        }
+
+        void remove(long id) {
+            int mask = keys.length - 1;
+            int i = hash(id) & mask;
+            while (keys[i] != id) {
+                if (keys[i] == EMPTY) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            // Move back any later entry of the probe run that may no longer be reachable
+            for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+                int home = hash(keys[j]) & mask;
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    i = j;
+                }
+            }
+            keys[i] = EMPTY;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[capacity];
+            values = new int[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int hash(long id) {
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package taskgenie;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Keeps a store up to date with one other instance by pulling its change
+ * feed. Remembers where the last pull stopped, so each pull only transfers
+ * what changed since; after the peer restarts, or if this side fell further
+ * behind than the peer's change log reaches, the peer answers with reset
+ * pages and the pull starts over from its current tasks, following the pages
+ * to the last one and then the changes made meanwhile.
+ *
+ * Two-way sync is two of these, one on each side. The feed is any function
+ * from cursor to page: {@code peerStore::changesSince} in-process, or
+ * {@link #http} for an instance serving {@link TaskApiServer}.
+ */
+class TaskSync {
+    interface Feed {
+        byte[] changesSince(long epoch, long version, int fromSlot) throws IOException, InterruptedException;
+    }
+
+    private final TaskStore store;
+    private final Feed peer;
+    private long epoch;
+    private long version;
+    // Where the next reset page starts, or 0 outside a reset
+    private int slot;
+
+    public TaskSync(TaskStore store, Feed peer) {
+        this.store = store;
+        this.peer = peer;
+    }
+
+    /** Pulls pages until caught up and returns the number of changes that took effect. */
+    public synchronized int pull() throws IOException, InterruptedException {
+        int applied = 0;
+        while (true) {
+            TaskChangeLog.Delta delta = TaskChangeLog.decode(peer.changesSince(epoch, version, slot));
+            applied += store.apply(delta);
+            boolean caughtUp = !delta.reset && delta.toVersion == version && delta.epoch == epoch;
+            epoch = delta.epoch;
+            version = delta.toVersion;
+            slot = delta.nextSlot;
+            if (!delta.reset && (caughtUp || delta.entries.size() < TaskStore.FEED_PAGE_SIZE)) {
+                return applied;
+            }
+        }
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * A feed read from {@code GET /api/changes} of the instance at {@code base}.
+     * The peer's API token goes in the user part of the URI, as in
+     * http://TOKEN@127.0.0.1:8080, and is sent as a bearer token.
+     */
+    public static Feed http(URI base) {
+        if (base.getRawUserInfo() == null) {
+            throw new IllegalArgumentException("No API token in " + base.getHost() + ":" + base.getPort());
+        }
+        String authorization = "Bearer " + base.getUserInfo();
+        URI address = URI.create(base.getScheme() + "://" + base.getRawAuthority()
+                .substring(base.getRawAuthority().indexOf('@') + 1));
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        return (epoch, version, fromSlot) -> {
+            HttpRequest request = HttpRequest.newBuilder(
+                    address.resolve("/api/changes?epoch=" + epoch + "&since=" + version + "&slot=" + fromSlot))
+                    .header("Authorization", authorization)
+                    .timeout(Duration.ofSeconds(30))
+                    .build();
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                throw new IOException("Change feed of " + address + " answered " + response.statusCode());
+            }
+            return response.body();
+        };
+    }
+}
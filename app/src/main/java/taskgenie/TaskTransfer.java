@@ -0,0 +1,605 @@
+package taskgenie;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Streaming import and export of tasks as CSV or JSON Lines.
+ *
+ * Import reads the file sequentially, hands chunks of raw records to parser
+ * threads and publishes the parsed chunks to the store in file order, one
+ * {@code addAll} batch per chunk. Export walks the store slot range by slot
+ * range, so neither direction holds the whole data set in memory.
+ *
+ * Parents and blockers are written as the ids of the tasks they refer to,
+ * next to each task's own id. An import gives the tasks new ids, so their
+ * links are kept aside and set once the whole file is in, translated to the
+ * new ids; a link that would make a task wait for itself is left out.
+ */
+class TaskTransfer {
+    enum Format {
+        CSV, JSON_LINES;
+
+        public static Format forPath(Path path) {
+            String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+            return name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json") ? JSON_LINES : CSV;
+        }
+    }
+
+    interface Progress {
+        void update(long done, long total);
+    }
+
+    static class Result {
+        private final int processed;
+        private final int skipped;
+        private final boolean cancelled;
+
+        Result(int processed, int skipped, boolean cancelled) {
+            this.processed = processed;
+            this.skipped = skipped;
+            this.cancelled = cancelled;
+        }
+
+        public int getProcessed() { return processed; }
+        public int getSkipped() { return skipped; }
+        public boolean isCancelled() { return cancelled; }
+    }
+
+    private static final int BATCH_SIZE = 10_000;
+    private static final String[] COLUMNS = {"name", "description", "priority", "deadline", "completed", "category",
+            "recurrence", "id", "parent", "blockedBy"};
+
+    private final TaskStore store;
+
+    public TaskTransfer(TaskStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Imports every record of the file. Progress is reported in bytes read.
+     * Rows that cannot be parsed are skipped and counted. When cancelled,
+     * batches already published stay in the store.
+     */
+    public Result importFrom(Path file, Format format, Progress progress, BooleanSupplier cancelled)
+            throws IOException, InterruptedException {
+        long total = Files.size(file);
+        int maxInFlight = Runtime.getRuntime().availableProcessors() * 2;
+        ArrayDeque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+        ExecutorService parsers = VirtualThreads.newExecutor("task-import");
+        int imported = 0;
+        int skipped = 0;
+        List<Links> links = new ArrayList<>();
+        try (CountingInputStream counter = new CountingInputStream(Files.newInputStream(file));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(counter, StandardCharsets.UTF_8), 1 << 16)) {
+            int[] columns = defaultColumns();
+            List<String> chunk = new ArrayList<>(BATCH_SIZE);
+            boolean first = true;
+            String record;
+            while ((record = readRecord(reader, format)) != null) {
+                if (cancelled.getAsBoolean() || Thread.currentThread().isInterrupted()) {
+                    inFlight.forEach(future -> future.cancel(true));
+                    return new Result(imported, skipped, true);
+                }
+                if (first && format == Format.CSV) {
+                    first = false;
+                    int[] header = headerColumns(splitCsv(record));
+                    if (header != null) {
+                        columns = header;
+                        continue;
+                    }
+                }
+                if (record.isBlank()) {
+                    continue;
+                }
+                chunk.add(record);
+                if (chunk.size() == BATCH_SIZE) {
+                    List<String> records = chunk;
+                    int[] mapping = columns;
+                    inFlight.add(parsers.submit(() -> parse(records, format, mapping)));
+                    chunk = new ArrayList<>(BATCH_SIZE);
+                }
+                while (inFlight.size() >= maxInFlight) {
+                    ParsedChunk parsed = await(inFlight.poll());
+                    imported += publish(parsed, links);
+                    skipped += parsed.skipped;
+                    progress.update(counter.count, total);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                List<String> records = chunk;
+                int[] mapping = columns;
+                inFlight.add(parsers.submit(() -> parse(records, format, mapping)));
+            }
+            while (!inFlight.isEmpty()) {
+                ParsedChunk parsed = await(inFlight.poll());
+                imported += publish(parsed, links);
+                skipped += parsed.skipped;
+                progress.update(counter.count, total);
+            }
+        } finally {
+            parsers.shutdownNow();
+        }
+        linkImported(links);
+        return new Result(imported, skipped, false);
+    }
+
+    /**
+     * Writes every task to the file. Progress is reported in tasks written.
+     * The tasks go to a temporary file next to it, which replaces the file
+     * only once the export has finished; a cancelled or failed export
+     * leaves the file as it was.
+     */
+    public Result exportTo(Path file, Format format, Progress progress, BooleanSupplier cancelled) throws IOException {
+        long total = store.size();
+        int written = 0;
+        boolean aborted = false;
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        boolean moved = false;
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                if (format == Format.CSV) {
+                    writer.write(String.join(",", COLUMNS));
+                    writer.newLine();
+                }
+                StringBuilder chunk = new StringBuilder(1 << 16);
+                int[] count = {0};
+                int next = 0;
+                while (next >= 0) {
+                    if (cancelled.getAsBoolean() || Thread.currentThread().isInterrupted()) {
+                        aborted = true;
+                        break;
+                    }
+                    // Encode under the store's read lock, write to disk after releasing it
+                    next = store.forEach(next, BATCH_SIZE, task -> {
+                        if (format == Format.CSV) {
+                            appendCsv(chunk, task);
+                        } else {
+                            appendJson(chunk, task);
+                        }
+                        chunk.append(System.lineSeparator());
+                        count[0]++;
+                    });
+                    writer.append(chunk);
+                    chunk.setLength(0);
+                    written = count[0];
+                    progress.update(written, Math.max(total, written));
+                }
+            }
+            if (!aborted) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                moved = true;
+            }
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        return new Result(written, 0, aborted);
+    }
+
+    private int publish(ParsedChunk parsed, List<Links> links) {
+        store.addAll(parsed.tasks);
+        links.addAll(parsed.links);
+        return parsed.tasks.size();
+    }
+
+    /**
+     * Sets the links of the imported tasks, in one batch, translating the
+     * ids in the file to the ids the tasks were given. References to tasks
+     * that were not in the file are dropped. Links are checked before they
+     * are set, so one that would close a cycle is skipped on its own.
+     */
+    private void linkImported(List<Links> links) {
+        if (links.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> ids = new HashMap<>();
+        // The instances the store holds, looked up before the batch takes the lock
+        List<Task> stored = new ArrayList<>(links.size());
+        for (Links link : links) {
+            if (link.fileId != null) {
+                ids.put(link.fileId, link.task.getId());
+            }
+            stored.add(store.find(link.task.getId()));
+        }
+        store.batch(batch -> {
+            for (int i = 0; i < links.size(); i++) {
+                Links link = links.get(i);
+                Task task = stored.get(i);
+                if (task == null) {
+                    continue;
+                }
+                Long parent = link.parent == null ? null : ids.get(link.parent);
+                if (parent != null) {
+                    try {
+                        batch.update(task, TaskField.PARENT, parent);
+                    } catch (IllegalArgumentException e) {
+                        // Would make the task wait for itself
+                    }
+                }
+                List<Long> blockers = new ArrayList<>(link.blockedBy.size());
+                for (long blocker : link.blockedBy) {
+                    Long id = ids.get(blocker);
+                    if (id != null) {
+                        blockers.add(id);
+                    }
+                }
+                if (!blockers.isEmpty()) {
+                    try {
+                        batch.update(task, TaskField.BLOCKED_BY, Task.normalizeIds(blockers));
+                    } catch (IllegalArgumentException e) {
+                        // Some blocker closes a cycle; keep the ones that do not
+                        List<Long> kept = new ArrayList<>();
+                        for (long blocker : blockers) {
+                            kept.add(blocker);
+                            try {
+                                batch.update(task, TaskField.BLOCKED_BY, Task.normalizeIds(kept));
+                            } catch (IllegalArgumentException cycle) {
+                                kept.remove(kept.size() - 1);
+                            }
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private static ParsedChunk await(Future<ParsedChunk> future) throws InterruptedException, IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to parse import data", e.getCause());
+        }
+    }
+
+    private static class ParsedChunk {
+        final List<Task> tasks;
+        final List<Links> links;
+        final int skipped;
+
+        ParsedChunk(List<Task> tasks, List<Links> links, int skipped) {
+            this.tasks = tasks;
+            this.links = links;
+            this.skipped = skipped;
+        }
+    }
+
+    /** An imported task's id in the file and its links, by ids in the file. */
+    private static class Links {
+        final Task task;
+        final Long fileId;
+        final Long parent;
+        final List<Long> blockedBy;
+
+        Links(Task task, Long fileId, Long parent, List<Long> blockedBy) {
+            this.task = task;
+            this.fileId = fileId;
+            this.parent = parent;
+            this.blockedBy = blockedBy;
+        }
+    }
+
+    private ParsedChunk parse(List<String> records, Format format, int[] columns) {
+        List<Task> tasks = new ArrayList<>(records.size());
+        List<Links> links = new ArrayList<>();
+        int skipped = 0;
+        for (String record : records) {
+            try {
+                String[] values = format == Format.CSV ? csvValues(record, columns) : jsonValues(record);
+                Task task = toTask(values);
+                Long fileId = parseId(values[7]);
+                Long parent = parseId(values[8]);
+                List<Long> blockedBy = parseIds(values[9]);
+                tasks.add(task);
+                if (fileId != null || parent != null || !blockedBy.isEmpty()) {
+                    links.add(new Links(task, fileId, parent, blockedBy));
+                }
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                skipped++;
+            }
+        }
+        return new ParsedChunk(tasks, links, skipped);
+    }
+
+    private Task toTask(String[] values) {
+        String name = values[0] == null ? "" : values[0].trim();
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Task name cannot be empty");
+        }
+        String deadline = blankToNull(values[3]);
+        String category = blankToNull(values[5]);
+        String recurrence = blankToNull(values[6]);
+        LocalDate due = deadline == null ? null : LocalDate.parse(deadline.trim());
+        Category resolved = category == null ? null : store.category(category.trim());
+        String description = values[1] == null ? "" : values[1];
+        Task task;
+        if (recurrence == null) {
+            task = new RegularTask(name, description, parsePriority(values[2]), due, resolved);
+        } else {
+            // A rule without DTSTART starts at the deadline, or today without one
+            Recurrence rule = Recurrence.parse(recurrence, due != null ? due : LocalDate.now());
+            task = new RecurringTask(name, description, parsePriority(values[2]),
+                    due != null ? due : rule.first(), resolved, rule);
+        }
+        task.setCompleted(parseBoolean(values[4]));
+        return task;
+    }
+
+    static Priority parsePriority(String value) {
+        if (value == null || value.isBlank()) {
+            return Priority.MEDIUM;
+        }
+        for (Priority priority : Priority.values()) {
+            if (priority.name().equalsIgnoreCase(value.trim()) || priority.toString().equalsIgnoreCase(value.trim())) {
+                return priority;
+            }
+        }
+        throw new IllegalArgumentException("Unknown priority: " + value);
+    }
+
+    static boolean parseBoolean(String value) {
+        if (value == null) {
+            return false;
+        }
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        return normalized.equals("true") || normalized.equals("yes") || normalized.equals("1");
+    }
+
+    /** Parses a task id; blank gives null. */
+    static Long parseId(String value) {
+        return value == null || value.isBlank() ? null : Long.valueOf(value.trim());
+    }
+
+    /** Parses a list of task ids separated by spaces or commas. */
+    static List<Long> parseIds(String value) {
+        if (value == null || value.isBlank()) {
+            return List.of();
+        }
+        List<Long> ids = new ArrayList<>();
+        for (String id : value.trim().split("[\\s,]+")) {
+            ids.add(Long.valueOf(id));
+        }
+        return ids;
+    }
+
+    static String formatIds(List<Long> ids) {
+        StringBuilder out = new StringBuilder();
+        for (long id : ids) {
+            if (out.length() > 0) {
+                out.append(' ');
+            }
+            out.append(id);
+        }
+        return out.toString();
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    // --- CSV ---
+
+    private static int[] defaultColumns() {
+        int[] columns = new int[COLUMNS.length];
+        Arrays.setAll(columns, i -> i);
+        return columns;
+    }
+
+    /** Maps a header row to column positions, or returns null if it is not a header. */
+    private static int[] headerColumns(List<String> header) {
+        int[] columns = new int[COLUMNS.length];
+        Arrays.fill(columns, -1);
+        boolean any = false;
+        for (int i = 0; i < header.size(); i++) {
+            for (int column = 0; column < COLUMNS.length; column++) {
+                if (COLUMNS[column].equalsIgnoreCase(header.get(i).trim())) {
+                    columns[column] = i;
+                    any = true;
+                }
+            }
+        }
+        return any ? columns : null;
+    }
+
+    private static String[] csvValues(String record, int[] columns) {
+        List<String> fields = splitCsv(record);
+        String[] values = new String[COLUMNS.length];
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] >= 0 && columns[i] < fields.size()) {
+                values[i] = fields.get(columns[i]);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Reads one logical record. A CSV record continues over line breaks while
+     * a quoted field is open.
+     */
+    private static String readRecord(BufferedReader reader, Format format) throws IOException {
+        String line = reader.readLine();
+        if (line == null || format != Format.CSV || countQuotes(line) % 2 == 0) {
+            return line;
+        }
+        StringBuilder record = new StringBuilder(line);
+        int quotes = countQuotes(line);
+        while (quotes % 2 != 0 && (line = reader.readLine()) != null) {
+            record.append('\n').append(line);
+            quotes += countQuotes(line);
+        }
+        return record.toString();
+    }
+
+    private static int countQuotes(String line) {
+        int count = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '"') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static List<String> splitCsv(String record) {
+        List<String> fields = new ArrayList<>(COLUMNS.length);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static void appendCsv(StringBuilder out, Task task) {
+        appendCsvField(out, task.getName());
+        out.append(',');
+        appendCsvField(out, task.getDescription());
+        out.append(',');
+        out.append(task.getPriority() == null ? "" : task.getPriority().name());
+        out.append(',');
+        out.append(task.getDeadline() == null ? "" : task.getDeadline().toString());
+        out.append(',');
+        out.append(task.isCompleted());
+        out.append(',');
+        appendCsvField(out, task.getCategory() == null ? null : task.getCategory().getName());
+        out.append(',');
+        appendCsvField(out, task.getRecurrence() == null ? null : task.getRecurrence().toString());
+        out.append(',').append(task.getId());
+        out.append(',');
+        if (task.getParentId() != null) {
+            out.append(task.getParentId());
+        }
+        out.append(',').append(formatIds(task.getBlockedBy()));
+    }
+
+    private static void appendCsvField(StringBuilder out, String value) {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    // --- JSON Lines ---
+
+    /** Builds a task from a parsed JSON object with the export's field names. */
+    Task fromJson(Map<String, String> object) {
+        return toTask(jsonValues(object));
+    }
+
+    private static String[] jsonValues(String record) {
+        return jsonValues(Json.parseObject(record));
+    }
+
+    private static String[] jsonValues(Map<String, String> object) {
+        String[] values = new String[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            values[i] = object.get(COLUMNS[i]);
+        }
+        return values;
+    }
+
+    private static void appendJson(StringBuilder out, Task task) {
+        out.append("{\"id\":").append(task.getId()).append(',');
+        appendJsonFields(out, task);
+        out.append('}');
+    }
+
+    /** Appends the task's fields as JSON members, without the enclosing braces. */
+    static void appendJsonFields(StringBuilder out, Task task) {
+        Json.appendField(out, "name", task.getName()).append(',');
+        Json.appendField(out, "description", task.getDescription()).append(',');
+        Json.appendField(out, "priority", task.getPriority() == null ? null : task.getPriority().name()).append(',');
+        Json.appendField(out, "deadline", task.getDeadline() == null ? null : task.getDeadline().toString()).append(',');
+        out.append("\"completed\":").append(task.isCompleted()).append(',');
+        Json.appendField(out, "category", task.getCategory() == null ? null : task.getCategory().getName()).append(',');
+        Json.appendField(out, "recurrence", task.getRecurrence() == null ? null : task.getRecurrence().toString()).append(',');
+        out.append("\"parent\":").append(task.getParentId()).append(',');
+        Json.appendField(out, "blockedBy", formatIds(task.getBlockedBy()));
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package taskgenie;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.transformation.FilteredList;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TaskSortedListTest {
+    private final TaskStore store = new TaskStore();
+    private final TaskMirror mirror = new TaskMirror();
+    // Hides the low-priority tasks, so priority edits also move rows in and out of the filter
+    private final FilteredList<Task> filtered =
+            new FilteredList<>(mirror, task -> task.getPriority() != Priority.LOW);
+    private final TaskSortedList sorted = new TaskSortedList(filtered);
+    // Rebuilt from the change events alone; has to stay equal to the sorted list
+    private final List<Task> replayed = new ArrayList<>();
+    private final LocalDate today = LocalDate.of(2026, 10, 1);
+
+    TaskSortedListTest() {
+        store.subscribe(mirror::apply);
+        sorted.addListener(this::replay);
+    }
+
+    @Test
+    void batchAddingAndUpdatingKeepsOrder() {
+        Task first = store.add(task("a", Priority.MEDIUM, 3));
+        store.add(task("b", Priority.HIGH, 1));
+        assertConsistent();
+
+        store.batch(batch -> {
+            batch.add(task("c", Priority.HIGH, 2));
+            batch.update(first, TaskField.PRIORITY, Priority.HIGH);
+        });
+        assertConsistent();
+    }
+
+    @Test
+    void subtaskOfAnExistingParentKeepsOrder() {
+        Task parent = store.add(task("parent", Priority.MEDIUM, 5));
+        store.add(task("other", Priority.HIGH, 1));
+        Task child = task("child", Priority.HIGH, 2);
+        // The parent is published as updated along with the added subtask
+        store.batch(batch -> {
+            Task added = batch.add(child);
+            batch.update(added, TaskField.PARENT, parent.getId());
+        });
+        assertConsistent();
+    }
+
+    @Test
+    void randomBatchesMixingAddsRemovesAndUpdates() {
+        SplittableRandom random = new SplittableRandom(11);
+        List<Task> live = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            live.add(store.add(task("t" + i, randomPriority(random), random.nextInt(30))));
+        }
+        for (int step = 0; step < 500; step++) {
+            store.batch(batch -> {
+                int operations = 1 + random.nextInt(6);
+                for (int i = 0; i < operations; i++) {
+                    int choice = random.nextInt(5);
+                    if (choice == 0 || live.isEmpty()) {
+                        live.add(batch.add(task("n" + random.nextInt(1000), randomPriority(random),
+                                random.nextInt(30))));
+                    } else {
+                        Task target = live.get(random.nextInt(live.size()));
+                        if (choice == 1) {
+                            batch.remove(target);
+                            live.remove(target);
+                        } else if (choice == 2) {
+                            batch.update(target, TaskField.PRIORITY, randomPriority(random));
+                        } else if (choice == 3) {
+                            batch.update(target, TaskField.DEADLINE, today.plusDays(random.nextInt(30)));
+                        } else {
+                            batch.update(target, TaskField.NAME, "r" + random.nextInt(1000));
+                        }
+                    }
+                }
+            });
+            assertConsistent();
+        }
+    }
+
+    private void assertConsistent() {
+        assertEquals(filtered.size(), sorted.size());
+        assertEquals(new HashSet<>(filtered), new HashSet<>(sorted));
+        for (int i = 1; i < sorted.size(); i++) {
+            assertTrue(TaskSortedList.Order.URGENCY.compare(sorted.get(i - 1), sorted.get(i)) <= 0,
+                    "rows " + (i - 1) + " and " + i + " out of order");
+        }
+        assertEquals(sorted, replayed);
+    }
+
+    private void replay(ListChangeListener.Change<? extends Task> change) {
+        while (change.next()) {
+            if (change.wasPermutated()) {
+                List<Task> before = new ArrayList<>(replayed.subList(change.getFrom(), change.getTo()));
+                for (int i = change.getFrom(); i < change.getTo(); i++) {
+                    replayed.set(change.getPermutation(i), before.get(i - change.getFrom()));
+                }
+            } else if (!change.wasUpdated()) {
+                replayed.subList(change.getFrom(), change.getFrom() + change.getRemovedSize()).clear();
+                replayed.addAll(change.getFrom(), change.getAddedSubList());
+            }
+        }
+    }
+
+    private Task task(String name, Priority priority, int days) {
+        return new RegularTask(name, "", priority, today.plusDays(days), store.category("Work"));
+    }
+
+    private static Priority randomPriority(SplittableRandom random) {
+        return Priority.values()[random.nextInt(Priority.values().length)];
+    }
+}
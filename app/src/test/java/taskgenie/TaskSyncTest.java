@@ -0,0 +1,246 @@
+package taskgenie;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TaskSyncTest {
+    @TempDir
+    Path directory;
+
+    private final TaskStore a = store(1);
+    private final TaskStore b = store(2);
+    // Each side pulls the other's feed, as two instances with each other as peers do
+    private final TaskSync aFromB = new TaskSync(a, b::changesSince);
+    private final TaskSync bFromA = new TaskSync(b, a::changesSince);
+
+    @Test
+    void laterEditOfAFieldWins() throws Exception {
+        Task task = a.add(task("Report"));
+        sync();
+
+        a.update(task, TaskField.NAME, "Report for A");
+        a.update(task, TaskField.DESCRIPTION, "Kept, nobody else edits it");
+        waitForNextStamp();
+        b.update(b.find(task.getId()), TaskField.NAME, "Report for B");
+        sync();
+
+        for (TaskStore store : List.of(a, b)) {
+            Task synced = store.find(task.getId());
+            assertEquals("Report for B", synced.getName());
+            assertEquals("Kept, nobody else edits it", synced.getDescription());
+        }
+    }
+
+    @Test
+    void tiesGoToTheHigherNode() throws Exception {
+        Task task = a.add(task("Report"));
+        a.update(task, TaskField.NAME, "Named on node 1");
+        long stamp = put(a, task.getId()).stamps[TaskField.NAME.ordinal()];
+
+        // Same stamp from a lower node loses, from a higher one wins
+        assertEquals(0, a.apply(page(0, TaskChangeLog.Entry.update(1, stamp, 0, task.getId(),
+                TaskField.NAME, "Named on node 0"))));
+        assertEquals("Named on node 1", task.getName());
+        assertEquals(1, a.apply(page(3, TaskChangeLog.Entry.update(1, stamp, 3, task.getId(),
+                TaskField.NAME, "Named on node 3"))));
+        assertEquals("Named on node 3", task.getName());
+    }
+
+    @Test
+    void deleteWinsOverConcurrentEdit() throws Exception {
+        Task task = a.add(task("Report"));
+        sync();
+
+        a.remove(task);
+        waitForNextStamp();
+        b.update(b.find(task.getId()), TaskField.NAME, "Edited after the delete");
+        sync();
+        sync();
+
+        assertNull(a.find(task.getId()));
+        assertNull(b.find(task.getId()));
+    }
+
+    @Test
+    void restartKeepsStampsAndDeletes() throws Exception {
+        TaskPersistence persistence = TaskPersistence.open(directory, entry -> { });
+        a.addChangeLogListener(persistence);
+        Task task = a.add(task("Report"));
+        Task deleted = a.add(task("Deleted while B is away"));
+        sync();
+
+        a.update(task, TaskField.NAME, "Renamed on A");
+        waitForNextStamp();
+        b.update(b.find(task.getId()), TaskField.NAME, "Renamed on B");
+        b.update(b.find(task.getId()), TaskField.PRIORITY, Priority.LOW);
+        waitForNextStamp();
+        a.update(task, TaskField.PRIORITY, Priority.HIGH);
+        a.remove(deleted);
+        persistence.close();
+
+        // A restarts without having seen B's edits, and B has not seen the delete
+        TaskStore restarted = store(1);
+        persistence = restore(restarted);
+        try {
+            TaskSync fromB = new TaskSync(restarted, b::changesSince);
+            TaskSync toB = new TaskSync(b, restarted::changesSince);
+            fromB.pull();
+            toB.pull();
+            fromB.pull();
+
+            for (TaskStore store : List.of(restarted, b)) {
+                Task synced = store.find(task.getId());
+                assertEquals("Renamed on B", synced.getName());
+                assertEquals(Priority.HIGH, synced.getPriority());
+                assertNull(store.find(deleted.getId()));
+            }
+            assertTrue(restarted.add(task("New")).getId() > deleted.getId());
+
+            // Folded into a snapshot, the stamps and tombstones survive another restart
+            List<String> before = state(restarted);
+            persistence.close();
+            persistence = restore(restarted = store(1));
+            persistence.compact();
+            persistence.close();
+            persistence = restore(restarted = store(1));
+            assertEquals(before, state(restarted));
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    void resetPageDropsTasksDeletedSinceTheLastPull() throws Exception {
+        Task kept = a.add(task("Kept"));
+        Task deleted = a.add(task("Deleted"));
+        sync();
+
+        a.remove(deleted);
+        // Pushes the delete out of the change log, so B's next pull gets a reset page
+        a.batch(batch -> {
+            for (int i = 0; i <= TaskChangeLog.DEFAULT_CAPACITY; i++) {
+                batch.update(kept, TaskField.DESCRIPTION, "Edit " + i);
+            }
+        });
+        long version = bFromA.getVersion();
+        bFromA.pull();
+
+        assertTrue(TaskChangeLog.decode(a.changesSince(0, version, 0)).reset);
+        assertNull(b.find(deleted.getId()));
+        assertEquals("Edit " + TaskChangeLog.DEFAULT_CAPACITY, b.find(kept.getId()).getDescription());
+    }
+
+    @Test
+    void resetSpansPagesAndPicksUpChangesMadeMeanwhile() throws Exception {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < TaskStore.FEED_PAGE_SIZE * 2 + 10; i++) {
+            tasks.add(task("Task " + i));
+        }
+        a.addAll(tasks);
+        Task deleted = tasks.get(3);
+        a.remove(deleted);
+        // Between B's first and second page, A edits a task already sent and deletes one not sent yet
+        Task edited = tasks.get(0);
+        Task deletedMeanwhile = tasks.get(tasks.size() - 1);
+        int[] pages = {0};
+        TaskSync fromA = new TaskSync(b, (epoch, version, slot) -> {
+            if (pages[0]++ == 1) {
+                a.update(edited, TaskField.NAME, "Edited during the reset");
+                a.remove(deletedMeanwhile);
+            }
+            return a.changesSince(epoch, version, slot);
+        });
+        fromA.pull();
+
+        assertTrue(pages[0] > 3);
+        assertEquals(a.size(), b.size());
+        assertEquals("Edited during the reset", b.find(edited.getId()).getName());
+        assertNull(b.find(deleted.getId()));
+        assertNull(b.find(deletedMeanwhile.getId()));
+        assertEquals(state(a), state(b));
+    }
+
+    private void sync() throws IOException, InterruptedException {
+        aFromB.pull();
+        bFromA.pull();
+    }
+
+    private TaskPersistence restore(TaskStore store) throws IOException {
+        List<TaskChangeLog.Entry> loaded = new ArrayList<>();
+        TaskPersistence persistence = TaskPersistence.open(directory, loaded::add);
+        store.restore(loaded);
+        store.addChangeLogListener(persistence);
+        return persistence;
+    }
+
+    /** The tasks and tombstones of the store's reset pages, with their stamps, in id order. */
+    private static List<String> state(TaskStore store) {
+        List<String> state = new ArrayList<>();
+        for (TaskChangeLog.Entry entry : reset(store)) {
+            StringBuilder line = new StringBuilder().append(entry.id).append(' ').append(entry.kind);
+            if (entry.kind == TaskChangeLog.PUT) {
+                line.append(' ').append(entry.record().name).append(' ').append(entry.record().priority);
+                for (TaskField field : TaskField.values()) {
+                    line.append(' ').append(entry.stampOf(field)).append('/').append(entry.nodeOf(field));
+                }
+            } else {
+                line.append(' ').append(entry.stamp).append('/').append(entry.node);
+            }
+            state.add(line.toString());
+        }
+        state.sort(null);
+        return state;
+    }
+
+    private static TaskChangeLog.Entry put(TaskStore store, long id) {
+        for (TaskChangeLog.Entry entry : reset(store)) {
+            if (entry.id == id) {
+                return entry;
+            }
+        }
+        throw new AssertionError("Task " + id + " is not in the reset pages");
+    }
+
+    /** The entries of every page of the store's reset. */
+    private static List<TaskChangeLog.Entry> reset(TaskStore store) {
+        List<TaskChangeLog.Entry> entries = new ArrayList<>();
+        long epoch = 0;
+        long version = 0;
+        int slot = 0;
+        do {
+            TaskChangeLog.Delta delta = TaskChangeLog.decode(store.changesSince(epoch, version, slot));
+            entries.addAll(delta.entries);
+            epoch = delta.epoch;
+            version = delta.toVersion;
+            slot = delta.nextSlot;
+        } while (slot != 0);
+        return entries;
+    }
+
+    private static TaskChangeLog.Delta page(int node, TaskChangeLog.Entry entry) {
+        return new TaskChangeLog.Delta(node, node, 0, 1, false, 0, List.of(entry));
+    }
+
+    // Stamps carry wall-clock milliseconds, so an edit a few milliseconds later has a later stamp
+    private static void waitForNextStamp() throws InterruptedException {
+        Thread.sleep(5);
+    }
+
+    private static TaskStore store(int node) {
+        return new TaskStore(TaskStore.Storage.HEAP, new TaskClock(), node);
+    }
+
+    private static Task task(String name) {
+        return new RegularTask(name, "", Priority.MEDIUM, LocalDate.of(2026, 12, 1), null);
+    }
+}
@@ -0,0 +1,188 @@
+package taskgenie;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of the HTTP API against localhost. Starts a server over a
+ * populated store, then runs concurrent clients issuing a read-heavy mix of
+ * filtered page queries, lookups, edits, creates and statistics for a fixed
+ * time, and reports throughput and latency percentiles per request type.
+ * Ends with one full streamed listing. Not a JMH benchmark; run it directly:
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar taskgenie.ApiLoadTest [tasks] [clients] [seconds]
+ * </pre>
+ */
+public final class ApiLoadTest {
+    private static final String[] REQUESTS = {"page", "get", "patch", "create", "statistics"};
+    // Cumulative percentages of the request mix, in REQUESTS order
+    private static final int[] MIX = {70, 82, 92, 97, 100};
+
+    private ApiLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        TaskStore store = TaskFixtures.populatedStore(count, 42);
+        String token = "load-test-" + System.nanoTime();
+        TaskApiServer server = new TaskApiServer(store, new TaskMetrics(store::size), token);
+        server.start(0);
+        String base = "http://127.0.0.1:" + server.getPort() + "/api";
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        String authorization = "Bearer " + token;
+        System.out.printf(Locale.ROOT, "%,d tasks, %d clients, %d s, %s threads%n%n", count, clients, seconds,
+                VirtualThreads.isAvailable() ? "virtual" : "platform");
+
+        try {
+            Map<String, List<long[]>> samples = new LinkedHashMap<>();
+            for (String request : REQUESTS) {
+                samples.put(request, new ArrayList<>());
+            }
+            AtomicLong failures = new AtomicLong();
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            CountDownLatch done = new CountDownLatch(clients);
+            for (int c = 0; c < clients; c++) {
+                long seed = c;
+                Thread client = new Thread(() -> {
+                    try {
+                        Map<String, long[]> local = run(http, base, authorization, count, new Random(seed), deadline, failures);
+                        synchronized (samples) {
+                            local.forEach((request, latencies) -> samples.get(request).add(latencies));
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }, "api-client-" + c);
+                client.start();
+            }
+            done.await();
+
+            System.out.printf(Locale.ROOT, "%-11s %9s %9s %9s %9s %9s%n", "", "requests", "req/s", "p50 ms", "p99 ms",
+                    "max ms");
+            long total = 0;
+            for (Map.Entry<String, List<long[]>> entry : samples.entrySet()) {
+                long[] latencies = entry.getValue().stream().flatMapToLong(Arrays::stream).toArray();
+                Arrays.sort(latencies);
+                total += latencies.length;
+                report(entry.getKey(), latencies, seconds);
+            }
+            System.out.printf(Locale.ROOT, "%-11s %,9d %,9.0f%n", "all", total, (double) total / seconds);
+            System.out.printf(Locale.ROOT, "failures    %,9d%n%n", failures.get());
+
+            long start = System.nanoTime();
+            HttpResponse<InputStream> stream = http.send(HttpRequest.newBuilder(URI.create(base + "/tasks?stream=true"))
+                    .header("Authorization", authorization).build(), HttpResponse.BodyHandlers.ofInputStream());
+            long lines = 0;
+            long bytes = 0;
+            try (InputStream in = stream.body()) {
+                byte[] buffer = new byte[1 << 16];
+                for (int n; (n = in.read(buffer)) > 0; bytes += n) {
+                    for (int i = 0; i < n; i++) {
+                        if (buffer[i] == '\n') {
+                            lines++;
+                        }
+                    }
+                }
+            }
+            System.out.printf(Locale.ROOT, "stream: %,d tasks, %,d KB in %.0f ms%n", lines, bytes / 1024,
+                    (System.nanoTime() - start) / 1e6);
+        } finally {
+            server.stop();
+        }
+    }
+
+    /** One client's requests until the deadline; returns latencies in nanoseconds per request type. */
+    private static Map<String, long[]> run(HttpClient http, String base, String authorization, int count,
+                                           Random random, long deadline, AtomicLong failures) {
+        Map<String, long[]> latencies = new LinkedHashMap<>();
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        Priority[] priorities = Priority.values();
+        while (System.nanoTime() < deadline) {
+            int roll = random.nextInt(100);
+            int kind = 0;
+            while (roll >= MIX[kind]) {
+                kind++;
+            }
+            long id = 1 + random.nextInt(count);
+            HttpRequest.Builder request;
+            switch (REQUESTS[kind]) {
+                case "page":
+                    String category = TaskFixtures.CATEGORIES[random.nextInt(TaskFixtures.CATEGORIES.length)];
+                    request = HttpRequest.newBuilder(URI.create(base + "/tasks?category=" + category
+                            + "&priority=" + priorities[random.nextInt(priorities.length)]
+                            + "&completed=false&offset=" + random.nextInt(1000) + "&limit=100"));
+                    break;
+                case "get":
+                    request = HttpRequest.newBuilder(URI.create(base + "/tasks/" + id));
+                    break;
+                case "patch":
+                    request = HttpRequest.newBuilder(URI.create(base + "/tasks/" + id))
+                            .method("PATCH", HttpRequest.BodyPublishers.ofString(
+                                    "{\"priority\":\"" + priorities[random.nextInt(priorities.length)] + "\"}"));
+                    break;
+                case "create":
+                    request = HttpRequest.newBuilder(URI.create(base + "/tasks"))
+                            .POST(HttpRequest.BodyPublishers.ofString(
+                                    "{\"name\":\"Load test " + random.nextInt() + "\",\"priority\":\"LOW\",\"category\":\"Work\"}"));
+                    break;
+                default:
+                    request = HttpRequest.newBuilder(URI.create(base + "/statistics"));
+                    break;
+            }
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = http.send(request.header("Authorization", authorization).build(), HttpResponse.BodyHandlers.discarding());
+                // No client deletes, so every id asked for exists and anything but 2xx is a failure
+                if (response.statusCode() / 100 != 2) {
+                    failures.incrementAndGet();
+                    continue;
+                }
+            } catch (IOException e) {
+                failures.incrementAndGet();
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            long elapsed = System.nanoTime() - start;
+            String name = REQUESTS[kind];
+            long[] samples = latencies.computeIfAbsent(name, k -> new long[1024]);
+            int size = sizes.getOrDefault(name, 0);
+            if (size == samples.length) {
+                samples = Arrays.copyOf(samples, size * 2);
+                latencies.put(name, samples);
+            }
+            samples[size] = elapsed;
+            sizes.put(name, size + 1);
+        }
+        latencies.replaceAll((name, samples) -> Arrays.copyOf(samples, sizes.get(name)));
+        return latencies;
+    }
+
+    private static void report(String name, long[] sorted, int seconds) {
+        if (sorted.length == 0) {
+            System.out.printf(Locale.ROOT, "%-11s %9d%n", name, 0);
+            return;
+        }
+        System.out.printf(Locale.ROOT, "%-11s %,9d %,9.0f %9.2f %9.2f %9.2f%n", name, sorted.length,
+                (double) sorted.length / seconds, sorted[sorted.length / 2] / 1e6,
+                sorted[(int) Math.min(sorted.length - 1, sorted.length * 0.99)] / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+}
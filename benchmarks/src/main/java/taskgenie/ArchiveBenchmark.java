@@ -0,0 +1,101 @@
+package taskgenie;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The archive table over archives of growing size: opening the archive and
+ * showing its first screen, as at startup, and jumping to a random position
+ * as a scrollbar drag does, which almost always misses the page cache. Both
+ * should cost the same however many rows the archive holds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArchiveBenchmark {
+    // Rows on one screen of the table
+    private static final int VISIBLE_ROWS = 40;
+    private static final int WRITE_CHUNK = 100_000;
+
+    @Param({"100000", "1000000", "5000000"})
+    public int size;
+
+    private Path directory;
+    private TaskStore categories;
+    private TaskArchive archive;
+    private ArchivedTaskList rows;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("taskgenie-archive");
+        categories = new TaskStore();
+        try (TaskArchive writer = TaskArchive.open(directory)) {
+            for (int from = 0; from < size; from += WRITE_CHUNK) {
+                List<TaskRecord> records = new ArrayList<>(WRITE_CHUNK);
+                for (Task task : TaskFixtures.generate(categories, Math.min(WRITE_CHUNK, size - from), from)) {
+                    task.setId(from + records.size() + 1);
+                    records.add(TaskRecord.of(task));
+                }
+                writer.append(records);
+            }
+        }
+        archive = TaskArchive.open(directory);
+        rows = new ArchivedTaskList(archive, categories::category);
+        random = new SplittableRandom(7);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        archive.close();
+        Files.deleteIfExists(directory.resolve(TaskArchive.INDEX_FILE));
+        Files.deleteIfExists(directory.resolve(TaskArchive.TEXT_FILE));
+        Files.deleteIfExists(directory);
+    }
+
+    /** Opening the archive and reading the first screen of rows, with nothing cached. */
+    @Benchmark
+    public long openFirstScreen() throws IOException {
+        try (TaskArchive opened = TaskArchive.open(directory)) {
+            ArchivedTaskList list = new ArchivedTaskList(opened, categories::category);
+            long ids = 0;
+            for (int i = 0; i < VISIBLE_ROWS; i++) {
+                ids += list.get(i).getId();
+            }
+            return ids;
+        }
+    }
+
+    /** Reading one screen of rows at a random position through the page cache. */
+    @Benchmark
+    public long jumpToRandomScreen() {
+        int first = random.nextInt(size - VISIBLE_ROWS);
+        long ids = 0;
+        for (int i = first; i < first + VISIBLE_ROWS; i++) {
+            ids += rows.get(i).getId();
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,120 @@
+package taskgenie;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Edits on a store whose tasks depend on each other: every task but the
+ * first of each ten is a subtask of that first one, most are blocked by one
+ * recent task, and every thousandth task blocks fifty of the tasks after it.
+ * Completing a task only visits the tasks waiting for it, and a new edge
+ * against the topological order only renumbers the tasks between its ends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DependencyBenchmark {
+    private static final int HUB_SPACING = 1000;
+    private static final int HUB_DEPENDENTS = 50;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private TaskStore store;
+    private List<Task> tasks;
+    private TaskFilter ready;
+    private int next;
+
+    @Setup
+    public void setup() {
+        store = TaskFixtures.populatedStore(size, 42);
+        tasks = new ArrayList<>(store.snapshot());
+        SplittableRandom random = new SplittableRandom(7);
+        store.batch(batch -> {
+            for (int i = 1; i < tasks.size(); i++) {
+                Task task = tasks.get(i);
+                if (i % 10 != 0) {
+                    batch.update(task, TaskField.PARENT, tasks.get(i - i % 10).getId());
+                }
+                List<Long> blockers = new ArrayList<>();
+                // Blockers come from earlier groups; a group's own head waits for its subtasks
+                int blocker = i - 10 - random.nextInt(40);
+                if (i % 4 != 0 && blocker >= 0) {
+                    blockers.add(tasks.get(blocker).getId());
+                }
+                if (i % HUB_SPACING >= 10 && i % HUB_SPACING < 10 + HUB_DEPENDENTS) {
+                    blockers.add(tasks.get(i - i % HUB_SPACING).getId());
+                }
+                if (!blockers.isEmpty()) {
+                    batch.update(task, TaskField.BLOCKED_BY, Task.normalizeIds(blockers));
+                }
+            }
+        });
+        ready = new TaskFilter(null, null, true, false, null, TaskQuery.parse("ready"));
+    }
+
+    private Task hub() {
+        next = (next + 1) % (size / HUB_SPACING);
+        return tasks.get(next * HUB_SPACING);
+    }
+
+    /** Completing and reopening a task fifty others wait for, two batches with the readiness updates. */
+    @Benchmark
+    public boolean completeBlocker() {
+        Task hub = hub();
+        boolean completed = hub.isCompleted();
+        store.update(hub, TaskField.COMPLETED, !completed);
+        store.update(hub, TaskField.COMPLETED, completed);
+        return hub.isCompleted();
+    }
+
+    /** Adding an edge that runs against the topological order, then taking it out again. */
+    @Benchmark
+    public int linkAgainstOrder() {
+        next = (next + 7919) % (size - 100);
+        Task earlier = tasks.get(next);
+        Task later = tasks.get(next + 100);
+        List<Long> before = earlier.getBlockedBy();
+        List<Long> blockers = new ArrayList<>(before);
+        blockers.add(later.getId());
+        try {
+            store.update(earlier, TaskField.BLOCKED_BY, Task.normalizeIds(blockers));
+            store.update(earlier, TaskField.BLOCKED_BY, before);
+        } catch (IllegalArgumentException e) {
+            // The later task already waits for the earlier one
+        }
+        return earlier.getBlockedBy().size();
+    }
+
+    /** Counting the ready tasks and reading the first page, as the Ready Only filter does. */
+    @Benchmark
+    public int readyView() {
+        return store.page(ready, false, LocalDate.now(), 0, 100).getTotal();
+    }
+
+    /** The critical path after a completion changed it, so the cached result cannot be used. */
+    @Benchmark
+    public int criticalPath() {
+        Task hub = hub();
+        store.update(hub, TaskField.COMPLETED, !hub.isCompleted());
+        return store.criticalPath().getTasks().size();
+    }
+}
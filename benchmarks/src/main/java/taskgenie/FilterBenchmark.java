@@ -0,0 +1,110 @@
+package taskgenie;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The applyFilters() path: replacing the predicate on the table's
+ * FilteredList. Compares the index-backed view with the per-row lambda the
+ * UI used to install, and times compound {@link TaskQuery} filters evaluated
+ * against the indexes on their own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private TaskStore store;
+    private TaskStore.FilterView view;
+    private FilteredList<Task> filtered;
+    private TaskFilter[] filters;
+    private TaskFilter[] queries;
+    private int next;
+
+    @Setup
+    public void setup() {
+        store = TaskFixtures.populatedStore(size, 42);
+        ObservableList<Task> tasks = FXCollections.observableArrayList(store.snapshot());
+        view = store.openView(TaskFilter.ALL, LocalDate.now());
+        filtered = new FilteredList<>(tasks);
+        Category work = store.category("Work");
+        filters = new TaskFilter[] {
+            new TaskFilter(Priority.HIGH, null, true, false),
+            new TaskFilter(null, work, false, false),
+            new TaskFilter(Priority.MEDIUM, work, true, false),
+            new TaskFilter(null, null, true, true),
+        };
+        queries = new TaskFilter[] {
+            query("(priority = HIGH or priority = MEDIUM) and category in (Work, Finance)"
+                    + " and due within 7 days and not completed"),
+            query("priority != LOW and not category = Personal and open"),
+            query("overdue or (recurring and due within 2 weeks)"),
+            query("due after today+3 and due before today+20 and category in (Health, Study)"),
+        };
+    }
+
+    private static TaskFilter query(String text) {
+        return new TaskFilter(null, null, true, false, null, TaskQuery.parse(text));
+    }
+
+    @Benchmark
+    public int indexedView() {
+        TaskFilter filter = filters[next++ & 3];
+        view.setFilter(filter, LocalDate.now());
+        filtered.setPredicate(view::contains);
+        return filtered.size();
+    }
+
+    /** A query answered as the API pages it: the match count and the first hundred tasks. */
+    @Benchmark
+    public int queryLanguage() {
+        return store.page(queries[next++ & 3], false, LocalDate.now(), 0, 100).getTotal();
+    }
+
+    @Benchmark
+    public int predicateScan() {
+        TaskFilter filter = filters[next++ & 3];
+        Priority selectedPriority = filter.getPriority();
+        String selectedCategory = filter.getCategory() == null ? "All Categories" : filter.getCategory().getName();
+        boolean showCompleted = filter.isShowCompleted();
+        boolean overdueOnly = filter.isOverdueOnly();
+        // Mirrors the lambda applyFilters() installed before the indexes existed
+        filtered.setPredicate(task -> {
+            if (selectedPriority != null && !task.getPriority().equals(selectedPriority)) {
+                return false;
+            }
+            if (!selectedCategory.equals("All Categories")
+                    && !task.getCategory().getName().equals(selectedCategory)) {
+                return false;
+            }
+            if (!showCompleted && task.isCompleted()) {
+                return false;
+            }
+            if (overdueOnly && (!task.getDeadline().isBefore(LocalDate.now()) || task.isCompleted())) {
+                return false;
+            }
+            return true;
+        });
+        return filtered.size();
+    }
+}
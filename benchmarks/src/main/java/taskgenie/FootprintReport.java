@@ -0,0 +1,91 @@
+package taskgenie;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Retained heap of the task model under each storage mode, measured as the
+ * heap in use after full GCs before and after building it. Not a JMH
+ * benchmark; run it directly with a heap big enough for the largest case:
+ *
+ * <pre>
+ * java -Xmx4g -cp benchmarks/target/benchmarks.jar taskgenie.FootprintReport [tasks]
+ * </pre>
+ *
+ * "Tasks only" is the field data alone: a list of RegularTasks against the
+ * columns plus their views. "Store" is a populated TaskStore including its
+ * statistics, filter and search indexes, which are the same in both modes.
+ */
+public final class FootprintReport {
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    private FootprintReport() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.printf(Locale.ROOT, "%,d tasks%n%n", count);
+        System.out.printf(Locale.ROOT, "%-22s %12s %12s%n", "", "MB", "bytes/task");
+
+        long base = usedAfterGc();
+        List<Task> objects = heapTasks(count);
+        report("Tasks only, heap", usedAfterGc() - base, count);
+        Reference.reachabilityFence(objects);
+        objects = null;
+
+        base = usedAfterGc();
+        List<Task> views = columnTasks(count);
+        report("Tasks only, columnar", usedAfterGc() - base, count);
+        Reference.reachabilityFence(views);
+        views = null;
+
+        for (TaskStore.Storage storage : TaskStore.Storage.values()) {
+            base = usedAfterGc();
+            TaskStore store = TaskFixtures.populatedStore(storage, count, 42);
+            report("Store, " + storage.name().toLowerCase(Locale.ROOT), usedAfterGc() - base, count);
+            Reference.reachabilityFence(store);
+        }
+    }
+
+    private static List<Task> heapTasks(int count) {
+        TaskStore categories = new TaskStore();
+        return TaskFixtures.generate(categories, count, 42);
+    }
+
+    private static List<Task> columnTasks(int count) {
+        TaskStore categories = new TaskStore();
+        TaskColumns columns = new TaskColumns(new StampedLock(), () -> true);
+        List<Task> views = new ArrayList<>(count);
+        // The generated RegularTasks are garbage once copied, so only the columns and views remain
+        for (Task task : TaskFixtures.generate(categories, count, 42)) {
+            Task view = columns.attach(views.size(), task);
+            view.setSlot(views.size());
+            views.add(view);
+        }
+        return views;
+    }
+
+    private static void report(String label, long bytes, int count) {
+        System.out.printf(Locale.ROOT, "%-22s %12.1f %12.1f%n", label, bytes / 1048576.0, (double) bytes / count);
+    }
+
+    private static long usedAfterGc() throws InterruptedException {
+        long used = Long.MAX_VALUE;
+        // Repeat until the figure settles; a single System.gc() may leave floating garbage
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+            long now = MEMORY.getHeapMemoryUsage().getUsed();
+            if (now >= used) {
+                return Math.min(used, now);
+            }
+            used = now;
+        }
+        return used;
+    }
+}
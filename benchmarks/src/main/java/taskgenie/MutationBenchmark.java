@@ -0,0 +1,99 @@
+package taskgenie;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The deleteTask() and addTask() paths. Each delete is paired with an add of
+ * the same task so the list size stays fixed across iterations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MutationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Populated {
+        @Param({"10000", "100000", "1000000"})
+        public int size;
+
+        TaskStore store;
+        ObservableList<Task> mirror;
+        List<Task> tasks;
+        int next;
+
+        @Setup
+        public void setup() {
+            store = TaskFixtures.populatedStore(size, 42);
+            tasks = store.snapshot();
+            mirror = FXCollections.observableArrayList(tasks);
+        }
+
+        Task pick() {
+            // Walk the list so removals hit every position, not just the tail
+            next = (next + 7919) % size;
+            return tasks.get(next);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Fresh {
+        @Param({"10000", "100000", "1000000"})
+        public int size;
+
+        TaskStore store;
+        List<Task> tasks;
+
+        @Setup(Level.Invocation)
+        public void setup() {
+            store = new TaskStore();
+            tasks = TaskFixtures.generate(store, size, 42);
+        }
+    }
+
+    /** Store removal: a hash lookup plus index and counter updates. */
+    @Benchmark
+    public int storeRemove(Populated state) {
+        Task task = state.pick();
+        state.store.remove(task);
+        state.store.add(task);
+        return state.store.size();
+    }
+
+    /** The equality scan tasks.remove(selected) performs on the UI list. */
+    @Benchmark
+    public int listRemove(Populated state) {
+        Task task = state.pick();
+        state.mirror.remove(task);
+        state.mirror.add(task);
+        return state.mirror.size();
+    }
+
+    /** Bulk insertion of freshly generated RegularTasks as one batch. */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, batchSize = 1)
+    @Measurement(iterations = 5, batchSize = 1)
+    public int bulkInsert(Fresh state) {
+        state.store.addAll(state.tasks);
+        return state.store.size();
+    }
+}
@@ -0,0 +1,55 @@
+package taskgenie;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-text search through the inverted index: a selective whole-word query,
+ * an infix query answered through trigrams, and a ranked top-20 lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private TaskStore store;
+    private LocalDate today;
+
+    @Setup
+    public void setup() {
+        store = TaskFixtures.populatedStore(size, 42);
+        today = LocalDate.now();
+    }
+
+    @Benchmark
+    public int word() {
+        return store.query(new TaskFilter(null, null, true, false, "task 4242"), today).size();
+    }
+
+    @Benchmark
+    public int infix() {
+        return store.query(new TaskFilter(null, null, true, false, "nerated 4242"), today).size();
+    }
+
+    @Benchmark
+    public int rankedTop20() {
+        return store.search(new TaskFilter(Priority.HIGH, null, false, false, "task 42"), today, 20).size();
+    }
+}
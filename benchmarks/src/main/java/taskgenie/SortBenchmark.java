@@ -0,0 +1,85 @@
+package taskgenie;
+
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The table's sort stage under single-row edits, as made by the commit
+ * handlers: the store publishes the edit, the mirror reports the row as
+ * updated, and the sort stage has to move it. Compared against a JavaFX
+ * SortedList with the equivalent urgency comparator.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortBenchmark {
+    static final Comparator<Task> URGENCY = Comparator
+            .comparing(Task::getPriority)
+            .thenComparing(Task::getDeadline, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Task::getName);
+
+    @State(Scope.Benchmark)
+    public static class Pipeline {
+        @Param({"10000", "100000", "1000000"})
+        public int size;
+
+        @Param({"keyed", "sortedList"})
+        public String stage;
+
+        TaskStore store;
+        List<Task> tasks;
+        ObservableList<Task> sorted;
+        int next;
+
+        @Setup
+        public void setup() {
+            store = TaskFixtures.populatedStore(size, 42);
+            tasks = store.snapshot();
+            TaskMirror mirror = new TaskMirror();
+            mirror.added(tasks);
+            store.subscribe(mirror::apply);
+            FilteredList<Task> filtered = new FilteredList<>(mirror, task -> true);
+            sorted = "keyed".equals(stage) ? new TaskSortedList(filtered) : new SortedList<>(filtered, URGENCY);
+        }
+
+        Task pick() {
+            next = (next + 7919) % size;
+            return tasks.get(next);
+        }
+    }
+
+    /** A priority edit, which moves the row to another part of the list. */
+    @Benchmark
+    public int editPriority(Pipeline state) {
+        Task task = state.pick();
+        Priority[] priorities = Priority.values();
+        state.store.update(task, TaskField.PRIORITY, priorities[(task.getPriority().ordinal() + 1) % priorities.length]);
+        return state.sorted.size();
+    }
+
+    /** A description edit, which leaves the row where it is. */
+    @Benchmark
+    public int editDescription(Pipeline state) {
+        Task task = state.pick();
+        state.store.update(task, TaskField.DESCRIPTION, "Edited " + state.next);
+        return state.sorted.size();
+    }
+}
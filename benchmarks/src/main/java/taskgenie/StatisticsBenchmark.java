@@ -0,0 +1,104 @@
+package taskgenie;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The updateStatistics() path: reading the incremental counters compared with
+ * the four full scans the UI used to run after every change, and the "due
+ * this week/month" counters and a calendar month read from the deadline
+ * histogram compared with a scan answering the same counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatisticsBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private TaskStore store;
+    private List<Task> tasks;
+
+    @Setup
+    public void setup() {
+        store = TaskFixtures.populatedStore(size, 42);
+        tasks = store.snapshot();
+    }
+
+    @Benchmark
+    public void counters(Blackhole blackhole) {
+        TaskStatistics.Snapshot statistics = store.statistics();
+        blackhole.consume(statistics.getTotal());
+        blackhole.consume(statistics.getCompleted());
+        blackhole.consume(statistics.getOverdue());
+        blackhole.consume(statistics.getHighPriority());
+    }
+
+    @Benchmark
+    public void dueSoon(Blackhole blackhole) {
+        LocalDate today = LocalDate.now();
+        int high = DeadlineHistogram.open(Priority.HIGH);
+        blackhole.consume(store.countDue(today, today.plusDays(6), DeadlineHistogram.OPEN));
+        blackhole.consume(store.countDue(today, today.plusDays(6), high));
+        blackhole.consume(store.countDue(today, today.plusDays(30), DeadlineHistogram.OPEN));
+        blackhole.consume(store.countDue(today, today.plusDays(30), high));
+    }
+
+    @Benchmark
+    public void dueSoonScan(Blackhole blackhole) {
+        LocalDate today = LocalDate.now();
+        int[] counts = new int[4];
+        for (Task task : tasks) {
+            LocalDate deadline = task.getDeadline();
+            if (task.isCompleted() || deadline == null || deadline.isBefore(today)) {
+                continue;
+            }
+            boolean high = task.getPriority() == Priority.HIGH;
+            if (deadline.isBefore(today.plusDays(7))) {
+                counts[0]++;
+                counts[1] += high ? 1 : 0;
+            }
+            if (deadline.isBefore(today.plusDays(31))) {
+                counts[2]++;
+                counts[3] += high ? 1 : 0;
+            }
+        }
+        blackhole.consume(counts);
+    }
+
+    /** Open tasks due on each day of a six-week calendar. */
+    @Benchmark
+    public int[] calendar() {
+        LocalDate today = LocalDate.now();
+        return store.countDueByDay(today, today.plusDays(41), DeadlineHistogram.OPEN);
+    }
+
+    @Benchmark
+    public void fullScan(Blackhole blackhole) {
+        blackhole.consume(tasks.size());
+        blackhole.consume(tasks.stream().filter(Task::isCompleted).count());
+        blackhole.consume(tasks.stream()
+                .filter(task -> !task.isCompleted() && task.getDeadline().isBefore(LocalDate.now()))
+                .count());
+        blackhole.consume(tasks.stream()
+                .filter(task -> task.getPriority() == Priority.HIGH)
+                .count());
+    }
+}
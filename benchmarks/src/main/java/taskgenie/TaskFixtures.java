@@ -0,0 +1,50 @@
+package taskgenie;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic task data for benchmarks. Needs only the model classes, so it
+ * runs headless without starting the JavaFX toolkit.
+ */
+final class TaskFixtures {
+    static final String[] CATEGORIES = {"Work", "Personal", "Study", "Health", "Finance"};
+
+    private TaskFixtures() {
+    }
+
+    /**
+     * Generates {@code count} tasks spread over all priorities and categories,
+     * with deadlines within two months either side of today and roughly a
+     * fifth of them completed.
+     */
+    static List<Task> generate(TaskStore store, int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        LocalDate today = LocalDate.now();
+        Priority[] priorities = Priority.values();
+        List<Task> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Task task = new RegularTask(
+                    "Task " + i,
+                    "Generated description for task " + i,
+                    priorities[random.nextInt(priorities.length)],
+                    today.plusDays(random.nextInt(-60, 61)),
+                    store.category(CATEGORIES[random.nextInt(CATEGORIES.length)]));
+            task.setCompleted(random.nextInt(5) == 0);
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    static TaskStore populatedStore(int count, long seed) {
+        return populatedStore(TaskStore.Storage.HEAP, count, seed);
+    }
+
+    static TaskStore populatedStore(TaskStore.Storage storage, int count, long seed) {
+        TaskStore store = new TaskStore(storage);
+        store.addAll(generate(store, count, seed));
+        return store;
+    }
+}